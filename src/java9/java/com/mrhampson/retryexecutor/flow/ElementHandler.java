@@ -0,0 +1,38 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.flow;
+
+/**
+ * Handles one element of a stream, e.g. one call to a downstream API
+ * @param <T> the element type
+ * @param <R> the result type
+ * @author Marshall Hampson
+ */
+@FunctionalInterface
+public interface ElementHandler<T, R> {
+
+  /**
+   * Handles an element
+   * @param element the element
+   * @return the result passed downstream, null fails the stream
+   * @throws Exception if the try failed, the element is then retried on its policy
+   */
+  R handle(T element) throws Exception;
+}
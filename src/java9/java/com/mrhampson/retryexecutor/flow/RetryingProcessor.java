@@ -0,0 +1,452 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.flow;
+
+import com.mrhampson.retryexecutor.RetryExecutor;
+import com.mrhampson.retryexecutor.exceptions.MaxTriesExceededException;
+import com.mrhampson.retryexecutor.strategies.AnnotationToRetryStrategyFactory;
+import com.mrhampson.retryexecutor.strategies.RetryPolicy;
+import com.mrhampson.retryexecutor.strategies.RetryStrategy;
+import com.mrhampson.retryexecutor.strategies.RetryStrategyAdapter;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * A {@link Flow.Processor} that runs every element through an {@link ElementHandler} on a {@link RetryExecutor},
+ * retrying the elements that fail on their policy. Elements are only requested from upstream as the subscriber asks
+ * for results, and never more than the max concurrency at once, so a struggling downstream API holds the stream back
+ * instead of piling up retries. Results are passed on in the order the elements arrived, or as they complete when
+ * ordering isn't needed. An element that gives up fails the stream with its
+ * {@link com.mrhampson.retryexecutor.exceptions.RetryExhaustedException}, and the elements still in flight are
+ * cancelled. Signals to the subscriber are serialized by a lock-free drain loop. A processor has a single subscriber
+ * @param <T> the element type
+ * @param <R> the result type
+ * @author Marshall Hampson
+ */
+public class RetryingProcessor<T, R> implements Flow.Processor<T, R> {
+  private static final RetryPolicy NO_RETRIES = (attemptNumber, lastFailure) -> {
+    throw new MaxTriesExceededException();
+  };
+
+  private final RetryExecutor retryExecutor;
+  private final ElementHandler<T, R> handler;
+  private final Supplier<RetryPolicy> policyProvider;
+  private final boolean ordered;
+  private final int maxConcurrency;
+  /** Elements handed to the executor and not yet passed on, in arrival order */
+  private final Queue<Element<R>> inFlight = new ConcurrentLinkedQueue<>();
+  /** Elements that have finished, only used when unordered */
+  private final Queue<Element<R>> finished = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pending = new AtomicInteger();
+  private final AtomicInteger wip = new AtomicInteger();
+  private final AtomicLong requested = new AtomicLong();
+  private final AtomicReference<Flow.Subscriber<? super R>> subscriber = new AtomicReference<>();
+  private volatile Flow.Subscriber<? super R> downstream;
+  private volatile Flow.Subscription upstream;
+  private volatile boolean upstreamDone;
+  private volatile Throwable upstreamError;
+  private volatile Throwable demandError;
+  private volatile boolean cancelled;
+  private volatile boolean stopped;
+
+  /** Only touched by the drain loop */
+  private long outstanding;
+  private boolean terminated;
+
+  /**
+   * Creates a new {@link RetryingProcessor}
+   * @param builder the builder holding the settings
+   */
+  private RetryingProcessor(Builder<T, R> builder) {
+    this.retryExecutor = builder.retryExecutor;
+    this.handler = builder.handler;
+    this.policyProvider = builder.policyProvider;
+    this.ordered = builder.ordered;
+    this.maxConcurrency = builder.maxConcurrency;
+  }
+
+  /**
+   * Starts building a {@link RetryingProcessor}
+   * @param retryExecutor the executor the elements are tried on
+   * @param handler the handler every element is passed to
+   * @param <T> the element type
+   * @param <R> the result type
+   * @return the builder
+   */
+  public static <T, R> Builder<T, R> builder(RetryExecutor retryExecutor, ElementHandler<T, R> handler) {
+    return new Builder<>(retryExecutor, handler);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void subscribe(Flow.Subscriber<? super R> subscriber) {
+    Objects.requireNonNull(subscriber);
+    if (!this.subscriber.compareAndSet(null, subscriber)) {
+      subscriber.onSubscribe(new Flow.Subscription() {
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+      });
+      subscriber.onError(new IllegalStateException("A RetryingProcessor only supports a single subscriber"));
+      return;
+    }
+    subscriber.onSubscribe(new DownstreamSubscription());
+    this.downstream = subscriber;
+    this.drain();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    Objects.requireNonNull(subscription);
+    if (this.upstream != null || this.stopped) {
+      subscription.cancel();
+      return;
+    }
+    this.upstream = subscription;
+    this.drain();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void onNext(T item) {
+    Objects.requireNonNull(item);
+    if (this.stopped) {
+      return;
+    }
+    Element<R> element = new Element<>();
+    this.pending.incrementAndGet();
+    this.inFlight.offer(element);
+    CompletableFuture<R> future;
+    try {
+      future = this.retryExecutor.submit(() -> this.handler.handle(item), this.policyProvider.get());
+    }
+    catch (RejectedExecutionException rejected) {
+      future = CompletableFuture.failedFuture(rejected);
+    }
+    element.future = future;
+    if (this.stopped) {
+      // The stream ended while the element was being submitted, the cancel may not have seen it
+      future.cancel(false);
+    }
+    future.whenComplete((result, failure) -> this.onElementFinished(element, result, failure));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void onError(Throwable throwable) {
+    Objects.requireNonNull(throwable);
+    this.upstreamError = throwable;
+    this.upstreamDone = true;
+    this.drain();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void onComplete() {
+    this.upstreamDone = true;
+    this.drain();
+  }
+
+  /**
+   * Records the outcome of an element once it succeeded or gave up
+   * @param element the element
+   * @param result the result, if it succeeded
+   * @param failure the failure, if it gave up
+   */
+  private void onElementFinished(Element<R> element, R result, Throwable failure) {
+    if (failure == null && result == null) {
+      // Subscribers must never be handed null
+      failure = new NullPointerException("Element handler returned null");
+    }
+    element.result = result;
+    element.failure = failure;
+    element.done = true;
+    if (!this.ordered) {
+      this.inFlight.remove(element);
+      this.finished.offer(element);
+    }
+    this.drain();
+  }
+
+  /**
+   * Runs the drain loop unless another thread is running it, in which case that thread goes round again
+   */
+  private void drain() {
+    if (this.wip.getAndIncrement() != 0) {
+      return;
+    }
+    int missed = 1;
+    do {
+      Flow.Subscriber<? super R> downstream = this.downstream;
+      if (downstream != null && !this.terminated) {
+        this.drainTo(downstream);
+      }
+      missed = this.wip.addAndGet(-missed);
+    } while (missed != 0);
+  }
+
+  /**
+   * Passes finished elements on as far as the demand allows, signals the end of the stream, and requests more
+   * elements from upstream to keep the elements in flight up to the demand. Only called by the drain loop
+   * @param downstream the subscriber
+   */
+  private void drainTo(Flow.Subscriber<? super R> downstream) {
+    if (this.cancelled) {
+      this.terminated = true;
+      this.stop();
+      return;
+    }
+    Throwable error = this.demandError != null ? this.demandError : this.upstreamError;
+    if (error != null) {
+      this.terminated = true;
+      this.stop();
+      downstream.onError(error);
+      return;
+    }
+    long demand = this.requested.get();
+    long emitted = 0;
+    Element<R> element;
+    while ((element = this.peekFinished()) != null) {
+      if (element.failure != null) {
+        this.terminated = true;
+        this.stop();
+        downstream.onError(element.failure);
+        return;
+      }
+      if (emitted == demand) {
+        break;
+      }
+      this.pollFinished();
+      this.pending.decrementAndGet();
+      this.outstanding--;
+      downstream.onNext(element.result);
+      emitted++;
+    }
+    if (emitted > 0 && demand != Long.MAX_VALUE) {
+      demand = this.requested.addAndGet(-emitted);
+    }
+    if (this.upstreamDone && this.pending.get() == 0) {
+      this.terminated = true;
+      downstream.onComplete();
+      return;
+    }
+    Flow.Subscription upstream = this.upstream;
+    if (upstream != null && !this.upstreamDone) {
+      long wanted = Math.min(demand, this.maxConcurrency) - this.outstanding;
+      if (wanted > 0) {
+        this.outstanding += wanted;
+        upstream.request(wanted);
+      }
+    }
+  }
+
+  /**
+   * Gets the next element that may be passed on without taking it
+   * @return the element, null if none has finished or, when ordered, the oldest hasn't
+   */
+  private Element<R> peekFinished() {
+    if (!this.ordered) {
+      return this.finished.peek();
+    }
+    Element<R> oldest = this.inFlight.peek();
+    return oldest != null && oldest.done ? oldest : null;
+  }
+
+  /**
+   * Takes the element returned by {@link #peekFinished()}
+   */
+  private void pollFinished() {
+    if (this.ordered) {
+      this.inFlight.poll();
+    }
+    else {
+      this.finished.poll();
+    }
+  }
+
+  /**
+   * Cancels upstream and every element in flight
+   */
+  private void stop() {
+    this.stopped = true;
+    Flow.Subscription upstream = this.upstream;
+    if (upstream != null) {
+      upstream.cancel();
+    }
+    for (Element<R> element : this.inFlight) {
+      CompletableFuture<R> future = element.future;
+      if (future != null) {
+        future.cancel(false);
+      }
+    }
+  }
+
+  /**
+   * An element handed to the executor, and its outcome once it has one
+   * @param <R> the result type
+   */
+  private static final class Element<R> {
+    private volatile CompletableFuture<R> future;
+    private R result;
+    private Throwable failure;
+    /** Published after the result and failure */
+    private volatile boolean done;
+  }
+
+  /**
+   * The subscription handed to the subscriber
+   */
+  private final class DownstreamSubscription implements Flow.Subscription {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        RetryingProcessor.this.demandError = new IllegalArgumentException("Demand must be positive, was " + n);
+      }
+      else {
+        RetryingProcessor.this.requested.accumulateAndGet(n, (current, added) -> {
+          long sum = current + added;
+          return sum < 0 ? Long.MAX_VALUE : sum;
+        });
+      }
+      RetryingProcessor.this.drain();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void cancel() {
+      RetryingProcessor.this.cancelled = true;
+      RetryingProcessor.this.drain();
+    }
+  }
+
+  /**
+   * Builds a {@link RetryingProcessor}
+   * @param <T> the element type
+   * @param <R> the result type
+   */
+  public static final class Builder<T, R> {
+    private final RetryExecutor retryExecutor;
+    private final ElementHandler<T, R> handler;
+    private Supplier<RetryPolicy> policyProvider;
+    private boolean ordered = true;
+    private int maxConcurrency = 16;
+
+    /**
+     * Creates a new {@link Builder}
+     * @param retryExecutor the executor the elements are tried on
+     * @param handler the handler every element is passed to
+     */
+    private Builder(RetryExecutor retryExecutor, ElementHandler<T, R> handler) {
+      Objects.requireNonNull(retryExecutor);
+      Objects.requireNonNull(handler);
+      this.retryExecutor = retryExecutor;
+      this.handler = handler;
+      Supplier<RetryPolicy> annotatedPolicy =
+        AnnotationToRetryStrategyFactory.policyProviderForClass(handler.getClass());
+      this.policyProvider = annotatedPolicy != null ? annotatedPolicy : () -> NO_RETRIES;
+    }
+
+    /**
+     * Sets the policy every element is retried on. Defaults to the policy of the handler's retry annotation, or a
+     * single try if it has none
+     * @param retryPolicy the policy, shared by every element
+     * @return this builder
+     */
+    public Builder<T, R> retryPolicy(RetryPolicy retryPolicy) {
+      Objects.requireNonNull(retryPolicy);
+      this.policyProvider = () -> retryPolicy;
+      return this;
+    }
+
+    /**
+     * Sets the strategy elements are retried on. The supplier is called for every element, so a new strategy counts
+     * the tries of one element, while handing back the same thread-safe strategy counts them across the subscription
+     * @param retryStrategy the supplier of the strategy
+     * @return this builder
+     */
+    public Builder<T, R> retryStrategy(Supplier<? extends RetryStrategy> retryStrategy) {
+      Objects.requireNonNull(retryStrategy);
+      this.policyProvider = () -> new RetryStrategyAdapter(retryStrategy.get());
+      return this;
+    }
+
+    /**
+     * Sets whether results are passed on in the order the elements arrived. Unordered, a slow or retrying element
+     * doesn't hold back the results behind it. Defaults to ordered
+     * @param ordered true to keep the order
+     * @return this builder
+     */
+    public Builder<T, R> ordered(boolean ordered) {
+      this.ordered = ordered;
+      return this;
+    }
+
+    /**
+     * Sets the most elements in flight at once, on top of the limit set by the subscriber's demand. Defaults to 16
+     * @param maxConcurrency the most elements in flight
+     * @return this builder
+     */
+    public Builder<T, R> maxConcurrency(int maxConcurrency) {
+      if (maxConcurrency < 1) {
+        throw new IllegalArgumentException("maxConcurrency must be at least 1");
+      }
+      this.maxConcurrency = maxConcurrency;
+      return this;
+    }
+
+    /**
+     * Builds the {@link RetryingProcessor}
+     * @return the processor
+     */
+    public RetryingProcessor<T, R> build() {
+      return new RetryingProcessor<>(this);
+    }
+  }
+}
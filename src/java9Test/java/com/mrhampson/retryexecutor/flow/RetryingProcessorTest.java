@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.flow;
+
+import com.mrhampson.retryexecutor.RetryExecutor;
+import com.mrhampson.retryexecutor.exceptions.RetryExhaustedException;
+import com.mrhampson.retryexecutor.strategies.ConstantPolicy;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RetryingProcessorTest {
+  private final ScheduledExecutorService executorService = Executors.newScheduledThreadPool(4);
+  private final RetryExecutor retryExecutor = new RetryExecutor(this.executorService);
+
+  @After
+  public void tearDown() {
+    this.executorService.shutdownNow();
+  }
+
+  @Test
+  public void testOrderedRetriesFailedElements() throws Exception {
+    AtomicInteger tries = new AtomicInteger();
+    RetryingProcessor<Integer, String> processor = RetryingProcessor.<Integer, String>builder(this.retryExecutor,
+      element -> {
+        if (element == 2 && tries.incrementAndGet() < 3) {
+          throw new IllegalStateException("Thrown on purpose");
+        }
+        return "Element " + element;
+      })
+      .retryPolicy(new ConstantPolicy(10, TimeUnit.MILLISECONDS, 5))
+      .build();
+    TestSubscriber<String> subscriber = new TestSubscriber<>(Long.MAX_VALUE);
+    processor.subscribe(subscriber);
+    try (SubmissionPublisher<Integer> publisher = new SubmissionPublisher<>()) {
+      publisher.subscribe(processor);
+      for (int i = 1; i <= 4; i++) {
+        publisher.submit(i);
+      }
+    }
+    assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+    assertNull(subscriber.error);
+    assertEquals(Arrays.asList("Element 1", "Element 2", "Element 3", "Element 4"), subscriber.items);
+    assertEquals(3, tries.get());
+  }
+
+  @Test
+  public void testDemandLimitsElementsInFlight() throws Exception {
+    AtomicInteger handled = new AtomicInteger();
+    RetryingProcessor<Integer, Integer> processor = RetryingProcessor.<Integer, Integer>builder(this.retryExecutor,
+      element -> {
+        handled.incrementAndGet();
+        return element;
+      })
+      .build();
+    TestSubscriber<Integer> subscriber = new TestSubscriber<>(2);
+    processor.subscribe(subscriber);
+    SubmissionPublisher<Integer> publisher = new SubmissionPublisher<>();
+    publisher.subscribe(processor);
+    for (int i = 1; i <= 10; i++) {
+      publisher.submit(i);
+    }
+    Thread.sleep(200);
+    assertEquals(2, handled.get());
+    assertEquals(Arrays.asList(1, 2), subscriber.items);
+    subscriber.subscription.request(3);
+    Thread.sleep(200);
+    assertEquals(5, handled.get());
+    subscriber.subscription.cancel();
+    publisher.close();
+  }
+
+  @Test
+  public void testUnorderedPassesOnResultsAsTheyFinish() throws Exception {
+    RetryingProcessor<Integer, Integer> processor = RetryingProcessor.<Integer, Integer>builder(this.retryExecutor,
+      element -> {
+        if (element == 1) {
+          Thread.sleep(300);
+        }
+        return element;
+      })
+      .ordered(false)
+      .build();
+    TestSubscriber<Integer> subscriber = new TestSubscriber<>(Long.MAX_VALUE);
+    processor.subscribe(subscriber);
+    try (SubmissionPublisher<Integer> publisher = new SubmissionPublisher<>()) {
+      publisher.subscribe(processor);
+      publisher.submit(1);
+      publisher.submit(2);
+    }
+    assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList(2, 1), subscriber.items);
+  }
+
+  @Test
+  public void testElementThatGivesUpFailsTheStream() throws Exception {
+    RetryingProcessor<Integer, Integer> processor = RetryingProcessor.<Integer, Integer>builder(this.retryExecutor,
+      element -> {
+        throw new IllegalStateException("Thrown on purpose");
+      })
+      .retryPolicy(new ConstantPolicy(1, TimeUnit.MILLISECONDS, 2))
+      .build();
+    TestSubscriber<Integer> subscriber = new TestSubscriber<>(Long.MAX_VALUE);
+    processor.subscribe(subscriber);
+    SubmissionPublisher<Integer> publisher = new SubmissionPublisher<>();
+    publisher.subscribe(processor);
+    publisher.submit(1);
+    assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+    assertTrue(subscriber.error instanceof RetryExhaustedException);
+    assertEquals(3, ((RetryExhaustedException)subscriber.error).getAttempts());
+    publisher.close();
+  }
+
+  @Test
+  public void testNullResultFailsTheStream() throws Exception {
+    RetryingProcessor<Integer, Integer> processor =
+      RetryingProcessor.<Integer, Integer>builder(this.retryExecutor, element -> null).build();
+    TestSubscriber<Integer> subscriber = new TestSubscriber<>(Long.MAX_VALUE);
+    processor.subscribe(subscriber);
+    SubmissionPublisher<Integer> publisher = new SubmissionPublisher<>();
+    publisher.subscribe(processor);
+    publisher.submit(1);
+    assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+    assertTrue(subscriber.error instanceof NullPointerException);
+    assertTrue(subscriber.items.isEmpty());
+    publisher.close();
+  }
+
+  private static final class TestSubscriber<R> implements Flow.Subscriber<R> {
+    private final long initialDemand;
+    private final List<R> items = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile Flow.Subscription subscription;
+    private volatile Throwable error;
+
+    private TestSubscriber(long initialDemand) {
+      this.initialDemand = initialDemand;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      subscription.request(this.initialDemand);
+    }
+
+    @Override
+    public void onNext(R item) {
+      this.items.add(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      this.error = throwable;
+      this.done.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+      this.done.countDown();
+    }
+  }
+}
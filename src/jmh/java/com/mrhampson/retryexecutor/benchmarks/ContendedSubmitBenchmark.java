@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.benchmarks;
+
+import com.mrhampson.retryexecutor.RetryExecutor;
+import com.mrhampson.retryexecutor.annotations.RetryWithFixedDelay;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how submission throughput scales as more threads submit annotated tasks to one shared executor
+ * @author Marshall Hampson
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ContendedSubmitBenchmark {
+  private final RetryExecutor retryExecutor = new RetryExecutor(new DirectScheduler());
+  private final Runnable task = new AnnotatedTask();
+
+  @Benchmark
+  @Threads(1)
+  public void submitters01() {
+    this.retryExecutor.execute(this.task);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void submitters04() {
+    this.retryExecutor.execute(this.task);
+  }
+
+  @Benchmark
+  @Threads(16)
+  public void submitters16() {
+    this.retryExecutor.execute(this.task);
+  }
+
+  @Benchmark
+  @Threads(64)
+  public void submitters64() {
+    this.retryExecutor.execute(this.task);
+  }
+
+  @RetryWithFixedDelay(delay = 1, delayUnit = TimeUnit.MILLISECONDS, maxTries = 5)
+  static class AnnotatedTask implements Runnable {
+    @Override
+    public void run() {
+      Blackhole.consumeCPU(1);
+    }
+  }
+}
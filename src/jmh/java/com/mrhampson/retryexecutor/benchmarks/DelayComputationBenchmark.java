@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.benchmarks;
+
+import com.mrhampson.retryexecutor.strategies.ConstantPolicy;
+import com.mrhampson.retryexecutor.strategies.ExponentialPolicy;
+import com.mrhampson.retryexecutor.strategies.ExponentialStrategy;
+import com.mrhampson.retryexecutor.strategies.JitterMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long the policies and strategies take to compute a delay
+ * @author Marshall Hampson
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DelayComputationBenchmark {
+  private static final int MAX_TRIES = 16;
+
+  @Param({"NONE", "FULL", "EQUAL", "DECORRELATED"})
+  public JitterMode jitterMode;
+
+  private final ConstantPolicy constantPolicy = new ConstantPolicy(10, TimeUnit.MILLISECONDS, MAX_TRIES);
+  private ExponentialPolicy exponentialPolicy;
+  private int attemptNumber;
+  private long previousDelayMillis;
+
+  @Setup
+  public void setUp() {
+    this.exponentialPolicy =
+      new ExponentialPolicy(10, 10_000, TimeUnit.MILLISECONDS, 2, MAX_TRIES, this.jitterMode);
+  }
+
+  @Benchmark
+  public long constantPolicy() {
+    return this.constantPolicy.getMillisDelayBeforeNextTry(this.nextAttemptNumber(), null);
+  }
+
+  @Benchmark
+  public long exponentialPolicy() {
+    this.previousDelayMillis = this.exponentialPolicy
+      .getMillisDelayBeforeNextTry(this.nextAttemptNumber(), this.previousDelayMillis, null);
+    return this.previousDelayMillis;
+  }
+
+  @Benchmark
+  public long exponentialStrategy() {
+    ExponentialStrategy strategy = new ExponentialStrategy(this.exponentialPolicy);
+    long delay = 0;
+    for (int i = 0; i < MAX_TRIES; i++) {
+      delay += strategy.getMillisDelayBeforeNextTry();
+    }
+    return delay;
+  }
+
+  /**
+   * Cycles the attempt number through the allowed tries
+   * @return the next attempt number
+   */
+  private int nextAttemptNumber() {
+    this.attemptNumber = this.attemptNumber % MAX_TRIES + 1;
+    return this.attemptNumber;
+  }
+}
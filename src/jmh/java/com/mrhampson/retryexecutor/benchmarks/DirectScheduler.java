@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.benchmarks;
+
+import com.mrhampson.retryexecutor.scheduling.Cancellable;
+import com.mrhampson.retryexecutor.scheduling.RetryScheduler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link RetryScheduler} that runs every task on the calling thread and ignores delays, so the benchmarks measure
+ * the executor's own overhead rather than thread handoffs and timers
+ * @author Marshall Hampson
+ */
+final class DirectScheduler implements RetryScheduler {
+  private static final Cancellable NOT_CANCELLABLE = () -> false;
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void execute(Runnable task) {
+    task.run();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Cancellable schedule(Runnable task, long delay, TimeUnit unit) {
+    task.run();
+    return NOT_CANCELLABLE;
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.benchmarks;
+
+import com.mrhampson.retryexecutor.RetryExecutor;
+import com.mrhampson.retryexecutor.annotations.RetryWithFixedDelay;
+import com.mrhampson.retryexecutor.strategies.ConstantPolicy;
+import com.mrhampson.retryexecutor.strategies.ConstantStrategy;
+import com.mrhampson.retryexecutor.strategies.RetryPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of submitting a task that succeeds on its first try through each entry point
+ * @author Marshall Hampson
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ExecuteBenchmark {
+  private final RetryExecutor retryExecutor = new RetryExecutor(new DirectScheduler());
+  private final RetryPolicy sharedPolicy = new ConstantPolicy(1, TimeUnit.MILLISECONDS, 5);
+  private final Runnable plainTask = new PlainTask();
+  private final Runnable annotatedTask = new AnnotatedTask();
+
+  @Benchmark
+  public void executeUnannotated() {
+    this.retryExecutor.execute(this.plainTask);
+  }
+
+  @Benchmark
+  public void executeAnnotated() {
+    this.retryExecutor.execute(this.annotatedTask);
+  }
+
+  @Benchmark
+  public void executeWithStrategy() {
+    this.retryExecutor.execute(this.plainTask, new ConstantStrategy(1, TimeUnit.MILLISECONDS, 5));
+  }
+
+  @Benchmark
+  public void executeWithSharedPolicy() {
+    this.retryExecutor.execute(this.plainTask, this.sharedPolicy);
+  }
+
+  @Benchmark
+  public void submitWithSharedPolicy(Blackhole blackhole) {
+    blackhole.consume(this.retryExecutor.submit(() -> Boolean.TRUE, this.sharedPolicy));
+  }
+
+  static class PlainTask implements Runnable {
+    @Override
+    public void run() {
+      Blackhole.consumeCPU(1);
+    }
+  }
+
+  @RetryWithFixedDelay(delay = 1, delayUnit = TimeUnit.MILLISECONDS, maxTries = 5)
+  static class AnnotatedTask extends PlainTask {
+  }
+}
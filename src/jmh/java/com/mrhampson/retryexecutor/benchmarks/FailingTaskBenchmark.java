@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.benchmarks;
+
+import com.mrhampson.retryexecutor.RetryExecutor;
+import com.mrhampson.retryexecutor.strategies.ConstantPolicy;
+import com.mrhampson.retryexecutor.strategies.ConstantStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the fail/reschedule loop of a task that fails on every try until it runs out of tries
+ * @author Marshall Hampson
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FailingTaskBenchmark {
+  private static final RuntimeException FAILURE = new RuntimeException("Thrown on purpose", null, false, false) { };
+
+  @Param({"1", "10", "100"})
+  public int retries;
+
+  private RetryExecutor retryExecutor;
+  private ConstantPolicy policy;
+  private final Runnable failingTask = () -> {
+    throw FAILURE;
+  };
+
+  @Setup
+  public void setUp() {
+    this.retryExecutor = new RetryExecutor(new DirectScheduler());
+    this.policy = new ConstantPolicy(0, TimeUnit.MILLISECONDS, this.retries);
+  }
+
+  @Benchmark
+  public void failWithPolicy() {
+    this.retryExecutor.execute(this.failingTask, this.policy);
+  }
+
+  @Benchmark
+  public void failWithStrategy() {
+    this.retryExecutor.execute(this.failingTask, new ConstantStrategy(0, TimeUnit.MILLISECONDS, this.retries));
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.benchmarks;
+
+import com.mrhampson.retryexecutor.RetryExecutor;
+import com.mrhampson.retryexecutor.scheduling.HashedWheelScheduler;
+import com.mrhampson.retryexecutor.strategies.ConstantPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a task that fails on every try through a {@link HashedWheelScheduler}, so retries go through the timer.
+ * Compare the GC profiler's gc.alloc.rate.norm across retry counts, it should stay flat as retries reuse their timer
+ * entry
+ * @author Marshall Hampson
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WheelRetryBenchmark {
+  private static final RuntimeException FAILURE = new RuntimeException("Thrown on purpose", null, false, false) { };
+
+  @Param({"1", "10", "100"})
+  public int retries;
+
+  private HashedWheelScheduler scheduler;
+  private RetryExecutor retryExecutor;
+  private ConstantPolicy policy;
+  private final Callable<Object> failingTask = () -> {
+    throw FAILURE;
+  };
+
+  @Setup
+  public void setUp() {
+    this.scheduler = new HashedWheelScheduler(Runnable::run, 1, TimeUnit.MILLISECONDS, 512);
+    this.retryExecutor = new RetryExecutor(this.scheduler);
+    this.policy = new ConstantPolicy(0, TimeUnit.MILLISECONDS, this.retries);
+  }
+
+  @TearDown
+  public void tearDown() {
+    this.scheduler.close();
+  }
+
+  @Benchmark
+  public Object failOnWheel() {
+    return this.retryExecutor.submit(this.failingTask, this.policy).handle((result, failure) -> failure).join();
+  }
+}
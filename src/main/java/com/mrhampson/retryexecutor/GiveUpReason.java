@@ -0,0 +1,68 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor;
+
+/**
+ * Why a task stopped trying
+ * @author Marshall Hampson
+ */
+public enum GiveUpReason {
+  /**
+   * The policy ran out of tries
+   */
+  MAX_TRIES,
+  /**
+   * The {@link com.mrhampson.retryexecutor.budget.RetryBudget} denied a retry
+   */
+  RETRY_BUDGET,
+  /**
+   * The task's {@link com.mrhampson.retryexecutor.circuitbreaker.CircuitBreaker} was open and rejects tries
+   */
+  CIRCUIT_OPEN,
+  /**
+   * The failure is one that retrying won't fix, as decided by {@link
+   * com.mrhampson.retryexecutor.strategies.RetryPolicy#isRetryable(Throwable)}, or an {@link Error}
+   */
+  NOT_RETRYABLE,
+  /**
+   * The executor was over its {@link RetryCapacity}, so the task gave up rather than retry, see
+   * {@link OverflowPolicy#FAIL_RETRY}
+   */
+  CAPACITY,
+  /**
+   * The task was dropped while waiting for a retry to make room for a new task, see {@link OverflowPolicy#DROP_OLDEST}
+   */
+  DROPPED,
+  /**
+   * The next try wouldn't have started before the deadline of the task's policy, see
+   * {@link com.mrhampson.retryexecutor.strategies.RetryPolicy#getDeadlineMillis()}
+   */
+  DEADLINE,
+  /**
+   * The thread waiting out the backoff before the next try was interrupted, see
+   * {@link com.mrhampson.retryexecutor.scheduling.RetryScheduler#backsOffInline()}
+   */
+  INTERRUPTED,
+  /**
+   * The scheduler accepted the next try but couldn't run it after all, usually because it was shut down meanwhile,
+   * see {@link com.mrhampson.retryexecutor.scheduling.RejectionAware}
+   */
+  REJECTED
+}
@@ -0,0 +1,45 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor;
+
+/**
+ * What a {@link RetryExecutor} does when its {@link RetryCapacity} is used up
+ * @author Marshall Hampson
+ */
+public enum OverflowPolicy {
+  /**
+   * New tasks are refused with a {@link java.util.concurrent.RejectedExecutionException}, admitted tasks keep retrying
+   */
+  REJECT,
+  /**
+   * The submitting thread waits until a task finishes
+   */
+  BLOCK,
+  /**
+   * The task that has been waiting for a retry the longest gives up to make room. New tasks are refused if no task
+   * is waiting for a retry
+   */
+  DROP_OLDEST,
+  /**
+   * New tasks are always admitted, but while the cap is exceeded a failed try gives up instead of retrying, so the
+   * depth drains back under the cap
+   */
+  FAIL_RETRY
+}
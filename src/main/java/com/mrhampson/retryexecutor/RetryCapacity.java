@@ -0,0 +1,216 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caps the number of tasks a {@link RetryExecutor} holds at once, counting each task with a retry policy from the
+ * moment it is submitted until it succeeds or gives up, whether it is running, queued or waiting for a retry. Keeps
+ * memory predictable when an outage leaves tasks backing off faster than they finish. The depth is a lock-free
+ * counter, only submitters blocked by {@link OverflowPolicy#BLOCK} take a lock
+ * @author Marshall Hampson
+ */
+public final class RetryCapacity {
+  private final int maxTasks;
+  private final OverflowPolicy overflowPolicy;
+  private final AtomicInteger depth = new AtomicInteger();
+  private final ReentrantLock waitLock = new ReentrantLock();
+  private final Condition roomAvailable = this.waitLock.newCondition();
+  private volatile int waitingSubmitters;
+  private final Queue<Evictable> waitingForRetry;
+  private final AtomicInteger waitingForRetryEntries = new AtomicInteger();
+
+  /**
+   * Creates a new {@link RetryCapacity}
+   * @param maxTasks the most tasks held at once
+   * @param overflowPolicy what happens when the cap is reached
+   */
+  public RetryCapacity(int maxTasks, OverflowPolicy overflowPolicy) {
+    Objects.requireNonNull(overflowPolicy);
+    if (maxTasks < 1) {
+      throw new IllegalArgumentException("maxTasks must be at least 1");
+    }
+    this.maxTasks = maxTasks;
+    this.overflowPolicy = overflowPolicy;
+    this.waitingForRetry = overflowPolicy == OverflowPolicy.DROP_OLDEST ? new ConcurrentLinkedQueue<>() : null;
+  }
+
+  /**
+   * Gets the number of tasks held right now
+   * @return the depth
+   */
+  public int getDepth() {
+    return this.depth.get();
+  }
+
+  /**
+   * Gets the most tasks held at once
+   * @return the cap
+   */
+  public int getMaxTasks() {
+    return this.maxTasks;
+  }
+
+  /**
+   * Gets what happens when the cap is reached
+   * @return the overflow policy
+   */
+  public OverflowPolicy getOverflowPolicy() {
+    return this.overflowPolicy;
+  }
+
+  /**
+   * Makes room for a new task
+   * @throws RejectedExecutionException if the task is refused
+   */
+  void acquire() {
+    while (true) {
+      int depth = this.depth.get();
+      if (depth < this.maxTasks) {
+        if (this.depth.compareAndSet(depth, depth + 1)) {
+          return;
+        }
+        continue;
+      }
+      switch (this.overflowPolicy) {
+        case BLOCK:
+          this.awaitRoom();
+          break;
+        case DROP_OLDEST:
+          if (!this.evictOldest()) {
+            throw new RejectedExecutionException("All " + this.maxTasks + " tasks are running, none can be dropped");
+          }
+          break;
+        case FAIL_RETRY:
+          this.depth.incrementAndGet();
+          return;
+        default:
+          throw new RejectedExecutionException("Retry capacity of " + this.maxTasks + " tasks is used up");
+      }
+    }
+  }
+
+  /**
+   * Gives back the room of a task that finished
+   */
+  void release() {
+    this.depth.decrementAndGet();
+    if (this.waitingSubmitters > 0) {
+      this.waitLock.lock();
+      try {
+        this.roomAvailable.signal();
+      }
+      finally {
+        this.waitLock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Checks whether a failed task may schedule a retry
+   * @return false if the task should give up to bring the depth back under the cap
+   */
+  boolean mayRetry() {
+    return this.overflowPolicy != OverflowPolicy.FAIL_RETRY || this.depth.get() <= this.maxTasks;
+  }
+
+  /**
+   * Notes a task that started waiting for a retry, so it can be dropped to make room
+   * @param task the task
+   */
+  void onWaitingForRetry(Evictable task) {
+    if (this.waitingForRetry == null) {
+      return;
+    }
+    this.waitingForRetry.add(task);
+    if (this.waitingForRetryEntries.incrementAndGet() > 2 * this.maxTasks) {
+      // Entries of tasks that have since run are only skipped when polled, sweep them out now and then
+      for (Iterator<Evictable> entries = this.waitingForRetry.iterator(); entries.hasNext(); ) {
+        if (!entries.next().isWaitingForRetry()) {
+          entries.remove();
+          this.waitingForRetryEntries.decrementAndGet();
+        }
+      }
+    }
+  }
+
+  /**
+   * Drops the task that has been waiting for a retry the longest
+   * @return true if a task was dropped
+   */
+  private boolean evictOldest() {
+    Evictable oldest;
+    while ((oldest = this.waitingForRetry.poll()) != null) {
+      this.waitingForRetryEntries.decrementAndGet();
+      if (oldest.evict()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Waits until the depth is under the cap
+   * @throws RejectedExecutionException if the thread is interrupted while waiting
+   */
+  private void awaitRoom() {
+    this.waitLock.lock();
+    try {
+      this.waitingSubmitters++;
+      while (this.depth.get() >= this.maxTasks) {
+        this.roomAvailable.await();
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RejectedExecutionException("Interrupted while waiting for retry capacity", e);
+    }
+    finally {
+      this.waitingSubmitters--;
+      this.waitLock.unlock();
+    }
+  }
+
+  /**
+   * A task that can be dropped while it waits for a retry
+   */
+  interface Evictable {
+
+    /**
+     * Checks whether the task is still waiting for its retry
+     * @return true if it is waiting
+     */
+    boolean isWaitingForRetry();
+
+    /**
+     * Makes the task give up if it is still waiting for its retry
+     * @return true if the task gave up
+     */
+    boolean evict();
+  }
+}
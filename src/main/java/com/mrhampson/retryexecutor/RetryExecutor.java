@@ -19,31 +19,163 @@
 
 package com.mrhampson.retryexecutor;
 
+import com.mrhampson.retryexecutor.annotations.CoalesceDuplicates;
+import com.mrhampson.retryexecutor.budget.RetryBudget;
+import com.mrhampson.retryexecutor.circuitbreaker.CircuitBreaker;
+import com.mrhampson.retryexecutor.circuitbreaker.CircuitBreakerConfig;
+import com.mrhampson.retryexecutor.circuitbreaker.CircuitBreakerRegistry;
+import com.mrhampson.retryexecutor.circuitbreaker.OpenCircuitBehavior;
+import com.mrhampson.retryexecutor.exceptions.AttemptTimeoutException;
+import com.mrhampson.retryexecutor.exceptions.CircuitBreakerOpenException;
+import com.mrhampson.retryexecutor.exceptions.MaxTriesExceededException;
+import com.mrhampson.retryexecutor.exceptions.RetryBudgetExhaustedException;
+import com.mrhampson.retryexecutor.exceptions.RetryCapacityExceededException;
+import com.mrhampson.retryexecutor.exceptions.RetryDeadlineExceededException;
+import com.mrhampson.retryexecutor.exceptions.RetryExhaustedException;
+import com.mrhampson.retryexecutor.hedging.HedgePolicy;
+import com.mrhampson.retryexecutor.journal.JournaledTask;
+import com.mrhampson.retryexecutor.journal.RetryJournal;
+import com.mrhampson.retryexecutor.metrics.NoOpRetryListener;
+import com.mrhampson.retryexecutor.metrics.RetryListener;
+import com.mrhampson.retryexecutor.ratelimit.RateLimiter;
+import com.mrhampson.retryexecutor.ratelimit.RateLimiterRegistry;
+import com.mrhampson.retryexecutor.scheduling.Cancellable;
+import com.mrhampson.retryexecutor.scheduling.DeadlineAware;
+import com.mrhampson.retryexecutor.scheduling.HashedWheelScheduler;
+import com.mrhampson.retryexecutor.scheduling.RejectionAware;
+import com.mrhampson.retryexecutor.scheduling.RetryScheduler;
+import com.mrhampson.retryexecutor.scheduling.ScheduledExecutorServiceScheduler;
+import com.mrhampson.retryexecutor.scheduling.ThreadPerTaskScheduler;
 import com.mrhampson.retryexecutor.strategies.AnnotationToRetryStrategyFactory;
+import com.mrhampson.retryexecutor.strategies.RetryPolicy;
 import com.mrhampson.retryexecutor.strategies.RetryStrategy;
+import com.mrhampson.retryexecutor.strategies.RetryStrategyAdapter;
 
-import java.lang.annotation.Annotation;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * RetryExecutor
- * An executor that will retry tasks when they throw an exception according to a particular {@link RetryStrategy}
+ * An executor that will retry tasks when they throw an exception according to a particular {@link RetryPolicy} or
+ * {@link RetryStrategy}
  * @author Marshall Hampson
  */
 public class RetryExecutor implements Executor {
 
-  private final ScheduledExecutorService delegateExecutor;
+  /**
+   * The most failures a submitted task keeps for its {@link RetryExhaustedException}
+   */
+  private static final int MAX_RECORDED_FAILURES = 16;
+
+  /**
+   * Journal task id of a task whose serializer refused it, or whose journal failed
+   */
+  private static final long NOT_JOURNALABLE = -1;
+
+  /**
+   * States of a task held within a {@link RetryCapacity}
+   */
+  private static final int TASK_RUNNING = 0;
+  private static final int TASK_WAITING_FOR_RETRY = 1;
+  private static final int TASK_DONE = 2;
+
+  /**
+   * Policy for submitted tasks that aren't annotated, they get a single try
+   */
+  private static final RetryPolicy NO_RETRIES = (attemptNumber, lastFailure) -> {
+    throw new MaxTriesExceededException();
+  };
+
+  /**
+   * Whether a task class is annotated with {@link CoalesceDuplicates}
+   */
+  private static final ClassValue<Boolean> COALESCES_DUPLICATES = new ClassValue<Boolean>() {
+    @Override
+    protected Boolean computeValue(Class<?> type) {
+      return type.isAnnotationPresent(CoalesceDuplicates.class);
+    }
+  };
+
+  private final RetryScheduler scheduler;
+  private final Function<Object, ?> taskKeyFunction;
+  private final RetryBudget retryBudget;
+  private final CircuitBreakerRegistry circuitBreakers;
+  private final RateLimiterRegistry rateLimiters;
+  private final RetryJournal retryJournal;
+  private final RetryCapacity capacity;
+  private final RetryBudget hedgeBudget;
+  private final RetryListener retryListener;
+  private final boolean listening;
+  private final Function<Object, ?> coalescingKeyFunction;
+  private final ConcurrentMap<Object, AbstractRetryTask> inFlight = new ConcurrentHashMap<>();
 
   /**
    * Creates a new {@link RetryExecutor}
    * @param scheduledExecutorService the scheduledExecutorService this executor will run tasks on
    */
   public RetryExecutor(ScheduledExecutorService scheduledExecutorService) {
-    Objects.requireNonNull(scheduledExecutorService);
-    this.delegateExecutor = scheduledExecutorService;
+    this(new ScheduledExecutorServiceScheduler(scheduledExecutorService));
+  }
+
+  /**
+   * Creates a new {@link RetryExecutor}
+   * @param retryScheduler the scheduler this executor will run tasks and schedule retries on, e.g. a
+   *                       {@link com.mrhampson.retryexecutor.scheduling.HashedWheelScheduler} when a lot of tasks can
+   *                       be backing off at once
+   */
+  public RetryExecutor(RetryScheduler retryScheduler) {
+    this(builder(retryScheduler));
+  }
+
+  /**
+   * Creates a new {@link RetryExecutor} from a builder
+   * @param builder the builder
+   */
+  private RetryExecutor(Builder builder) {
+    this.scheduler = builder.retryScheduler;
+    this.taskKeyFunction = builder.taskKeyFunction;
+    this.retryBudget = builder.retryBudget;
+    this.circuitBreakers = builder.circuitBreakers;
+    this.rateLimiters = builder.rateLimiters;
+    this.retryJournal = builder.retryJournal;
+    this.capacity = builder.capacity;
+    this.hedgeBudget = builder.hedgeBudget;
+    this.retryListener = builder.retryListener;
+    this.listening = builder.retryListener != NoOpRetryListener.INSTANCE;
+    this.coalescingKeyFunction = builder.coalescingKeyFunction;
+  }
+
+  /**
+   * Starts building a {@link RetryExecutor} with optional features
+   * @param scheduledExecutorService the scheduledExecutorService the executor will run tasks on
+   * @return the builder
+   */
+  public static Builder builder(ScheduledExecutorService scheduledExecutorService) {
+    return builder(new ScheduledExecutorServiceScheduler(scheduledExecutorService));
+  }
+
+  /**
+   * Starts building a {@link RetryExecutor} with optional features
+   * @param retryScheduler the scheduler the executor will run tasks and schedule retries on
+   * @return the builder
+   */
+  public static Builder builder(RetryScheduler retryScheduler) {
+    return new Builder(retryScheduler);
   }
 
   /**
@@ -52,15 +184,56 @@ public class RetryExecutor implements Executor {
   @Override
   public void execute(Runnable command) {
     Objects.requireNonNull(command);
-    Annotation[] annotations = command.getClass().getAnnotations();
-    RetryStrategy retryStrategy = getFirstStrategyFromAnnotations(annotations);
-    if (retryStrategy != null) {
-      this.execute(command, retryStrategy);
+    Supplier<RetryPolicy> policyProvider = AnnotationToRetryStrategyFactory.policyProviderForClass(command.getClass());
+    if (policyProvider != null) {
+      this.execute(command, policyProvider.get());
+    } else if (this.circuitBreakers.configFor(command.getClass()) != null
+      || this.rateLimiters.rateLimiterFor(command.getClass()) != null || this.coalescingKeyOf(command) != null) {
+      this.execute(command, NO_RETRIES);
     } else {
-      this.delegateExecutor.execute(command);
+      this.scheduler.execute(command, this.scheduler.usesTaskKeys() ? this.taskKeyFunction.apply(command) : null);
     }
   }
 
+  /**
+   * Reschedules the tasks an earlier run left waiting for a retry in the journal. Each task picks up its try count
+   * and runs when its retry was due, right away if that has passed. Tasks use the policy of their class's retry
+   * annotation, a task whose class isn't annotated gets one last try
+   * @return the number of tasks rescheduled
+   * @throws IllegalStateException if the executor has no journal
+   */
+  public int recoverJournaledTasks() {
+    if (this.retryJournal == null) {
+      throw new IllegalStateException("No retry journal was configured");
+    }
+    int recovered = 0;
+    long now = System.currentTimeMillis();
+    for (JournaledTask journaledTask : this.retryJournal.pendingTasks()) {
+      if (!(journaledTask.getTask() instanceof Runnable)) {
+        this.retryJournal.recordCompleted(journaledTask.getTaskId());
+        continue;
+      }
+      Runnable runnable = (Runnable)journaledTask.getTask();
+      Supplier<RetryPolicy> policyProvider =
+        AnnotationToRetryStrategyFactory.policyProviderForClass(runnable.getClass());
+      AbstractRetryTask wrapper =
+        new RunnableWrapper(runnable, policyProvider != null ? policyProvider.get() : NO_RETRIES);
+      wrapper.restore(journaledTask);
+      wrapper.admit();
+      wrapper.awaitingRetry = true;
+      try {
+        this.scheduler.schedule(wrapper, Math.max(0, journaledTask.getDueEpochMillis() - now), TimeUnit.MILLISECONDS,
+          wrapper.getKey());
+      }
+      catch (RejectedExecutionException rejected) {
+        wrapper.release();
+        throw rejected;
+      }
+      recovered++;
+    }
+    return recovered;
+  }
+
   /**
    * Executres a task according to a particular {@link RetryStrategy}
    * @param command the command to run
@@ -69,44 +242,301 @@ public class RetryExecutor implements Executor {
   public void execute(Runnable command, RetryStrategy retryStrategy) {
     Objects.requireNonNull(command);
     Objects.requireNonNull(retryStrategy);
-    this.delegateExecutor.execute(new RunnableWrapper(command, retryStrategy));
+    this.execute(command, new RetryStrategyAdapter(retryStrategy));
   }
 
   /**
-   * Gets the first {@link RetryStrategy} we can construct from the annotations
-   * @param annotations the annotations
-   * @return a {@link RetryStrategy} if one could be built otherwise null
+   * Executes a task according to a particular {@link RetryPolicy}
+   * @param command the command to run
+   * @param retryPolicy the policy used to reschedule upon exception, may be shared with other tasks
    */
-  private static RetryStrategy getFirstStrategyFromAnnotations(Annotation[] annotations) {
-    Objects.requireNonNull(annotations);
-    for (Annotation annotation : annotations) {
-      RetryStrategy retryStrategy = null;
-      try {
-        retryStrategy = AnnotationToRetryStrategyFactory.fromAnnotation(annotation);
+  public void execute(Runnable command, RetryPolicy retryPolicy) {
+    Objects.requireNonNull(command);
+    Objects.requireNonNull(retryPolicy);
+    Object coalescingKey = this.coalescingKeyOf(command);
+    if (coalescingKey == null || !(this.inFlight.get(coalescingKey) instanceof RunnableWrapper)) {
+      this.start(new RunnableWrapper(command, retryPolicy), coalescingKey);
+    }
+  }
+
+  /**
+   * Submits a task to run according to the policy from its annotation. An unannotated task is tried once
+   * @param task the task to run
+   * @param <T> the result type
+   * @return a future that completes with the task's result, or with a {@link RetryExhaustedException} once the task
+   * has run out of tries
+   */
+  public <T> CompletableFuture<T> submit(Callable<T> task) {
+    Objects.requireNonNull(task);
+    Supplier<RetryPolicy> policyProvider = AnnotationToRetryStrategyFactory.policyProviderForClass(task.getClass());
+    return this.submit(task, policyProvider != null ? policyProvider.get() : NO_RETRIES);
+  }
+
+  /**
+   * Submits a task to run according to a particular {@link RetryStrategy}
+   * @param task the task to run
+   * @param retryStrategy the strategy used to reschedule upon exception
+   * @param <T> the result type
+   * @return a future that completes with the task's result, or with a {@link RetryExhaustedException} once the task
+   * has run out of tries
+   */
+  public <T> CompletableFuture<T> submit(Callable<T> task, RetryStrategy retryStrategy) {
+    Objects.requireNonNull(task);
+    Objects.requireNonNull(retryStrategy);
+    return this.submit(task, new RetryStrategyAdapter(retryStrategy));
+  }
+
+  /**
+   * Submits a task to run according to a particular {@link RetryPolicy}. Cancelling the returned future stops any
+   * further tries, including one that is waiting out its backoff
+   * @param task the task to run
+   * @param retryPolicy the policy used to reschedule upon exception, may be shared with other tasks
+   * @param <T> the result type
+   * @return a future that completes with the task's result, or with a {@link RetryExhaustedException} once the task
+   * has run out of tries
+   */
+  public <T> CompletableFuture<T> submit(Callable<T> task, RetryPolicy retryPolicy) {
+    Objects.requireNonNull(task);
+    Objects.requireNonNull(retryPolicy);
+    return this.submitWrapped(task, () -> new CallableWrapper<>(task, retryPolicy, null));
+  }
+
+  /**
+   * Submits a task to run according to a particular {@link RetryPolicy}, hedging tries that run long. While a try is
+   * still running after the policy's delay a copy of it is started, and the first copy to succeed completes the
+   * future while the others are interrupted. A try fails once every copy has failed, then the retry policy applies as
+   * usual. Hedges are taken from the {@link Builder#hedgeBudget(RetryBudget) hedge budget} if there is one. Only use
+   * this for tasks that are safe to run more than once at a time, such as reads
+   * @param task the task to run
+   * @param retryPolicy the policy used to reschedule upon exception, may be shared with other tasks
+   * @param hedgePolicy the policy that decides when to hedge, should be shared by the tasks of a call path
+   * @param <T> the result type
+   * @return a future that completes with the task's result, or with a {@link RetryExhaustedException} once the task
+   * has run out of tries
+   */
+  public <T> CompletableFuture<T> submit(Callable<T> task, RetryPolicy retryPolicy, HedgePolicy hedgePolicy) {
+    Objects.requireNonNull(task);
+    Objects.requireNonNull(retryPolicy);
+    Objects.requireNonNull(hedgePolicy);
+    return this.submitWrapped(task, () -> new CallableWrapper<>(task, retryPolicy, hedgePolicy));
+  }
+
+  /**
+   * Starts a submitted task, or coalesces it onto a task with the same coalescing key that is still in flight. The
+   * wrapper is only created once no such task was found, and only admitted once it has claimed the key
+   * @param task the user's task
+   * @param wrapperFactory creates the wrapper that runs the task
+   * @param <T> the result type
+   * @return the new task's future, or a future that completes with the result of the task in flight
+   */
+  private <T> CompletableFuture<T> submitWrapped(Callable<T> task, Supplier<CallableWrapper<T>> wrapperFactory) {
+    Object coalescingKey = this.coalescingKeyOf(task);
+    AbstractRetryTask inFlight = coalescingKey != null ? this.inFlight.get(coalescingKey) : null;
+    if (!(inFlight instanceof CallableWrapper)) {
+      CallableWrapper<T> wrapper = wrapperFactory.get();
+      inFlight = this.start(wrapper, coalescingKey);
+      if (inFlight == null) {
+        return wrapper.future;
       }
-      catch (IllegalArgumentException ignored) {
-        continue;
+    }
+    @SuppressWarnings("unchecked")
+    CompletableFuture<T> inFlightFuture = ((CallableWrapper<T>)inFlight).future;
+    // A copy, so a duplicate's submitter can't cancel the task for everyone else
+    return inFlightFuture.thenApply(Function.identity());
+  }
+
+  /**
+   * Gets the key tasks are coalesced by, from the {@link Builder#coalescingKeyFunction(Function) key function} or
+   * else the task itself if its class is annotated with {@link CoalesceDuplicates}
+   * @param task the user's task
+   * @return the key, null if the task isn't coalesced
+   */
+  private Object coalescingKeyOf(Object task) {
+    Object coalescingKey = this.coalescingKeyFunction != null ? this.coalescingKeyFunction.apply(task) : null;
+    return coalescingKey != null || !COALESCES_DUPLICATES.get(task.getClass()) ? coalescingKey : task;
+  }
+
+  /**
+   * Admits a new task and hands it to the scheduler for its first try, unless a task of the same kind with its
+   * coalescing key got in flight first. A task that loses the race is dropped before it takes any capacity or budget
+   * @param wrapper the task
+   * @param coalescingKey the key the task is coalesced by, null if it isn't
+   * @return the task in flight the new one was coalesced onto, null if the new one was started
+   * @throws RejectedExecutionException if the {@link RetryCapacity} or the scheduler refuses the task
+   */
+  private AbstractRetryTask start(AbstractRetryTask wrapper, Object coalescingKey) {
+    if (coalescingKey != null) {
+      AbstractRetryTask inFlight = this.inFlight.putIfAbsent(coalescingKey, wrapper);
+      if (inFlight == null) {
+        wrapper.coalescingKey = coalescingKey;
       }
-      return retryStrategy;
+      else if (inFlight.getClass() == wrapper.getClass()) {
+        return inFlight;
+      }
+    }
+    try {
+      wrapper.admit();
+      this.scheduler.execute(wrapper, wrapper.getKey());
+    }
+    catch (RejectedExecutionException rejected) {
+      // Gives back the key too, and fails the future duplicates may have joined meanwhile
+      wrapper.release();
+      wrapper.onRetryRejected(rejected);
+      throw rejected;
     }
     return null;
   }
 
   /**
-   * An internal wrapper class that handles executing the runnable
+   * The loop shared by the wrappers: run a try, and on failure ask the policy when to run the next one
    */
-  private final class RunnableWrapper implements Runnable {
-    private final Runnable runnable;
-    private final RetryStrategy retryStrategy;
+  private abstract class AbstractRetryTask
+    implements Runnable, RetryCapacity.Evictable, DeadlineAware, RejectionAware {
+    private final Object task;
+    private final RetryPolicy retryPolicy;
+    private final Object key;
+    private final CircuitBreaker circuitBreaker;
+    private final RateLimiter rateLimiter;
+    private final AtomicInteger capacityState;
+    private final long deadlineNanos;
+    private volatile Cancellable pendingRetry;
+    private volatile Object coalescingKey;
+    /** Set while a try is with the scheduler, so only a scheduler that accepted it can reject it later */
+    private volatile boolean awaitingRetry;
+    private boolean holdsPermit;
+    private int failedAttempts;
+    private long previousDelayMillis;
+    private long journalTaskId;
+    private long dueNanos;
+    private boolean retryInline;
+    private long inlineRetryDeadlineNanos;
+    private AtomicBoolean inlineRetryCancelled;
 
     /**
-     * Creates a new {@link RunnableWrapper}
-     * @param runnable the runnable to run
-     * @param retryStrategy the strategy used to reschedule upon exception
+     * Creates a new {@link AbstractRetryTask}, which holds nothing until it is {@link #admit() admitted}
+     * @param task the user's task
+     * @param retryPolicy the policy used to reschedule upon exception
+     */
+    private AbstractRetryTask(Object task, RetryPolicy retryPolicy) {
+      RetryExecutor executor = RetryExecutor.this;
+      this.capacityState = executor.capacity != null ? new AtomicInteger(TASK_DONE) : null;
+      CircuitBreakerConfig circuitBreakerConfig = executor.circuitBreakers.configFor(task.getClass());
+      this.task = task;
+      this.retryPolicy = retryPolicy;
+      this.rateLimiter = executor.rateLimiters.rateLimiterFor(task.getClass());
+      this.key = executor.retryBudget != null || executor.hedgeBudget != null || circuitBreakerConfig != null
+        || this.rateLimiter != null || executor.scheduler.usesTaskKeys() || retryPolicy.isAdaptive()
+        ? executor.taskKeyFunction.apply(task)
+        : null;
+      this.circuitBreaker = circuitBreakerConfig != null
+        ? executor.circuitBreakers.circuitBreakerFor(this.key, circuitBreakerConfig)
+        : null;
+      if (executor.listening) {
+        this.dueNanos = System.nanoTime();
+      }
+      long deadlineMillis = retryPolicy.getDeadlineMillis();
+      this.deadlineNanos = deadlineMillis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis) : 0;
+    }
+
+    /**
+     * Takes the task's room in the {@link RetryCapacity} and counts its first try against the budgets, once it is
+     * known to be a new task rather than a duplicate
+     * @throws RejectedExecutionException if the executor's {@link RetryCapacity} refuses the task
+     */
+    void admit() {
+      RetryExecutor executor = RetryExecutor.this;
+      if (executor.capacity != null) {
+        executor.capacity.acquire();
+        this.capacityState.set(TASK_RUNNING);
+      }
+      if (executor.retryBudget != null) {
+        executor.retryBudget.onFirstAttempt(this.key);
+      }
+    }
+
+    /**
+     * Gets the user's task
+     * @return the task
+     */
+    protected final Object getTask() {
+      return this.task;
+    }
+
+    /**
+     * Gets the key of the task, only set when a keyed feature is in use
+     * @return the key, null if no keyed feature is in use
+     */
+    protected final Object getKey() {
+      return this.key;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long getDeadlineNanos() {
+      return this.deadlineNanos;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final int getFailedAttempts() {
+      return this.failedAttempts;
+    }
+
+    /**
+     * Checks whether the task was finished from the outside, e.g. cancelled, and shouldn't run again
+     * @return true if the task is finished
+     */
+    protected boolean isFinished() {
+      return false;
+    }
+
+    /**
+     * Runs a single try
+     * @throws Exception if the try failed
+     */
+    protected abstract void runAttempt() throws Exception;
+
+    /**
+     * Called with every failed try before the policy is consulted
+     * @param failure the failure
+     */
+    protected void onFailure(Throwable failure) {
+    }
+
+    /**
+     * Called once the task gives up
+     * @param attempts the number of tries that were made
+     * @param reason why the task gave up
+     */
+    protected void onExhausted(int attempts, GiveUpReason reason) {
+    }
+
+    /**
+     * Called when the next try has been handed to the scheduler
+     * @param pendingRetry the scheduled try
+     */
+    protected void onRetryScheduled(Cancellable pendingRetry) {
+    }
+
+    /**
+     * Checks whether the task should be recorded in the {@link RetryJournal} while it waits for a retry
+     * @return true if the task should survive a restart
      */
-    private RunnableWrapper(Runnable runnable, RetryStrategy retryStrategy) {
-      this.runnable = runnable;
-      this.retryStrategy = retryStrategy;
+    protected boolean isDurable() {
+      // A submitted task isn't, nobody is left waiting on its future after a restart
+      return false;
+    }
+
+    /**
+     * Called when the task's next try, or its first, was refused
+     * @param rejected the rejection
+     */
+    protected void onRetryRejected(RejectedExecutionException rejected) {
+      throw rejected;
     }
 
     /**
@@ -114,13 +544,961 @@ public class RetryExecutor implements Executor {
      */
     @Override
     public void run() {
+      this.awaitingRetry = false;
+      this.runTry();
+      while (this.retryInline) {
+        this.retryInline = false;
+        if (!ThreadPerTaskScheduler.parkUntil(this.inlineRetryDeadlineNanos, this.inlineRetryCancelled)) {
+          if (this.inlineRetryCancelled.get()) {
+            // Cancelled or evicted, whoever stopped the wait already finished the task
+            this.release();
+          }
+          else {
+            // Interrupted, leave the flag set for the thread's owner
+            this.giveUp(GiveUpReason.INTERRUPTED);
+          }
+          return;
+        }
+        this.runTry();
+      }
+    }
+
+    /**
+     * Gives up on the task when the scheduler that accepted its next try can't run it after all. The task stays in
+     * the journal, if it was in it, so a later run can recover it
+     * @param rejected why the try won't run
+     */
+    @Override
+    public final void onRejected(RejectedExecutionException rejected) {
+      if (!this.awaitingRetry) {
+        return;
+      }
+      this.awaitingRetry = false;
+      this.onFailure(rejected);
+      this.giveUp(GiveUpReason.REJECTED);
+    }
+
+    /**
+     * Runs one try if the circuit breaker allows it, and arranges the next one if it fails
+     */
+    private void runTry() {
+      if (this.isFinished()) {
+        this.release();
+        return;
+      }
+      AtomicInteger capacityState = this.capacityState;
+      if (capacityState != null && capacityState.get() != TASK_RUNNING
+        && !capacityState.compareAndSet(TASK_WAITING_FOR_RETRY, TASK_RUNNING)) {
+        // Dropped while it waited
+        return;
+      }
+      if (this.rateLimiter != null && !this.holdsPermit) {
+        long permitWaitNanos = this.rateLimiter.reservePermit(this.key);
+        if (permitWaitNanos > 0) {
+          // Wait for the permit in the scheduler, and don't reserve another one when the task comes back
+          this.holdsPermit = true;
+          this.scheduleRetry(TimeUnit.NANOSECONDS.toMillis(permitWaitNanos - 1) + 1);
+          return;
+        }
+      }
+      this.holdsPermit = false;
+      CircuitBreaker circuitBreaker = this.circuitBreaker;
+      if (circuitBreaker != null && !circuitBreaker.tryAcquirePermission()) {
+        if (circuitBreaker.getConfig().getWhenOpen() == OpenCircuitBehavior.HOLD) {
+          this.scheduleRetry(circuitBreaker.getMillisUntilNextPermission());
+        }
+        else {
+          this.giveUp(GiveUpReason.CIRCUIT_OPEN);
+        }
+        return;
+      }
+      RetryListener listener = RetryExecutor.this.retryListener;
+      boolean listening = RetryExecutor.this.listening;
+      boolean adaptive = this.retryPolicy.isAdaptive();
+      long startNanos = 0;
+      if (listening || adaptive) {
+        startNanos = System.nanoTime();
+      }
+      if (listening) {
+        listener.onAttemptStarted(this.task, this.failedAttempts + 1, startNanos - this.dueNanos);
+      }
+      AttemptWatchdog watchdog = this.startWatchdog();
+      Exception failure = null;
       try {
-        this.runnable.run();
+        this.runAttempt();
       }
       catch (Exception e) {
-        long nextTryDelay = this.retryStrategy.getMillisDelayBeforeNextTry();
-        RetryExecutor.this.delegateExecutor.schedule(this, nextTryDelay, TimeUnit.MILLISECONDS);
+        failure = e;
+      }
+      catch (Error e) {
+        if (watchdog != null) {
+          watchdog.stop();
+        }
+        if (circuitBreaker != null) {
+          circuitBreaker.onFailure();
+        }
+        if (adaptive) {
+          this.retryPolicy.onTryFinished(this.key, e, System.nanoTime() - startNanos);
+        }
+        if (listening) {
+          listener.onAttemptFailed(this.task, this.failedAttempts + 1, e, System.nanoTime() - startNanos);
+        }
+        this.onFailure(e);
+        this.failedAttempts++;
+        this.giveUp(GiveUpReason.NOT_RETRYABLE);
+        throw e;
+      }
+      if (watchdog != null && watchdog.stop() && failure != null) {
+        failure = new AttemptTimeoutException(watchdog.timeoutMillis, failure);
+      }
+      if (failure != null) {
+        if (circuitBreaker != null) {
+          circuitBreaker.onFailure();
+        }
+        if (adaptive) {
+          this.retryPolicy.onTryFinished(this.key, failure, System.nanoTime() - startNanos);
+        }
+        if (listening) {
+          listener.onAttemptFailed(this.task, this.failedAttempts + 1, failure, System.nanoTime() - startNanos);
+        }
+        this.retryAfterFailure(failure);
+        return;
+      }
+      if (circuitBreaker != null) {
+        circuitBreaker.onSuccess();
+      }
+      if (adaptive) {
+        this.retryPolicy.onTryFinished(this.key, null, System.nanoTime() - startNanos);
+      }
+      this.journalCompleted();
+      this.release();
+      if (listening) {
+        listener.onSuccess(this.task, this.failedAttempts + 1, System.nanoTime() - startNanos);
+      }
+    }
+
+    /**
+     * Arms the timer that interrupts the try about to run if it overruns the policy's timeout or the task's deadline
+     * @return the watchdog to stop once the try is over, null if the try may run as long as it takes
+     */
+    private AttemptWatchdog startWatchdog() {
+      long timeoutMillis = this.retryPolicy.getAttemptTimeoutMillis();
+      if (this.deadlineNanos != 0) {
+        long millisLeft = Math.max(1, TimeUnit.NANOSECONDS.toMillis(this.deadlineNanos - System.nanoTime()));
+        timeoutMillis = timeoutMillis == 0 ? millisLeft : Math.min(timeoutMillis, millisLeft);
+      }
+      if (timeoutMillis == 0) {
+        return null;
+      }
+      AttemptWatchdog watchdog = new AttemptWatchdog(Thread.currentThread(), timeoutMillis);
+      watchdog.timer = AttemptTimer.INSTANCE.schedule(watchdog, timeoutMillis, TimeUnit.MILLISECONDS);
+      return watchdog;
+    }
+
+    /**
+     * Asks the policy and the budget whether the task may try again, and schedules the next try if it may
+     * @param failure the failure of the try that just ran
+     */
+    private void retryAfterFailure(Exception failure) {
+      this.onFailure(failure);
+      if (!this.retryPolicy.isRetryable(failure)) {
+        this.failedAttempts++;
+        this.giveUp(GiveUpReason.NOT_RETRYABLE);
+        return;
+      }
+      long nextTryDelay;
+      try {
+        nextTryDelay = this.retryPolicy.getMillisDelayBeforeNextTry(
+          this.key, ++this.failedAttempts, this.previousDelayMillis, failure);
+      }
+      catch (MaxTriesExceededException exhausted) {
+        this.giveUp(GiveUpReason.MAX_TRIES);
+        return;
+      }
+      if (this.deadlineNanos != 0
+        && System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(nextTryDelay) - this.deadlineNanos >= 0) {
+        this.giveUp(GiveUpReason.DEADLINE);
+        return;
+      }
+      RetryCapacity capacity = RetryExecutor.this.capacity;
+      if (capacity != null && !capacity.mayRetry()) {
+        this.giveUp(GiveUpReason.CAPACITY);
+        return;
+      }
+      RetryBudget retryBudget = RetryExecutor.this.retryBudget;
+      if (retryBudget != null && !retryBudget.tryAcquireRetry(this.key)) {
+        this.giveUp(GiveUpReason.RETRY_BUDGET);
+        return;
+      }
+      this.previousDelayMillis = nextTryDelay;
+      if (RetryExecutor.this.listening) {
+        RetryExecutor.this.retryListener.onRetryScheduled(this.task, this.failedAttempts + 1, nextTryDelay);
+      }
+      this.journalRetry(nextTryDelay);
+      this.scheduleRetry(nextTryDelay);
+    }
+
+    /**
+     * Records the task as waiting for a retry, if it is durable and the executor has a journal. A task that can't be
+     * serialized, or whose journal fails, keeps retrying in memory only
+     * @param delayMillis the delay before the next try
+     */
+    private void journalRetry(long delayMillis) {
+      RetryJournal retryJournal = RetryExecutor.this.retryJournal;
+      if (retryJournal == null || this.journalTaskId == NOT_JOURNALABLE || !this.isDurable()) {
+        return;
+      }
+      try {
+        if (this.journalTaskId == 0) {
+          this.journalTaskId = retryJournal.nextTaskId();
+        }
+        retryJournal.recordPending(this.journalTaskId, this.task, this.failedAttempts, delayMillis,
+          System.currentTimeMillis() + delayMillis);
+      }
+      catch (RuntimeException notJournaled) {
+        // Not serializable, or the journal couldn't write or was closed
+        this.journalTaskId = NOT_JOURNALABLE;
+      }
+    }
+
+    /**
+     * Records the task as completed, if it was ever journaled. A journal that fails here leaves the record pending,
+     * the task still finishes
+     */
+    private void journalCompleted() {
+      if (this.journalTaskId <= 0) {
+        return;
+      }
+      try {
+        RetryExecutor.this.retryJournal.recordCompleted(this.journalTaskId);
+      }
+      catch (RuntimeException notJournaled) {
+        // A later run may retry the task once more, which is better than leaking what it holds
+        this.journalTaskId = NOT_JOURNALABLE;
+      }
+    }
+
+    /**
+     * Picks up the retry state of a task read back from the journal
+     * @param journaledTask the task
+     */
+    private void restore(JournaledTask journaledTask) {
+      this.journalTaskId = journaledTask.getTaskId();
+      this.failedAttempts = journaledTask.getFailedAttempts();
+      this.previousDelayMillis = journaledTask.getPreviousDelayMillis();
+    }
+
+    /**
+     * Hands the next try to the scheduler
+     * @param delayMillis the delay before the next try
+     */
+    private void scheduleRetry(long delayMillis) {
+      AtomicInteger capacityState = this.capacityState;
+      if (capacityState != null) {
+        if (!capacityState.compareAndSet(TASK_RUNNING, TASK_WAITING_FOR_RETRY)) {
+          // Finished from the outside while the try ran
+          return;
+        }
+        RetryExecutor.this.capacity.onWaitingForRetry(this);
+      }
+      if (RetryExecutor.this.listening) {
+        this.dueNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+      }
+      if (RetryExecutor.this.scheduler.backsOffInline()) {
+        // Wait on this thread once the try has unwound, see run()
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Thread thread = Thread.currentThread();
+        this.inlineRetryDeadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        this.inlineRetryCancelled = cancelled;
+        this.retryInline = true;
+        Cancellable inlineRetry = () -> {
+          if (cancelled.compareAndSet(false, true)) {
+            LockSupport.unpark(thread);
+            return true;
+          }
+          return false;
+        };
+        this.pendingRetry = inlineRetry;
+        this.onRetryScheduled(inlineRetry);
+        return;
+      }
+      Cancellable pendingRetry;
+      this.awaitingRetry = true;
+      try {
+        // Lets the scheduler reuse the handle of the try that just failed instead of allocating one per retry
+        pendingRetry = RetryExecutor.this.scheduler.reschedule(
+          this.pendingRetry, this, delayMillis, TimeUnit.MILLISECONDS, this.key);
+      }
+      catch (RejectedExecutionException rejected) {
+        this.awaitingRetry = false;
+        this.release();
+        this.onRetryRejected(rejected);
+        return;
+      }
+      this.pendingRetry = pendingRetry;
+      this.onRetryScheduled(pendingRetry);
+    }
+
+    /**
+     * Gives back what the task holds while in flight, its room in the {@link RetryCapacity} once and its coalescing
+     * key
+     */
+    final void release() {
+      AtomicInteger capacityState = this.capacityState;
+      if (capacityState != null && capacityState.getAndSet(TASK_DONE) != TASK_DONE) {
+        RetryExecutor.this.capacity.release();
       }
+      Object coalescingKey = this.coalescingKey;
+      if (coalescingKey != null) {
+        RetryExecutor.this.inFlight.remove(coalescingKey, this);
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isWaitingForRetry() {
+      return this.capacityState.get() == TASK_WAITING_FOR_RETRY;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean evict() {
+      if (!this.capacityState.compareAndSet(TASK_WAITING_FOR_RETRY, TASK_DONE)) {
+        return false;
+      }
+      Cancellable pendingRetry = this.pendingRetry;
+      if (pendingRetry != null) {
+        pendingRetry.cancel();
+      }
+      RetryExecutor.this.capacity.release();
+      this.giveUp(GiveUpReason.DROPPED);
+      return true;
+    }
+
+    /**
+     * Stops trying
+     * @param reason why the task gave up
+     */
+    private void giveUp(GiveUpReason reason) {
+      if (reason != GiveUpReason.REJECTED) {
+        this.journalCompleted();
+      }
+      this.release();
+      if (RetryExecutor.this.listening) {
+        RetryExecutor.this.retryListener.onExhausted(this.task, this.failedAttempts, reason);
+      }
+      this.onExhausted(this.failedAttempts, reason);
+    }
+  }
+
+  /**
+   * An internal wrapper class that handles executing the runnable. A task's tries never overlap, and each reschedule
+   * goes through the executor which publishes the previous writes, so the attempt count can be a plain field
+   */
+  private final class RunnableWrapper extends AbstractRetryTask {
+
+    /**
+     * Creates a new {@link RunnableWrapper}
+     * @param runnable the runnable to run
+     * @param retryPolicy the policy used to reschedule upon exception
+     */
+    private RunnableWrapper(Runnable runnable, RetryPolicy retryPolicy) {
+      super(runnable, retryPolicy);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void runAttempt() {
+      ((Runnable)this.getTask()).run();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isDurable() {
+      // No caller waits on a runnable's outcome, so it can be replayed by a later run
+      return true;
+    }
+  }
+
+  /**
+   * An internal wrapper class that handles executing a callable and completing its future
+   * @param <T> the result type
+   */
+  private final class CallableWrapper<T> extends AbstractRetryTask {
+    private final RetryFuture<T> future = new RetryFuture<>();
+    private final HedgePolicy hedgePolicy;
+    private ArrayDeque<Throwable> failures;
+
+    /**
+     * Creates a new {@link CallableWrapper}
+     * @param callable the callable to run
+     * @param retryPolicy the policy used to reschedule upon exception
+     * @param hedgePolicy the policy that decides when to hedge a try, null to never hedge
+     */
+    private CallableWrapper(Callable<T> callable, RetryPolicy retryPolicy, HedgePolicy hedgePolicy) {
+      super(callable, retryPolicy);
+      this.hedgePolicy = hedgePolicy;
+      this.future.onCancelled = this::release;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void admit() {
+      super.admit();
+      if (this.hedgePolicy != null && RetryExecutor.this.hedgeBudget != null) {
+        RetryExecutor.this.hedgeBudget.onFirstAttempt(this.getKey());
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void runAttempt() throws Exception {
+      if (this.hedgePolicy != null) {
+        new HedgedTry().run();
+        return;
+      }
+      T result = ((Callable<T>)this.getTask()).call();
+      // Make room before the caller hears of the result, so it can submit again straight away
+      this.release();
+      this.future.complete(result);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isFinished() {
+      return this.future.isDone();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onFailure(Throwable failure) {
+      if (this.failures == null) {
+        this.failures = new ArrayDeque<>();
+      }
+      else if (this.failures.size() == MAX_RECORDED_FAILURES) {
+        this.failures.removeFirst();
+      }
+      this.failures.addLast(failure);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onExhausted(int attempts, GiveUpReason reason) {
+      if (reason == GiveUpReason.NOT_RETRYABLE || reason == GiveUpReason.REJECTED) {
+        // Fail with the failure or rejection itself, there's nothing the other tries can add to it
+        this.future.completeExceptionally(this.failures.peekLast());
+        return;
+      }
+      List<Throwable> failures = this.failures != null ? new ArrayList<>(this.failures) : new ArrayList<>();
+      RetryExhaustedException exhausted;
+      switch (reason) {
+        case RETRY_BUDGET:
+          exhausted = new RetryBudgetExhaustedException(attempts, failures);
+          break;
+        case CIRCUIT_OPEN:
+          exhausted = new CircuitBreakerOpenException(attempts, failures);
+          break;
+        case CAPACITY:
+        case DROPPED:
+          exhausted = new RetryCapacityExceededException(attempts, failures);
+          break;
+        case DEADLINE:
+          exhausted = new RetryDeadlineExceededException(attempts, failures);
+          break;
+        default:
+          exhausted = new RetryExhaustedException(attempts, failures);
+      }
+      this.future.completeExceptionally(exhausted);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onRetryRejected(RejectedExecutionException rejected) {
+      this.future.completeExceptionally(rejected);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onRetryScheduled(Cancellable pendingRetry) {
+      this.future.pendingRetry = pendingRetry;
+      if (this.future.isDone()) {
+        // Cancelled while we were scheduling, the cancel may not have seen this retry
+        pendingRetry.cancel();
+      }
+    }
+
+    /**
+     * One try of a hedged task, made of the copies of the call that race each other. The thread that runs the try
+     * runs the first copy and, if it fails, waits for the hedges that have started. Hedges still queued for a thread
+     * are dropped rather than waited for, the waiting thread may be the one they are queued behind. The state is only
+     * touched a few times per copy, so it is guarded by the try's monitor
+     */
+    private final class HedgedTry {
+      private final List<Copy> running = new ArrayList<>(2);
+      private int hedges;
+      private boolean won;
+      private boolean closed;
+      private Exception failure;
+      private Cancellable pendingHedge;
+
+      /**
+       * Runs the try, returning once a copy has succeeded
+       * @throws Exception the failure of the last copy to fail, if every copy failed
+       */
+      private void run() throws Exception {
+        Copy first = new Copy();
+        first.thread = Thread.currentThread();
+        synchronized (this) {
+          this.running.add(first);
+        }
+        this.scheduleHedge();
+        try {
+          this.runCopy(first);
+          synchronized (this) {
+            while (!this.won && this.hasStartedCopy()) {
+              this.wait();
+            }
+            if (!this.won) {
+              throw this.failure;
+            }
+          }
+        }
+        finally {
+          this.close();
+        }
+      }
+
+      /**
+       * Checks whether a copy is running on a thread, as opposed to queued for one or finished
+       * @return true if a copy is running
+       */
+      private boolean hasStartedCopy() {
+        for (Copy copy : this.running) {
+          if (copy.thread != null) {
+            return true;
+          }
+        }
+        return false;
+      }
+
+      /**
+       * Arranges for a hedge to start once the policy's delay has passed
+       */
+      private void scheduleHedge() {
+        Cancellable pendingHedge;
+        try {
+          pendingHedge = RetryExecutor.this.scheduler.schedule(this::startHedge,
+            CallableWrapper.this.hedgePolicy.getHedgeDelayNanos(), TimeUnit.NANOSECONDS, CallableWrapper.this.getKey());
+        }
+        catch (RejectedExecutionException rejected) {
+          // The copies already running carry on without a hedge
+          return;
+        }
+        synchronized (this) {
+          if (this.closed || this.won) {
+            pendingHedge.cancel();
+          }
+          else {
+            this.pendingHedge = pendingHedge;
+          }
+        }
+      }
+
+      /**
+       * Starts a hedge if no copy has finished the try yet and the budget allows it
+       */
+      private void startHedge() {
+        Copy hedge = new Copy();
+        boolean hedgeAgain;
+        synchronized (this) {
+          if (this.closed || this.won || CallableWrapper.this.future.isDone()) {
+            return;
+          }
+          RetryBudget hedgeBudget = RetryExecutor.this.hedgeBudget;
+          if (hedgeBudget != null && !hedgeBudget.tryAcquireRetry(CallableWrapper.this.getKey())) {
+            return;
+          }
+          this.hedges++;
+          hedgeAgain = this.hedges < CallableWrapper.this.hedgePolicy.getMaxHedges();
+          this.running.add(hedge);
+        }
+        try {
+          RetryExecutor.this.scheduler.execute(() -> this.runHedge(hedge), CallableWrapper.this.getKey());
+        }
+        catch (RejectedExecutionException rejected) {
+          this.finishCopy(hedge, false, null);
+          return;
+        }
+        if (hedgeAgain) {
+          this.scheduleHedge();
+        }
+      }
+
+      /**
+       * Runs a hedge on the scheduler's thread, unless the try was settled or given up while it was queued
+       * @param hedge the hedge
+       */
+      private void runHedge(Copy hedge) {
+        synchronized (this) {
+          if (this.won || this.closed) {
+            this.running.remove(hedge);
+            this.notifyAll();
+            return;
+          }
+          hedge.thread = Thread.currentThread();
+        }
+        this.runCopy(hedge);
+      }
+
+      /**
+       * Calls the task on this thread, and completes the future if this copy is the first to succeed
+       * @param copy the copy
+       */
+      @SuppressWarnings("unchecked")
+      private void runCopy(Copy copy) {
+        long startNanos = System.nanoTime();
+        T result = null;
+        boolean succeeded = false;
+        Exception failure = null;
+        boolean first;
+        try {
+          result = ((Callable<T>)CallableWrapper.this.getTask()).call();
+          succeeded = true;
+        }
+        catch (Exception e) {
+          failure = e;
+        }
+        finally {
+          first = this.finishCopy(copy, succeeded, failure);
+        }
+        if (first) {
+          CallableWrapper.this.hedgePolicy.recordLatency(System.nanoTime() - startNanos);
+          CallableWrapper.this.release();
+          CallableWrapper.this.future.complete(result);
+        }
+      }
+
+      /**
+       * Takes a copy out of the race
+       * @param copy the copy
+       * @param succeeded whether the copy succeeded
+       * @param failure the failure of the copy, null if it succeeded or didn't run
+       * @return true if the copy is the first to succeed, the others have been interrupted
+       */
+      private synchronized boolean finishCopy(Copy copy, boolean succeeded, Exception failure) {
+        this.running.remove(copy);
+        copy.thread = null;
+        if (copy.interrupted) {
+          // Interrupted by the winner, which only happens under this lock while the copy is running
+          Thread.interrupted();
+        }
+        boolean first = succeeded && !this.won;
+        if (first) {
+          this.won = true;
+          for (Copy loser : this.running) {
+            loser.interrupt();
+          }
+          this.cancelPendingHedge();
+        }
+        else if (failure != null) {
+          this.failure = failure;
+        }
+        this.notifyAll();
+        return first;
+      }
+
+      /**
+       * Stops further hedges once the thread running the try moves on, and interrupts hedges that can no longer win
+       */
+      private synchronized void close() {
+        this.closed = true;
+        this.cancelPendingHedge();
+        if (!this.won) {
+          for (Copy hedge : this.running) {
+            hedge.interrupt();
+          }
+        }
+      }
+
+      /**
+       * Cancels the hedge that is waiting for its delay, if any
+       */
+      private void cancelPendingHedge() {
+        if (this.pendingHedge != null) {
+          this.pendingHedge.cancel();
+          this.pendingHedge = null;
+        }
+      }
+    }
+  }
+
+  /**
+   * A copy of a hedged try, guarded by the monitor of its {@link CallableWrapper.HedgedTry}
+   */
+  private static final class Copy {
+    private Thread thread;
+    private boolean interrupted;
+
+    /**
+     * Interrupts the copy's thread if the copy has started
+     */
+    private void interrupt() {
+      if (this.thread != null) {
+        this.interrupted = true;
+        this.thread.interrupt();
+      }
+    }
+  }
+
+  /**
+   * The future handed back by {@link #submit(Callable, RetryPolicy)}, cancelling it also cancels the pending retry
+   * @param <T> the result type
+   */
+  private static final class RetryFuture<T> extends CompletableFuture<T> {
+    private volatile Cancellable pendingRetry;
+    private Runnable onCancelled;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      boolean cancelled = super.cancel(mayInterruptIfRunning);
+      Cancellable pendingRetry = this.pendingRetry;
+      if (cancelled && pendingRetry != null) {
+        pendingRetry.cancel();
+      }
+      if (cancelled) {
+        this.onCancelled.run();
+      }
+      return cancelled;
+    }
+  }
+
+  /**
+   * Interrupts a try that runs past its timeout. The interrupt only happens while the try is running, so a timer that
+   * fires late can't hit whatever the thread runs next
+   */
+  private static final class AttemptWatchdog implements Runnable {
+    private final Thread thread;
+    private final long timeoutMillis;
+    /** Only touched by the try's thread */
+    private Cancellable timer;
+    private boolean running = true;
+    private boolean timedOut;
+
+    /**
+     * Creates a new {@link AttemptWatchdog}
+     * @param thread the thread running the try
+     * @param timeoutMillis the timeout of the try
+     */
+    private AttemptWatchdog(Thread thread, long timeoutMillis) {
+      this.thread = thread;
+      this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void run() {
+      if (this.running) {
+        this.timedOut = true;
+        this.thread.interrupt();
+      }
+    }
+
+    /**
+     * Disarms the watchdog once the try is over, clearing its interrupt if the try ignored it
+     * @return true if the try timed out
+     */
+    private synchronized boolean stop() {
+      this.timer.cancel();
+      this.running = false;
+      if (this.timedOut) {
+        Thread.interrupted();
+      }
+      return this.timedOut;
+    }
+  }
+
+  /**
+   * The timer shared by every executor to time out tries, created on first use. Its thread does nothing but
+   * interrupt, so it keeps time even when every thread of a scheduler is stuck in a try
+   */
+  private static final class AttemptTimer {
+    private static final RetryScheduler INSTANCE = new HashedWheelScheduler(Runnable::run);
+  }
+
+  /**
+   * Builds a {@link RetryExecutor} with optional features
+   */
+  public static final class Builder {
+    private final RetryScheduler retryScheduler;
+    private Function<Object, ?> taskKeyFunction = Object::getClass;
+    private RetryBudget retryBudget;
+    private CircuitBreakerRegistry circuitBreakers = new CircuitBreakerRegistry();
+    private RateLimiterRegistry rateLimiters = new RateLimiterRegistry();
+    private RetryJournal retryJournal;
+    private RetryCapacity capacity;
+    private RetryBudget hedgeBudget;
+    private RetryListener retryListener = NoOpRetryListener.INSTANCE;
+    private Function<Object, ?> coalescingKeyFunction;
+
+    /**
+     * Creates a new {@link Builder}
+     * @param retryScheduler the scheduler the executor will run tasks and schedule retries on
+     */
+    private Builder(RetryScheduler retryScheduler) {
+      Objects.requireNonNull(retryScheduler);
+      this.retryScheduler = retryScheduler;
+    }
+
+    /**
+     * Sets the function that groups tasks for the keyed features such as a
+     * {@link com.mrhampson.retryexecutor.budget.KeyedRetryBudget}. It is given the
+     * user's {@link Runnable} or {@link Callable}. Defaults to the task's class
+     * @param taskKeyFunction the function
+     * @return this builder
+     */
+    public Builder taskKeyFunction(Function<Object, ?> taskKeyFunction) {
+      Objects.requireNonNull(taskKeyFunction);
+      this.taskKeyFunction = taskKeyFunction;
+      return this;
+    }
+
+    /**
+     * Sets a budget every retry has to be taken from. Tasks that are denied a retry give up right away
+     * @param retryBudget the budget, e.g. a {@link com.mrhampson.retryexecutor.budget.TokenBucketRetryBudget}
+     * @return this builder
+     */
+    public Builder retryBudget(RetryBudget retryBudget) {
+      Objects.requireNonNull(retryBudget);
+      this.retryBudget = retryBudget;
+      return this;
+    }
+
+    /**
+     * Sets the registry that holds the circuit breakers of the task keys. By default only tasks annotated with
+     * {@link com.mrhampson.retryexecutor.annotations.RetryWithCircuitBreaker} get a breaker, a registry with a default
+     * config puts every task behind one
+     * @param circuitBreakers the registry
+     * @return this builder
+     */
+    public Builder circuitBreakers(CircuitBreakerRegistry circuitBreakers) {
+      Objects.requireNonNull(circuitBreakers);
+      this.circuitBreakers = circuitBreakers;
+      return this;
+    }
+
+    /**
+     * Sets a rate limiter for every task that isn't annotated with
+     * {@link com.mrhampson.retryexecutor.annotations.RetryWithRateLimit}. Annotated tasks always use a limiter built
+     * from their annotation
+     * @param rateLimiter the limiter, e.g. a {@link com.mrhampson.retryexecutor.ratelimit.KeyedRateLimiter}
+     * @return this builder
+     */
+    public Builder rateLimiter(RateLimiter rateLimiter) {
+      Objects.requireNonNull(rateLimiter);
+      this.rateLimiters = new RateLimiterRegistry(rateLimiter);
+      return this;
+    }
+
+    /**
+     * Sets a journal that records executed {@link Runnable}s while they wait for a retry, so
+     * {@link RetryExecutor#recoverJournaledTasks()} can pick them up again after a restart. Submitted tasks aren't
+     * journaled. Tasks the journal can't serialize keep retrying in memory only
+     * @param retryJournal the journal, e.g. a {@link com.mrhampson.retryexecutor.journal.MappedSegmentRetryJournal}
+     * @return this builder
+     */
+    public Builder retryJournal(RetryJournal retryJournal) {
+      Objects.requireNonNull(retryJournal);
+      this.retryJournal = retryJournal;
+      return this;
+    }
+
+    /**
+     * Caps the number of tasks with a retry policy the executor holds at once. Without a capacity there is no cap.
+     * Beware {@link OverflowPolicy#BLOCK} when tasks submit tasks, a full executor can't make room for them
+     * @param capacity the capacity, which also reports the current depth
+     * @return this builder
+     */
+    public Builder capacity(RetryCapacity capacity) {
+      Objects.requireNonNull(capacity);
+      this.capacity = capacity;
+      return this;
+    }
+
+    /**
+     * Sets a budget every hedge has to be taken from, see {@link RetryExecutor#submit(Callable, RetryPolicy,
+     * HedgePolicy)}. Without one only the policy's max hedges limits them. Hedged tasks that are denied a hedge let
+     * their running copies carry on
+     * @param hedgeBudget the budget, e.g. a {@link com.mrhampson.retryexecutor.budget.TokenBucketRetryBudget} with a
+     *                    ratio of 0.05 to add at most 5% to the load
+     * @return this builder
+     */
+    public Builder hedgeBudget(RetryBudget hedgeBudget) {
+      Objects.requireNonNull(hedgeBudget);
+      this.hedgeBudget = hedgeBudget;
+      return this;
+    }
+
+    /**
+     * Sets the listener that receives the events of every task, e.g. a
+     * {@link com.mrhampson.retryexecutor.metrics.RetryMetrics}. Defaults to a listener that ignores them
+     * @param retryListener the listener
+     * @return this builder
+     */
+    public Builder retryListener(RetryListener retryListener) {
+      Objects.requireNonNull(retryListener);
+      this.retryListener = retryListener;
+      return this;
+    }
+
+    /**
+     * Sets the function that gives a task its idempotency key. While a task is in flight, from its first try until it
+     * succeeds or gives up, a task of the same kind with an equal key doesn't run but is coalesced onto it. An
+     * executed duplicate is dropped, a submitted duplicate gets a future that completes with the result of the task in
+     * flight. The function is given the user's {@link Runnable} or {@link Callable} and returns null for tasks that
+     * aren't coalesced. Without one only tasks annotated with {@link CoalesceDuplicates} are coalesced
+     * @param coalescingKeyFunction the function
+     * @return this builder
+     */
+    public Builder coalescingKeyFunction(Function<Object, ?> coalescingKeyFunction) {
+      Objects.requireNonNull(coalescingKeyFunction);
+      this.coalescingKeyFunction = coalescingKeyFunction;
+      return this;
+    }
+
+    /**
+     * Builds the {@link RetryExecutor}
+     * @return the executor
+     */
+    public RetryExecutor build() {
+      return new RetryExecutor(this);
     }
   }
 }
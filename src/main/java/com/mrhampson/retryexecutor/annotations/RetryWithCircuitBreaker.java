@@ -0,0 +1,84 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.annotations;
+
+import com.mrhampson.retryexecutor.circuitbreaker.OpenCircuitBehavior;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Annotation to put tasks behind a circuit breaker shared by every task with the same key, the task's class by default.
+ * Can be combined with one of the retry annotations
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface RetryWithCircuitBreaker {
+  /**
+   * The share of failed tries in the window that opens the circuit
+   * @return the threshold between 0 and 1
+   */
+  double failureRateThreshold() default 0.5;
+
+  /**
+   * The fewest tries in the window before the failure rate is considered
+   * @return the minimum number of tries
+   */
+  int minimumCalls() default 10;
+
+  /**
+   * The length of the sliding window failures are counted over, in {@link #windowUnit()}
+   * @return the window length
+   */
+  long window() default 10;
+
+  /**
+   * The unit of {@link #window()}
+   * @return the unit
+   */
+  TimeUnit windowUnit() default TimeUnit.SECONDS;
+
+  /**
+   * How long the circuit stays open before it lets probes through, in {@link #openDurationUnit()}
+   * @return the open duration
+   */
+  long openDuration() default 30;
+
+  /**
+   * The unit of {@link #openDuration()}
+   * @return the unit
+   */
+  TimeUnit openDurationUnit() default TimeUnit.SECONDS;
+
+  /**
+   * The number of tries let through while half open, all of them must succeed to close the circuit
+   * @return the number of probes
+   */
+  int halfOpenProbes() default 3;
+
+  /**
+   * What happens to a try whose circuit is open
+   * @return the behavior
+   */
+  OpenCircuitBehavior whenOpen() default OpenCircuitBehavior.HOLD;
+}
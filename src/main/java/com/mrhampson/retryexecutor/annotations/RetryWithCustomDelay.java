@@ -18,15 +18,18 @@
 
 package com.mrhampson.retryexecutor.annotations;
 
+import com.mrhampson.retryexecutor.strategies.RetryPolicy;
 import com.mrhampson.retryexecutor.strategies.RetryStrategy;
 
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Annotation to retry with a custom strategy
+ * Annotation to retry with a custom strategy or policy. Exactly one of {@link #retryStrategy()} and
+ * {@link #retryPolicy()} should be set
  */
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.TYPE)
@@ -34,7 +37,45 @@ public @interface RetryWithCustomDelay {
   /**
    * The class to be used for the strategy. Must implement {@link com.mrhampson.retryexecutor.strategies.RetryStrategy}
    * Must have a no-arg constructor
+   * A new instance is created for every task
    * @return the {@link com.mrhampson.retryexecutor.strategies.RetryStrategy} class to use
    */
-  Class<? extends RetryStrategy> retryStrategy();
+  Class<? extends RetryStrategy> retryStrategy() default RetryStrategy.class;
+
+  /**
+   * The class to be used for the policy. Must implement {@link com.mrhampson.retryexecutor.strategies.RetryPolicy}
+   * Must have a no-arg constructor. A single instance is shared by every task of the annotated class
+   * @return the {@link com.mrhampson.retryexecutor.strategies.RetryPolicy} class to use
+   */
+  Class<? extends RetryPolicy> retryPolicy() default RetryPolicy.class;
+
+  /**
+   * The exceptions worth retrying, see {@link RetryWithFixedDelay#retryOn()}
+   * @return the retryable exception classes
+   */
+  Class<? extends Throwable>[] retryOn() default {};
+
+  /**
+   * The exceptions that fail the task right away, see {@link RetryWithFixedDelay#abortOn()}
+   * @return the non-retryable exception classes
+   */
+  Class<? extends Throwable>[] abortOn() default {};
+
+  /**
+   * How long a single try may run, see {@link RetryWithFixedDelay#attemptTimeout()}
+   * @return the timeout, 0 for none
+   */
+  long attemptTimeout() default 0;
+
+  /**
+   * How long the task may keep trying, see {@link RetryWithFixedDelay#deadline()}
+   * @return the deadline, 0 for none
+   */
+  long deadline() default 0;
+
+  /**
+   * The unit of {@link #attemptTimeout()} and {@link #deadline()}
+   * @return the unit
+   */
+  TimeUnit timeoutUnit() default TimeUnit.MILLISECONDS;
 }
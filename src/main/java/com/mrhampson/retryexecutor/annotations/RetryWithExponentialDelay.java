@@ -35,4 +35,47 @@ public @interface RetryWithExponentialDelay {
   long initialDelay();
   TimeUnit initialDelayUnit();
   int maxTries();
+
+  /**
+   * The longest delay between tries, in {@link #initialDelayUnit()}
+   * @return the max delay
+   */
+  long maxDelay() default Long.MAX_VALUE;
+
+  /**
+   * The exceptions worth retrying, see {@link RetryWithFixedDelay#retryOn()}
+   * @return the retryable exception classes
+   */
+  Class<? extends Throwable>[] retryOn() default {};
+
+  /**
+   * The exceptions that fail the task right away, see {@link RetryWithFixedDelay#abortOn()}
+   * @return the non-retryable exception classes
+   */
+  Class<? extends Throwable>[] abortOn() default {};
+
+  /**
+   * Whether a failure's {@link com.mrhampson.retryexecutor.exceptions.RetryAfterHint} replaces the backoff for its
+   * retry, see {@link RetryWithFixedDelay#honorRetryAfter()}
+   * @return true to follow retry-after hints
+   */
+  boolean honorRetryAfter() default false;
+
+  /**
+   * How long a single try may run, see {@link RetryWithFixedDelay#attemptTimeout()}
+   * @return the timeout, 0 for none
+   */
+  long attemptTimeout() default 0;
+
+  /**
+   * How long the task may keep trying, see {@link RetryWithFixedDelay#deadline()}
+   * @return the deadline, 0 for none
+   */
+  long deadline() default 0;
+
+  /**
+   * The unit of {@link #attemptTimeout()} and {@link #deadline()}
+   * @return the unit
+   */
+  TimeUnit timeoutUnit() default TimeUnit.MILLISECONDS;
 }
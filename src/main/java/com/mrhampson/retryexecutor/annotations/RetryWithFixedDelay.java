@@ -34,5 +34,44 @@ public @interface RetryWithFixedDelay {
   long delay();
   TimeUnit delayUnit();
   int maxTries();
-}
 
+  /**
+   * The exceptions worth retrying, subclasses included. If empty, every exception not in {@link #abortOn()} is retried
+   * @return the retryable exception classes
+   */
+  Class<? extends Throwable>[] retryOn() default {};
+
+  /**
+   * The exceptions that fail the task right away, subclasses included. Where both lists match a failure the most
+   * specific class wins
+   * @return the non-retryable exception classes
+   */
+  Class<? extends Throwable>[] abortOn() default {};
+
+  /**
+   * Whether a failure's {@link com.mrhampson.retryexecutor.exceptions.RetryAfterHint} replaces the delay for its
+   * retry. Failures without a hint use the fixed delay
+   * @return true to follow retry-after hints
+   */
+  boolean honorRetryAfter() default false;
+
+  /**
+   * How long a single try may run before its thread is interrupted and the try counts as failed with an
+   * {@link com.mrhampson.retryexecutor.exceptions.AttemptTimeoutException}, in {@link #timeoutUnit()}
+   * @return the timeout, 0 for none
+   */
+  long attemptTimeout() default 0;
+
+  /**
+   * How long the task may keep trying counted from its first try, in {@link #timeoutUnit()}. A retry that wouldn't
+   * start before the deadline isn't made
+   * @return the deadline, 0 for none
+   */
+  long deadline() default 0;
+
+  /**
+   * The unit of {@link #attemptTimeout()} and {@link #deadline()}
+   * @return the unit
+   */
+  TimeUnit timeoutUnit() default TimeUnit.MILLISECONDS;
+}
@@ -0,0 +1,80 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.annotations;
+
+import com.mrhampson.retryexecutor.strategies.JitterMode;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Annotation to retry runnables with a capped exponential delay that is randomized so tasks failing together spread
+ * their retries out
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface RetryWithJitteredDelay {
+  JitterMode jitter();
+  long baseDelay();
+  long maxDelay();
+  TimeUnit delayUnit();
+  int maxTries();
+  int multiplier() default 2;
+
+  /**
+   * The exceptions worth retrying, see {@link RetryWithFixedDelay#retryOn()}
+   * @return the retryable exception classes
+   */
+  Class<? extends Throwable>[] retryOn() default {};
+
+  /**
+   * The exceptions that fail the task right away, see {@link RetryWithFixedDelay#abortOn()}
+   * @return the non-retryable exception classes
+   */
+  Class<? extends Throwable>[] abortOn() default {};
+
+  /**
+   * Whether a failure's {@link com.mrhampson.retryexecutor.exceptions.RetryAfterHint} replaces the backoff for its
+   * retry, see {@link RetryWithFixedDelay#honorRetryAfter()}
+   * @return true to follow retry-after hints
+   */
+  boolean honorRetryAfter() default false;
+
+  /**
+   * How long a single try may run, see {@link RetryWithFixedDelay#attemptTimeout()}
+   * @return the timeout, 0 for none
+   */
+  long attemptTimeout() default 0;
+
+  /**
+   * How long the task may keep trying, see {@link RetryWithFixedDelay#deadline()}
+   * @return the deadline, 0 for none
+   */
+  long deadline() default 0;
+
+  /**
+   * The unit of {@link #attemptTimeout()} and {@link #deadline()}
+   * @return the unit
+   */
+  TimeUnit timeoutUnit() default TimeUnit.MILLISECONDS;
+}
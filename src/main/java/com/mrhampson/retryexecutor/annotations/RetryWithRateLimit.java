@@ -0,0 +1,45 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Annotation to admit tries at a limited rate, shared by every task with the same key, the task's class by default.
+ * Tries that would go over the rate wait in the scheduler until their permit is due. Can be combined with one of the
+ * retry annotations
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface RetryWithRateLimit {
+  long permits();
+  long period() default 1;
+  TimeUnit periodUnit() default TimeUnit.SECONDS;
+
+  /**
+   * How many permits can be taken at once after a quiet spell
+   * @return the burst size
+   */
+  int burst() default 1;
+}
@@ -0,0 +1,40 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.batch;
+
+import java.util.List;
+
+/**
+ * Handles a batch of items in one call, e.g. one bulk request to a downstream API
+ * @param <T> the item type
+ * @param <R> the result type of an item
+ * @author Marshall Hampson
+ */
+@FunctionalInterface
+public interface BatchHandler<T, R> {
+
+  /**
+   * Handles a batch
+   * @param items the items, all with the same batch key
+   * @return one non-null result per item, in the order of the items
+   * @throws Exception if the whole batch failed, every item is then retried on its own policy
+   */
+  List<BatchResult<R>> handle(List<T> items) throws Exception;
+}
@@ -0,0 +1,79 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.batch;
+
+import java.util.Objects;
+
+/**
+ * The outcome of one item of a batch
+ * @param <R> the result type
+ * @author Marshall Hampson
+ */
+public final class BatchResult<R> {
+  private final R value;
+  private final Exception failure;
+
+  /**
+   * Creates a new {@link BatchResult}
+   * @param value the value
+   * @param failure the failure, or null if the item succeeded
+   */
+  private BatchResult(R value, Exception failure) {
+    this.value = value;
+    this.failure = failure;
+  }
+
+  /**
+   * Creates the result of an item that succeeded
+   * @param value the value
+   * @param <R> the result type
+   * @return the result
+   */
+  public static <R> BatchResult<R> success(R value) {
+    return new BatchResult<>(value, null);
+  }
+
+  /**
+   * Creates the result of an item that failed and should be retried on its own policy
+   * @param failure the failure
+   * @param <R> the result type
+   * @return the result
+   */
+  public static <R> BatchResult<R> failure(Exception failure) {
+    Objects.requireNonNull(failure);
+    return new BatchResult<>(null, failure);
+  }
+
+  /**
+   * Gets the value of an item that succeeded
+   * @return the value
+   */
+  public R getValue() {
+    return this.value;
+  }
+
+  /**
+   * Gets the failure of an item that failed
+   * @return the failure, or null if the item succeeded
+   */
+  public Exception getFailure() {
+    return this.failure;
+  }
+}
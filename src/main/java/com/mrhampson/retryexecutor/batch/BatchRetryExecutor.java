@@ -0,0 +1,398 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.batch;
+
+import com.mrhampson.retryexecutor.exceptions.MaxTriesExceededException;
+import com.mrhampson.retryexecutor.exceptions.RetryExhaustedException;
+import com.mrhampson.retryexecutor.scheduling.Cancellable;
+import com.mrhampson.retryexecutor.scheduling.RetryScheduler;
+import com.mrhampson.retryexecutor.strategies.RetryPolicy;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Runs items through a {@link BatchHandler} and retries the ones that fail. Items with the same batch key that come
+ * due within a short window, first tries and retries alike, are handed to the handler together. So when a
+ * downstream recovers, the retries that pile up go out as a few bulk calls instead of one call each. Every item
+ * keeps its own {@link RetryPolicy} and try count
+ * @param <T> the item type
+ * @param <R> the result type of an item
+ * @author Marshall Hampson
+ */
+public class BatchRetryExecutor<T, R> {
+  /**
+   * The most failures an item keeps for its {@link RetryExhaustedException}
+   */
+  private static final int MAX_RECORDED_FAILURES = 16;
+
+  private final RetryScheduler scheduler;
+  private final BatchHandler<T, R> batchHandler;
+  private final Function<? super T, ?> batchKeyFunction;
+  private final long windowMillis;
+  private final int maxBatchSize;
+  private final ConcurrentMap<Object, PendingBatch> pendingBatches = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a new {@link BatchRetryExecutor}
+   * @param builder the builder holding the settings
+   */
+  private BatchRetryExecutor(Builder<T, R> builder) {
+    this.scheduler = builder.scheduler;
+    this.batchHandler = builder.batchHandler;
+    this.batchKeyFunction = builder.batchKeyFunction;
+    this.windowMillis = builder.windowMillis;
+    this.maxBatchSize = builder.maxBatchSize;
+  }
+
+  /**
+   * Starts building a {@link BatchRetryExecutor}
+   * @param scheduler the scheduler batches run on and retries wait in
+   * @param batchHandler the handler the batches are passed to
+   * @param <T> the item type
+   * @param <R> the result type of an item
+   * @return the builder
+   */
+  public static <T, R> Builder<T, R> builder(RetryScheduler scheduler, BatchHandler<T, R> batchHandler) {
+    return new Builder<>(scheduler, batchHandler);
+  }
+
+  /**
+   * Submits an item to be handled in the next batch for its key
+   * @param item the item
+   * @param retryPolicy the policy used to retry the item when its part of a batch fails
+   * @return a future completed with the item's result, or with a {@link RetryExhaustedException} once its tries run
+   * out. Cancelling it drops the item from later batches
+   */
+  public CompletableFuture<R> submit(T item, RetryPolicy retryPolicy) {
+    Objects.requireNonNull(item);
+    Objects.requireNonNull(retryPolicy);
+    BatchItem batchItem = new BatchItem(item, this.batchKeyFunction.apply(item), retryPolicy);
+    this.enqueue(batchItem);
+    return batchItem.future;
+  }
+
+  /**
+   * Adds an item that has come due to the pending batch of its key, and arranges for the batch to be flushed
+   * @param batchItem the item
+   */
+  private void enqueue(BatchItem batchItem) {
+    PendingBatch batch;
+    boolean first;
+    boolean full;
+    while (true) {
+      batch = this.pendingBatches.computeIfAbsent(batchItem.key, PendingBatch::new);
+      synchronized (batch) {
+        if (batch.closed) {
+          // Flushed between the lookup and the lock, it's out of the map by now
+          continue;
+        }
+        batch.items.add(batchItem);
+        first = batch.items.size() == 1;
+        full = batch.items.size() >= this.maxBatchSize;
+        if (full) {
+          this.close(batch);
+        }
+      }
+      break;
+    }
+    try {
+      if (full) {
+        if (batch.flushTimer != null) {
+          batch.flushTimer.cancel();
+        }
+        PendingBatch fullBatch = batch;
+        this.scheduler.execute(() -> this.flush(fullBatch));
+      }
+      else if (first) {
+        PendingBatch openBatch = batch;
+        batch.flushTimer = this.scheduler.schedule(() -> this.flushIfOpen(openBatch), this.windowMillis,
+          TimeUnit.MILLISECONDS);
+      }
+    }
+    catch (RejectedExecutionException rejected) {
+      this.abandon(batch, full, rejected);
+    }
+  }
+
+  /**
+   * Fails every item of a batch nothing is going to flush. A batch whose window timer was refused is closed first,
+   * unless another item filled it meanwhile, then the thread that closed it deals with the batch
+   * @param batch the batch
+   * @param closed whether the calling thread already closed the batch
+   * @param rejected why the batch can't be flushed
+   */
+  private void abandon(PendingBatch batch, boolean closed, RejectedExecutionException rejected) {
+    if (!closed) {
+      synchronized (batch) {
+        if (batch.closed) {
+          return;
+        }
+        this.close(batch);
+      }
+    }
+    for (BatchItem batchItem : batch.items) {
+      batchItem.future.completeExceptionally(rejected);
+    }
+  }
+
+  /**
+   * Flushes a batch when its window ends, unless it was already flushed for being full
+   * @param batch the batch
+   */
+  private void flushIfOpen(PendingBatch batch) {
+    synchronized (batch) {
+      if (batch.closed) {
+        return;
+      }
+      this.close(batch);
+    }
+    this.flush(batch);
+  }
+
+  /**
+   * Stops a batch taking more items, must be called holding its lock
+   * @param batch the batch
+   */
+  private void close(PendingBatch batch) {
+    batch.closed = true;
+    this.pendingBatches.remove(batch.key, batch);
+  }
+
+  /**
+   * Hands a closed batch to the handler and completes or retries each item
+   * @param batch the batch
+   */
+  private void flush(PendingBatch batch) {
+    List<BatchItem> batchItems = new ArrayList<>(batch.items.size());
+    List<T> items = new ArrayList<>(batch.items.size());
+    for (BatchItem batchItem : batch.items) {
+      if (!batchItem.future.isDone()) {
+        batchItems.add(batchItem);
+        items.add(batchItem.item);
+      }
+    }
+    if (items.isEmpty()) {
+      return;
+    }
+    List<BatchResult<R>> results;
+    try {
+      results = this.batchHandler.handle(items);
+      if (results == null || results.size() != items.size()) {
+        throw new IllegalStateException("Batch handler must return one result per item");
+      }
+      for (BatchResult<R> result : results) {
+        if (result == null) {
+          throw new IllegalStateException("Batch handler must not return null results");
+        }
+      }
+    }
+    catch (Exception e) {
+      for (BatchItem batchItem : batchItems) {
+        this.retryAfterFailure(batchItem, e);
+      }
+      return;
+    }
+    catch (Error e) {
+      for (BatchItem batchItem : batchItems) {
+        batchItem.future.completeExceptionally(e);
+      }
+      throw e;
+    }
+    for (int i = 0; i < batchItems.size(); i++) {
+      BatchItem batchItem = batchItems.get(i);
+      BatchResult<R> result = results.get(i);
+      if (result.getFailure() == null) {
+        batchItem.future.complete(result.getValue());
+      }
+      else {
+        this.retryAfterFailure(batchItem, result.getFailure());
+      }
+    }
+  }
+
+  /**
+   * Asks an item's policy whether it may try again, and schedules it to rejoin a batch if it may
+   * @param batchItem the item
+   * @param failure the failure of its last try
+   */
+  private void retryAfterFailure(BatchItem batchItem, Exception failure) {
+    batchItem.recordFailure(failure);
+    if (!batchItem.retryPolicy.isRetryable(failure)) {
+      batchItem.future.completeExceptionally(failure);
+      return;
+    }
+    long nextTryDelay;
+    try {
+      nextTryDelay = batchItem.retryPolicy.getMillisDelayBeforeNextTry(
+        ++batchItem.failedAttempts, batchItem.previousDelayMillis, failure);
+    }
+    catch (MaxTriesExceededException exhausted) {
+      batchItem.future.completeExceptionally(
+        new RetryExhaustedException(batchItem.failedAttempts, new ArrayList<>(batchItem.failures)));
+      return;
+    }
+    batchItem.previousDelayMillis = nextTryDelay;
+    try {
+      this.scheduler.schedule(() -> {
+        if (!batchItem.future.isDone()) {
+          this.enqueue(batchItem);
+        }
+      }, nextTryDelay, TimeUnit.MILLISECONDS);
+    }
+    catch (RejectedExecutionException rejected) {
+      batchItem.future.completeExceptionally(rejected);
+    }
+  }
+
+  /**
+   * An item and its retry state
+   */
+  private final class BatchItem {
+    private final T item;
+    private final Object key;
+    private final RetryPolicy retryPolicy;
+    private final CompletableFuture<R> future = new CompletableFuture<>();
+    private final ArrayDeque<Throwable> failures = new ArrayDeque<>();
+    private int failedAttempts;
+    private long previousDelayMillis;
+
+    /**
+     * Creates a new {@link BatchItem}
+     * @param item the user's item
+     * @param key the batch key of the item
+     * @param retryPolicy the policy used to retry the item
+     */
+    private BatchItem(T item, Object key, RetryPolicy retryPolicy) {
+      this.item = item;
+      this.key = key;
+      this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Keeps a failure for the exhausted exception, dropping the oldest once enough are kept
+     * @param failure the failure
+     */
+    private void recordFailure(Throwable failure) {
+      if (this.failures.size() == MAX_RECORDED_FAILURES) {
+        this.failures.removeFirst();
+      }
+      this.failures.addLast(failure);
+    }
+  }
+
+  /**
+   * The items of a key collected during the current window
+   */
+  private final class PendingBatch {
+    private final Object key;
+    private final List<BatchItem> items = new ArrayList<>();
+    private boolean closed;
+    private volatile Cancellable flushTimer;
+
+    /**
+     * Creates a new {@link PendingBatch}
+     * @param key the batch key
+     */
+    private PendingBatch(Object key) {
+      this.key = key;
+    }
+  }
+
+  /**
+   * Builds a {@link BatchRetryExecutor}
+   * @param <T> the item type
+   * @param <R> the result type of an item
+   */
+  public static final class Builder<T, R> {
+    private final RetryScheduler scheduler;
+    private final BatchHandler<T, R> batchHandler;
+    private Function<? super T, ?> batchKeyFunction = Object::getClass;
+    private long windowMillis = 10;
+    private int maxBatchSize = 100;
+
+    /**
+     * Creates a new {@link Builder}
+     * @param scheduler the scheduler batches run on and retries wait in
+     * @param batchHandler the handler the batches are passed to
+     */
+    private Builder(RetryScheduler scheduler, BatchHandler<T, R> batchHandler) {
+      Objects.requireNonNull(scheduler);
+      Objects.requireNonNull(batchHandler);
+      this.scheduler = scheduler;
+      this.batchHandler = batchHandler;
+    }
+
+    /**
+     * Sets the function that decides which items can share a batch. Defaults to the item's class
+     * @param batchKeyFunction the function
+     * @return this builder
+     */
+    public Builder<T, R> batchKeyFunction(Function<? super T, ?> batchKeyFunction) {
+      Objects.requireNonNull(batchKeyFunction);
+      this.batchKeyFunction = batchKeyFunction;
+      return this;
+    }
+
+    /**
+     * Sets how long a batch collects items after its first one came due. Defaults to 10 millis
+     * @param window the window
+     * @param unit the unit of the window
+     * @return this builder
+     */
+    public Builder<T, R> window(long window, TimeUnit unit) {
+      Objects.requireNonNull(unit);
+      if (window < 0) {
+        throw new IllegalArgumentException("window must not be negative");
+      }
+      this.windowMillis = unit.toMillis(window);
+      return this;
+    }
+
+    /**
+     * Sets the most items in a batch, a full batch is handled without waiting for its window to end. Defaults to 100
+     * @param maxBatchSize the max batch size
+     * @return this builder
+     */
+    public Builder<T, R> maxBatchSize(int maxBatchSize) {
+      if (maxBatchSize < 1) {
+        throw new IllegalArgumentException("maxBatchSize must be at least 1");
+      }
+      this.maxBatchSize = maxBatchSize;
+      return this;
+    }
+
+    /**
+     * Builds the {@link BatchRetryExecutor}
+     * @return the executor
+     */
+    public BatchRetryExecutor<T, R> build() {
+      return new BatchRetryExecutor<>(this);
+    }
+  }
+}
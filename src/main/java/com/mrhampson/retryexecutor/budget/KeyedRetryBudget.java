@@ -0,0 +1,70 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.budget;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * A {@link RetryBudget} that keeps a separate budget per task key, so one failing kind of task can't use up the
+ * retries of the others
+ * @author Marshall Hampson
+ */
+public class KeyedRetryBudget implements RetryBudget {
+  private final Supplier<? extends RetryBudget> budgetFactory;
+  private final ConcurrentMap<Object, RetryBudget> budgets = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a new {@link KeyedRetryBudget}
+   * @param budgetFactory creates the budget for a key the first time it is seen
+   */
+  public KeyedRetryBudget(Supplier<? extends RetryBudget> budgetFactory) {
+    Objects.requireNonNull(budgetFactory);
+    this.budgetFactory = budgetFactory;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void onFirstAttempt(Object key) {
+    this.budgetFor(key).onFirstAttempt(key);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean tryAcquireRetry(Object key) {
+    return this.budgetFor(key).tryAcquireRetry(key);
+  }
+
+  /**
+   * Gets the budget of a key, creating it if needed
+   * @param key the key
+   * @return the budget
+   */
+  private RetryBudget budgetFor(Object key) {
+    RetryBudget budget = this.budgets.get(key);
+    return budget != null ? budget : this.budgets.computeIfAbsent(key, ignored -> this.budgetFactory.get());
+  }
+}
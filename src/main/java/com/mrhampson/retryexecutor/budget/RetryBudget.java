@@ -0,0 +1,41 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.budget;
+
+/**
+ * Caps how many retries a {@link com.mrhampson.retryexecutor.RetryExecutor} makes relative to the number of first
+ * tries, so an outage can't multiply the load by the max tries of every task. Implementations must be thread-safe
+ * @author Marshall Hampson
+ */
+public interface RetryBudget {
+
+  /**
+   * Records a first try, which earns the budget some retries
+   * @param key the key of the task, see {@link com.mrhampson.retryexecutor.RetryExecutor.Builder#taskKeyFunction}
+   */
+  void onFirstAttempt(Object key);
+
+  /**
+   * Takes a retry out of the budget
+   * @param key the key of the task
+   * @return true if the task may retry, false if the budget is used up and the task should give up
+   */
+  boolean tryAcquireRetry(Object key);
+}
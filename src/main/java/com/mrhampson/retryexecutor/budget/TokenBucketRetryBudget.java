@@ -0,0 +1,81 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.budget;
+
+import com.mrhampson.retryexecutor.util.SlidingWindowCounter;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A lock-free {@link RetryBudget} that allows retries to be at most a ratio of the first tries seen over a sliding
+ * window, plus a small reserve so tasks can still retry when traffic is low. The budget is shared by all tasks
+ * whatever their key, a {@link KeyedRetryBudget} keeps one per key. Every first try deposits the ratio in tokens and
+ * every retry withdraws one, both counted by a {@link SlidingWindowCounter}. Concurrent withdrawals aren't
+ * serialized, so under contention the budget can be overdrawn by about one retry per racing thread
+ * @author Marshall Hampson
+ */
+public class TokenBucketRetryBudget implements RetryBudget {
+  private final double retryRatio;
+  private final double reserveTokens;
+  private final SlidingWindowCounter deposits;
+  private final SlidingWindowCounter withdrawals;
+
+  /**
+   * Creates a new {@link TokenBucketRetryBudget}
+   * @param retryRatio the most retries allowed per first try, e.g. 0.1 for retries to be at most 10% of first tries
+   * @param minRetriesPerSecond retries allowed regardless of the ratio
+   * @param window the length of the sliding window
+   * @param windowUnit the unit of the window
+   */
+  public TokenBucketRetryBudget(double retryRatio, int minRetriesPerSecond, long window, TimeUnit windowUnit) {
+    Objects.requireNonNull(windowUnit);
+    if (retryRatio < 0) {
+      throw new IllegalArgumentException("retryRatio must be 0 or greater");
+    }
+    if (minRetriesPerSecond < 0) {
+      throw new IllegalArgumentException("minRetriesPerSecond must be 0 or greater");
+    }
+    this.retryRatio = retryRatio;
+    this.reserveTokens = minRetriesPerSecond * (windowUnit.toNanos(window) / (double)TimeUnit.SECONDS.toNanos(1));
+    this.deposits = new SlidingWindowCounter(window, windowUnit);
+    this.withdrawals = new SlidingWindowCounter(window, windowUnit);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void onFirstAttempt(Object key) {
+    this.deposits.increment();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean tryAcquireRetry(Object key) {
+    if (this.reserveTokens + this.deposits.sum() * this.retryRatio - this.withdrawals.sum() < 1) {
+      return false;
+    }
+    this.withdrawals.increment();
+    return true;
+  }
+}
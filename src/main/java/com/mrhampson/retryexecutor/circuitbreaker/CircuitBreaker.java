@@ -0,0 +1,166 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.circuitbreaker;
+
+import com.mrhampson.retryexecutor.util.SlidingWindowCounter;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A lock-free circuit breaker. Successes and failures are counted over a sliding window while closed, and the circuit
+ * opens once the failure rate crosses the threshold. After the open duration a few probe tries are let through, if
+ * they all succeed the circuit closes again, if any fails it opens again. State changes swap an immutable snapshot
+ * with a CAS so concurrent callers agree on a single transition
+ * @author Marshall Hampson
+ */
+public class CircuitBreaker {
+  private final CircuitBreakerConfig config;
+  private final SlidingWindowCounter successes;
+  private final SlidingWindowCounter failures;
+  private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(new Snapshot(CircuitState.CLOSED, 0));
+
+  /**
+   * Creates a new {@link CircuitBreaker}
+   * @param config the settings
+   */
+  public CircuitBreaker(CircuitBreakerConfig config) {
+    Objects.requireNonNull(config);
+    this.config = config;
+    this.successes = new SlidingWindowCounter(config.getWindow(), config.getWindowUnit());
+    this.failures = new SlidingWindowCounter(config.getWindow(), config.getWindowUnit());
+  }
+
+  /**
+   * Asks to run a try. A permission granted while half open is a probe, the try's outcome must be reported
+   * @return true if the try may run
+   */
+  public boolean tryAcquirePermission() {
+    while (true) {
+      Snapshot current = this.snapshot.get();
+      switch (current.state) {
+        case CLOSED:
+          return true;
+        case OPEN:
+          long now = System.nanoTime();
+          if (now - current.sinceNanos < this.config.getOpenDurationNanos()) {
+            return false;
+          }
+          this.snapshot.compareAndSet(current, new Snapshot(CircuitState.HALF_OPEN, now));
+          break;
+        default:
+          if (current.probesStarted.get() >= this.config.getHalfOpenProbes()) {
+            return false;
+          }
+          return current.probesStarted.incrementAndGet() <= this.config.getHalfOpenProbes();
+      }
+    }
+  }
+
+  /**
+   * Records a successful try
+   */
+  public void onSuccess() {
+    Snapshot current = this.snapshot.get();
+    if (current.state == CircuitState.CLOSED) {
+      this.successes.increment();
+    }
+    else if (current.state == CircuitState.HALF_OPEN
+      && current.probesSucceeded.incrementAndGet() >= this.config.getHalfOpenProbes()
+      && this.snapshot.compareAndSet(current, new Snapshot(CircuitState.CLOSED, System.nanoTime()))) {
+      this.successes.reset();
+      this.failures.reset();
+    }
+  }
+
+  /**
+   * Records a failed try
+   */
+  public void onFailure() {
+    Snapshot current = this.snapshot.get();
+    if (current.state == CircuitState.HALF_OPEN) {
+      this.snapshot.compareAndSet(current, new Snapshot(CircuitState.OPEN, System.nanoTime()));
+    }
+    else if (current.state == CircuitState.CLOSED) {
+      this.failures.increment();
+      long failed = this.failures.sum();
+      long total = failed + this.successes.sum();
+      if (total >= this.config.getMinimumCalls() && failed >= total * this.config.getFailureRateThreshold()) {
+        this.snapshot.compareAndSet(current, new Snapshot(CircuitState.OPEN, System.nanoTime()));
+      }
+    }
+  }
+
+  /**
+   * Gets how long a try that was refused should wait before asking again. While open that's the rest of the open
+   * duration, while half open with every probe taken it's a tenth of the open duration
+   * @return the delay in millis
+   */
+  public long getMillisUntilNextPermission() {
+    Snapshot current = this.snapshot.get();
+    long openDurationNanos = this.config.getOpenDurationNanos();
+    long waitNanos;
+    if (current.state == CircuitState.OPEN) {
+      waitNanos = openDurationNanos - (System.nanoTime() - current.sinceNanos);
+    }
+    else if (current.state == CircuitState.HALF_OPEN) {
+      waitNanos = openDurationNanos / 10;
+    }
+    else {
+      return 0;
+    }
+    return Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+  }
+
+  /**
+   * Gets the current state
+   * @return the state
+   */
+  public CircuitState getState() {
+    return this.snapshot.get().state;
+  }
+
+  /**
+   * Gets the settings
+   * @return the settings
+   */
+  public CircuitBreakerConfig getConfig() {
+    return this.config;
+  }
+
+  /**
+   * The state along with when it was entered and, while half open, the probe counts
+   */
+  private static final class Snapshot {
+    private final CircuitState state;
+    private final long sinceNanos;
+    private final AtomicInteger probesStarted;
+    private final AtomicInteger probesSucceeded;
+
+    private Snapshot(CircuitState state, long sinceNanos) {
+      this.state = state;
+      this.sinceNanos = sinceNanos;
+      this.probesStarted = state == CircuitState.HALF_OPEN ? new AtomicInteger() : null;
+      this.probesSucceeded = state == CircuitState.HALF_OPEN ? new AtomicInteger() : null;
+    }
+  }
+}
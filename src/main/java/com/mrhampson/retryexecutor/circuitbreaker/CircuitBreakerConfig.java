@@ -0,0 +1,170 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.circuitbreaker;
+
+import com.mrhampson.retryexecutor.annotations.RetryWithCircuitBreaker;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The immutable settings of a {@link CircuitBreaker}
+ * @author Marshall Hampson
+ */
+public final class CircuitBreakerConfig {
+
+  /**
+   * Marker cached for classes without the annotation, {@link ClassValue} entries can't be absent
+   */
+  private static final CircuitBreakerConfig NOT_ANNOTATED =
+    new CircuitBreakerConfig(1, 1, 1, TimeUnit.SECONDS, 1, TimeUnit.SECONDS, 1, OpenCircuitBehavior.HOLD);
+
+  private static final ClassValue<CircuitBreakerConfig> ANNOTATED_CONFIGS = new ClassValue<CircuitBreakerConfig>() {
+    @Override
+    protected CircuitBreakerConfig computeValue(Class<?> type) {
+      RetryWithCircuitBreaker annotation = type.getAnnotation(RetryWithCircuitBreaker.class);
+      return annotation == null ? NOT_ANNOTATED : fromAnnotation(annotation);
+    }
+  };
+
+  private final double failureRateThreshold;
+  private final int minimumCalls;
+  private final long window;
+  private final TimeUnit windowUnit;
+  private final long openDurationNanos;
+  private final int halfOpenProbes;
+  private final OpenCircuitBehavior whenOpen;
+
+  /**
+   * Creates a new {@link CircuitBreakerConfig}
+   * @param failureRateThreshold the share of failed tries in the window that opens the circuit, between 0 and 1
+   * @param minimumCalls the fewest tries in the window before the failure rate is considered
+   * @param window the length of the window failures are counted over
+   * @param windowUnit the unit of the window
+   * @param openDuration how long the circuit stays open before probing
+   * @param openDurationUnit the unit of the open duration
+   * @param halfOpenProbes the number of tries let through while half open
+   * @param whenOpen what happens to tries while the circuit is open
+   */
+  public CircuitBreakerConfig(double failureRateThreshold, int minimumCalls, long window, TimeUnit windowUnit,
+                              long openDuration, TimeUnit openDurationUnit, int halfOpenProbes,
+                              OpenCircuitBehavior whenOpen) {
+    Objects.requireNonNull(windowUnit);
+    Objects.requireNonNull(openDurationUnit);
+    Objects.requireNonNull(whenOpen);
+    if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+      throw new IllegalArgumentException("failureRateThreshold must be greater than 0 and at most 1");
+    }
+    if (minimumCalls < 1) {
+      throw new IllegalArgumentException("minimumCalls must be 1 or greater");
+    }
+    if (openDuration < 0) {
+      throw new IllegalArgumentException("openDuration must be 0 or greater");
+    }
+    if (halfOpenProbes < 1) {
+      throw new IllegalArgumentException("halfOpenProbes must be 1 or greater");
+    }
+    this.failureRateThreshold = failureRateThreshold;
+    this.minimumCalls = minimumCalls;
+    this.window = window;
+    this.windowUnit = windowUnit;
+    this.openDurationNanos = openDurationUnit.toNanos(openDuration);
+    this.halfOpenProbes = halfOpenProbes;
+    this.whenOpen = whenOpen;
+  }
+
+  /**
+   * Creates a new {@link CircuitBreakerConfig} from the annotation
+   * @param annotation the annotation
+   * @return the config
+   */
+  public static CircuitBreakerConfig fromAnnotation(RetryWithCircuitBreaker annotation) {
+    Objects.requireNonNull(annotation);
+    return new CircuitBreakerConfig(annotation.failureRateThreshold(), annotation.minimumCalls(), annotation.window(),
+      annotation.windowUnit(), annotation.openDuration(), annotation.openDurationUnit(), annotation.halfOpenProbes(),
+      annotation.whenOpen());
+  }
+
+  /**
+   * Gets the config from a class's {@link RetryWithCircuitBreaker} annotation, resolved once per class
+   * @param type the class
+   * @return the config, or null if the class isn't annotated
+   */
+  public static CircuitBreakerConfig forAnnotatedClass(Class<?> type) {
+    CircuitBreakerConfig config = ANNOTATED_CONFIGS.get(type);
+    return config == NOT_ANNOTATED ? null : config;
+  }
+
+  /**
+   * Gets the share of failed tries in the window that opens the circuit
+   * @return the threshold
+   */
+  public double getFailureRateThreshold() {
+    return this.failureRateThreshold;
+  }
+
+  /**
+   * Gets the fewest tries in the window before the failure rate is considered
+   * @return the minimum number of tries
+   */
+  public int getMinimumCalls() {
+    return this.minimumCalls;
+  }
+
+  /**
+   * Gets the length of the window failures are counted over
+   * @return the window
+   */
+  public long getWindow() {
+    return this.window;
+  }
+
+  /**
+   * Gets the unit of the window
+   * @return the unit
+   */
+  public TimeUnit getWindowUnit() {
+    return this.windowUnit;
+  }
+
+  /**
+   * Gets how long the circuit stays open before probing
+   * @return the open duration in nanos
+   */
+  public long getOpenDurationNanos() {
+    return this.openDurationNanos;
+  }
+
+  /**
+   * Gets the number of tries let through while half open
+   * @return the number of probes
+   */
+  public int getHalfOpenProbes() {
+    return this.halfOpenProbes;
+  }
+
+  /**
+   * Gets what happens to tries while the circuit is open
+   * @return the behavior
+   */
+  public OpenCircuitBehavior getWhenOpen() {
+    return this.whenOpen;
+  }
+}
@@ -0,0 +1,98 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.circuitbreaker;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+
+/**
+ * Holds the {@link CircuitBreaker} of each task key. Tasks annotated with
+ * {@link com.mrhampson.retryexecutor.annotations.RetryWithCircuitBreaker} use the annotation's settings, other tasks
+ * use the default config if there is one and don't get a breaker otherwise
+ * @author Marshall Hampson
+ */
+public class CircuitBreakerRegistry {
+  private final CircuitBreakerConfig defaultConfig;
+  private final BiFunction<Object, CircuitBreakerConfig, ? extends CircuitBreaker> circuitBreakerFactory;
+  private final ConcurrentMap<Object, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a new {@link CircuitBreakerRegistry} that only gives annotated tasks a breaker
+   */
+  public CircuitBreakerRegistry() {
+    this(null);
+  }
+
+  /**
+   * Creates a new {@link CircuitBreakerRegistry}
+   * @param defaultConfig the config for tasks that aren't annotated, or null to leave them without a breaker
+   */
+  public CircuitBreakerRegistry(CircuitBreakerConfig defaultConfig) {
+    this(defaultConfig, (key, config) -> new CircuitBreaker(config));
+  }
+
+  /**
+   * Creates a new {@link CircuitBreakerRegistry} that creates the breakers with a factory, e.g. to share their state
+   * with other nodes through a {@link com.mrhampson.retryexecutor.cluster.ClusterCircuitBreaker}
+   * @param defaultConfig the config for tasks that aren't annotated, or null to leave them without a breaker
+   * @param circuitBreakerFactory creates the breaker of a task key from the key and its config
+   */
+  public CircuitBreakerRegistry(
+    CircuitBreakerConfig defaultConfig,
+    BiFunction<Object, CircuitBreakerConfig, ? extends CircuitBreaker> circuitBreakerFactory) {
+    Objects.requireNonNull(circuitBreakerFactory);
+    this.defaultConfig = defaultConfig;
+    this.circuitBreakerFactory = circuitBreakerFactory;
+  }
+
+  /**
+   * Gets the config that applies to a task class
+   * @param taskClass the class of the user's task
+   * @return the config, or null if tasks of the class don't get a breaker
+   */
+  public CircuitBreakerConfig configFor(Class<?> taskClass) {
+    CircuitBreakerConfig config = CircuitBreakerConfig.forAnnotatedClass(taskClass);
+    return config != null ? config : this.defaultConfig;
+  }
+
+  /**
+   * Gets the breaker of a key, creating it with a config the first time the key is seen
+   * @param key the task key
+   * @param config the config used if the breaker has to be created
+   * @return the breaker
+   */
+  public CircuitBreaker circuitBreakerFor(Object key, CircuitBreakerConfig config) {
+    CircuitBreaker circuitBreaker = this.circuitBreakers.get(key);
+    return circuitBreaker != null
+      ? circuitBreaker
+      : this.circuitBreakers.computeIfAbsent(key, ignored -> this.circuitBreakerFactory.apply(key, config));
+  }
+
+  /**
+   * Gets the breaker of a key if one was created
+   * @param key the task key
+   * @return the breaker, or null
+   */
+  public CircuitBreaker get(Object key) {
+    return this.circuitBreakers.get(key);
+  }
+}
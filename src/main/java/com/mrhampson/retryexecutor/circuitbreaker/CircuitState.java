@@ -0,0 +1,39 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.circuitbreaker;
+
+/**
+ * The states of a {@link CircuitBreaker}
+ * @author Marshall Hampson
+ */
+public enum CircuitState {
+  /**
+   * Tasks run normally while failures are counted
+   */
+  CLOSED,
+  /**
+   * Too many tasks failed, no task runs until the open duration has passed
+   */
+  OPEN,
+  /**
+   * A few probe tries are let through to find out if the dependency has recovered
+   */
+  HALF_OPEN
+}
@@ -0,0 +1,35 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.circuitbreaker;
+
+/**
+ * What a {@link com.mrhampson.retryexecutor.RetryExecutor} does with a try whose circuit is open
+ * @author Marshall Hampson
+ */
+public enum OpenCircuitBehavior {
+  /**
+   * Keep the try in the scheduler until the circuit lets tries through again. It doesn't count as a failed try
+   */
+  HOLD,
+  /**
+   * Give up on the task without running it
+   */
+  REJECT
+}
@@ -0,0 +1,137 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.cluster;
+
+import com.mrhampson.retryexecutor.circuitbreaker.CircuitBreaker;
+import com.mrhampson.retryexecutor.circuitbreaker.CircuitBreakerConfig;
+import com.mrhampson.retryexecutor.circuitbreaker.CircuitState;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link CircuitBreaker} that shares when it opens with every node using the same name on a
+ * {@link ClusterCoordinator}. The breaker counts the tries of its own node as usual, and when it opens it publishes
+ * the time it will stay open until. It also refuses tries while any other node's breaker is open, as last read from
+ * the coordinator. The published time is read in the background at most once per refresh interval, so asking for a
+ * permission never waits on the coordinator. Times are wall clock millis, so node clocks should be roughly in sync.
+ * Create them through a {@link com.mrhampson.retryexecutor.circuitbreaker.CircuitBreakerRegistry} with a factory
+ * @author Marshall Hampson
+ */
+public class ClusterCircuitBreaker extends CircuitBreaker {
+  private final ClusterCoordinator coordinator;
+  private final String name;
+  private final long refreshIntervalNanos;
+  private final AtomicBoolean refreshing = new AtomicBoolean();
+  private volatile long lastRefreshNanos;
+  private volatile long clusterOpenUntilMillis;
+
+  /**
+   * Creates a new {@link ClusterCircuitBreaker}
+   * @param coordinator the shared state
+   * @param name the name of the breaker, the same on every node sharing it
+   * @param config the settings
+   * @param refreshInterval how often the state of the other nodes is read
+   * @param refreshUnit the unit of the refresh interval
+   */
+  public ClusterCircuitBreaker(ClusterCoordinator coordinator, String name, CircuitBreakerConfig config,
+                               long refreshInterval, TimeUnit refreshUnit) {
+    super(config);
+    Objects.requireNonNull(coordinator);
+    Objects.requireNonNull(name);
+    Objects.requireNonNull(refreshUnit);
+    if (refreshInterval < 0) {
+      throw new IllegalArgumentException("refreshInterval must not be negative");
+    }
+    this.coordinator = coordinator;
+    this.name = name;
+    this.refreshIntervalNanos = refreshUnit.toNanos(refreshInterval);
+    this.lastRefreshNanos = System.nanoTime() - this.refreshIntervalNanos;
+  }
+
+  /**
+   * Asks to run a try, refused while this or any other node's breaker is open
+   * @return true if the try may run
+   */
+  @Override
+  public boolean tryAcquirePermission() {
+    this.refresh();
+    return this.getMillisClusterOpen() == 0 && super.tryAcquirePermission();
+  }
+
+  /**
+   * Records a failed try, and publishes the open duration if it opened the breaker
+   */
+  @Override
+  public void onFailure() {
+    boolean wasOpen = this.getState() == CircuitState.OPEN;
+    super.onFailure();
+    if (!wasOpen && this.getState() == CircuitState.OPEN) {
+      long openUntilMillis =
+        System.currentTimeMillis() + TimeUnit.NANOSECONDS.toMillis(this.getConfig().getOpenDurationNanos());
+      this.coordinator.mergeOpenUntil(this.name, openUntilMillis).whenComplete(this::onOpenUntil);
+    }
+  }
+
+  /**
+   * Gets how long a try that was refused should wait before asking again, the longer of this node's wait and the
+   * time the cluster stays open
+   * @return the delay in millis
+   */
+  @Override
+  public long getMillisUntilNextPermission() {
+    return Math.max(super.getMillisUntilNextPermission(), this.getMillisClusterOpen());
+  }
+
+  /**
+   * Gets how long the breaker stays open because of any node, as last read
+   * @return the millis left, 0 if no node's breaker is open
+   */
+  public long getMillisClusterOpen() {
+    return Math.max(0, this.clusterOpenUntilMillis - System.currentTimeMillis());
+  }
+
+  /**
+   * Reads the published open time in the background, unless it was read within the refresh interval
+   */
+  private void refresh() {
+    long now = System.nanoTime();
+    if (now - this.lastRefreshNanos < this.refreshIntervalNanos || !this.refreshing.compareAndSet(false, true)) {
+      return;
+    }
+    this.lastRefreshNanos = now;
+    this.coordinator.mergeOpenUntil(this.name, 0).whenComplete((openUntilMillis, failure) -> {
+      this.onOpenUntil(openUntilMillis, failure);
+      this.refreshing.set(false);
+    });
+  }
+
+  /**
+   * Takes in the open time read from the coordinator
+   * @param openUntilMillis the time, null if the call failed
+   * @param failure why the call failed, null if it didn't
+   */
+  private void onOpenUntil(Long openUntilMillis, Throwable failure) {
+    if (openUntilMillis != null) {
+      this.clusterOpenUntilMillis = openUntilMillis;
+    }
+  }
+}
@@ -0,0 +1,71 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.cluster;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The shared state that lets the {@link com.mrhampson.retryexecutor.RetryExecutor}s of many nodes respect one retry
+ * budget, rate limit and circuit breaker state between them, e.g. backed by Redis or a coordination service. Callers
+ * batch their requests and never wait on the returned futures on the hot path, so the calls may be remote and slow.
+ * Every method must be atomic per name across all callers. State is created the first time a name is used
+ * @author Marshall Hampson
+ */
+public interface ClusterCoordinator {
+
+  /**
+   * Takes tokens from a token bucket. The bucket starts empty and earns tokens at the refill rate up to its capacity
+   * @param bucket the name of the bucket
+   * @param requested how many tokens to take
+   * @param refillPerSecond how many tokens the bucket earns per second
+   * @param capacity the most tokens the bucket holds
+   * @return the number of tokens taken, between 0 and the number requested
+   */
+  CompletableFuture<Long> takeTokens(String bucket, long requested, double refillPerSecond, long capacity);
+
+  /**
+   * Adds tokens to a token bucket, anything over its capacity is lost
+   * @param bucket the name of the bucket
+   * @param tokens how many tokens to add
+   * @param refillPerSecond how many tokens the bucket earns per second
+   * @param capacity the most tokens the bucket holds
+   * @return completes once the tokens were added
+   */
+  CompletableFuture<Void> addTokens(String bucket, long tokens, double refillPerSecond, long capacity);
+
+  /**
+   * Reserves consecutive permits of a rate limiter using the generic cell rate algorithm. The first permit is due
+   * after the returned offset, each following one an interval later
+   * @param limiter the name of the limiter
+   * @param permits how many permits to reserve
+   * @param intervalNanos the time between two permits
+   * @param burstToleranceNanos how far ahead of schedule permits may be used, the interval times the burst minus one
+   * @return the nanos from now until the first permit is due, 0 or less if it is due already
+   */
+  CompletableFuture<Long> reservePermits(String limiter, int permits, long intervalNanos, long burstToleranceNanos);
+
+  /**
+   * Raises the time until which a circuit breaker is open, and reads it
+   * @param breaker the name of the breaker
+   * @param openUntilMillis the wall clock time in millis until which the breaker is open, 0 to only read it
+   * @return the latest open until time any node published, 0 if none did
+   */
+  CompletableFuture<Long> mergeOpenUntil(String breaker, long openUntilMillis);
+}
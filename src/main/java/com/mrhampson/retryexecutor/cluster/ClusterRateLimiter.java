@@ -0,0 +1,180 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.cluster;
+
+import com.mrhampson.retryexecutor.ratelimit.RateLimiter;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link RateLimiter} shared by every node using the same name on a {@link ClusterCoordinator}, so the tries of the
+ * whole cluster stay within one rate however many nodes there are. The coordinator hands out permits on one schedule,
+ * the generic cell rate algorithm, in leases of consecutive permits. Each node fetches its first lease when it is
+ * created and the next one in the background before the current one runs out, so reserving a permit never waits on
+ * the coordinator. A lease should cover the tries a node starts while the next lease is fetched. If a lease is late
+ * anyway the permit is lent and paid back out of the next lease, with a wait guessed from the rate. The key is
+ * ignored
+ * @author Marshall Hampson
+ */
+public class ClusterRateLimiter implements RateLimiter {
+  private final ClusterCoordinator coordinator;
+  private final String name;
+  private final long intervalNanos;
+  private final long burstToleranceNanos;
+  private final int leaseSize;
+  private final Queue<Lease> leases = new ConcurrentLinkedQueue<>();
+  private final AtomicLong leasedPermits = new AtomicLong();
+  private final AtomicLong lentPermits = new AtomicLong();
+  private final AtomicBoolean leasing = new AtomicBoolean();
+  private volatile long nextLeaseNanos = System.nanoTime();
+
+  /**
+   * Creates a new {@link ClusterRateLimiter}
+   * @param coordinator the shared state
+   * @param name the name of the limiter, the same on every node sharing it
+   * @param permits the permits per period for the whole cluster
+   * @param period the period
+   * @param periodUnit the unit of the period
+   * @param burst how many permits can be taken at once
+   * @param leaseSize how many permits a node reserves from the coordinator at once
+   */
+  public ClusterRateLimiter(ClusterCoordinator coordinator, String name, long permits, long period,
+                            TimeUnit periodUnit, int burst, int leaseSize) {
+    Objects.requireNonNull(coordinator);
+    Objects.requireNonNull(name);
+    Objects.requireNonNull(periodUnit);
+    if (permits < 1) {
+      throw new IllegalArgumentException("permits must be at least 1");
+    }
+    if (period < 1) {
+      throw new IllegalArgumentException("period must be positive");
+    }
+    if (burst < 1) {
+      throw new IllegalArgumentException("burst must be at least 1");
+    }
+    if (leaseSize < 1) {
+      throw new IllegalArgumentException("leaseSize must be at least 1");
+    }
+    this.coordinator = coordinator;
+    this.name = name;
+    this.intervalNanos = Math.max(1, periodUnit.toNanos(period) / permits);
+    this.burstToleranceNanos = this.intervalNanos * (burst - 1);
+    this.leaseSize = leaseSize;
+    this.lease();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long reservePermit(Object key) {
+    long dueNanos = this.takeLeasedPermit();
+    if (dueNanos == Lease.EXHAUSTED) {
+      this.lease();
+      dueNanos = this.takeLeasedPermit();
+    }
+    if (dueNanos == Lease.EXHAUSTED) {
+      return this.lentPermits.incrementAndGet() * this.intervalNanos;
+    }
+    return Math.max(0, dueNanos - System.nanoTime());
+  }
+
+  /**
+   * Takes the next permit of the leases this node holds, fetching the next lease once they run low
+   * @return the time the permit is due, or {@link Lease#EXHAUSTED} if this node holds none
+   */
+  private long takeLeasedPermit() {
+    Lease lease;
+    while ((lease = this.leases.peek()) != null) {
+      long dueNanos = lease.take();
+      if (dueNanos != Lease.EXHAUSTED) {
+        if (this.leasedPermits.decrementAndGet() <= this.leaseSize / 2) {
+          this.lease();
+        }
+        return dueNanos;
+      }
+      this.leases.remove(lease);
+    }
+    return Lease.EXHAUSTED;
+  }
+
+  /**
+   * Reserves a new lease of permits, unless one is already on its way. After a failed call the next one waits for
+   * the time a lease would have lasted
+   */
+  private void lease() {
+    if (System.nanoTime() - this.nextLeaseNanos < 0 || !this.leasing.compareAndSet(false, true)) {
+      return;
+    }
+    this.coordinator.reservePermits(this.name, this.leaseSize, this.intervalNanos, this.burstToleranceNanos)
+      .whenComplete((firstDueNanos, failure) -> {
+        long now = System.nanoTime();
+        if (failure != null) {
+          this.nextLeaseNanos = now + this.intervalNanos * this.leaseSize;
+        }
+        else {
+          long repaid = this.lentPermits.getAndUpdate(lent -> Math.max(0, lent - this.leaseSize));
+          int start = (int)Math.min(repaid, this.leaseSize);
+          if (start < this.leaseSize) {
+            this.leasedPermits.addAndGet(this.leaseSize - start);
+            this.leases.add(new Lease(now + firstDueNanos, this.intervalNanos, this.leaseSize, start));
+          }
+        }
+        this.leasing.set(false);
+      });
+  }
+
+  /**
+   * Consecutive permits reserved from the coordinator
+   */
+  private static final class Lease {
+    private static final long EXHAUSTED = Long.MIN_VALUE;
+
+    private final long firstDueNanos;
+    private final long intervalNanos;
+    private final int size;
+    private final AtomicInteger next;
+
+    private Lease(long firstDueNanos, long intervalNanos, int size, int start) {
+      this.firstDueNanos = firstDueNanos;
+      this.intervalNanos = intervalNanos;
+      this.size = size;
+      this.next = new AtomicInteger(start);
+    }
+
+    /**
+     * Takes the next permit of the lease
+     * @return the time the permit is due, or {@link #EXHAUSTED}
+     */
+    private long take() {
+      if (this.next.get() >= this.size) {
+        return EXHAUSTED;
+      }
+      int index = this.next.getAndIncrement();
+      return index < this.size ? this.firstDueNanos + this.intervalNanos * index : EXHAUSTED;
+    }
+  }
+}
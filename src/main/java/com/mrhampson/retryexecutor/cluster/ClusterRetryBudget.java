@@ -0,0 +1,179 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.cluster;
+
+import com.mrhampson.retryexecutor.budget.RetryBudget;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link RetryBudget} shared by every node using the same name on a {@link ClusterCoordinator}, so the retries of
+ * the whole cluster are at most a ratio of its first tries however many nodes there are. The budget is a token bucket
+ * in the coordinator. First tries are counted locally and deposited in batches, retries are taken from a lease of
+ * tokens fetched in batches before the local ones run out. Neither waits on the coordinator: a retry that finds the
+ * lease empty is denied while a new lease is fetched in the background. Leased tokens a node doesn't use are kept
+ * by that node, so a larger lease means fewer calls but a less even split between nodes. The key is ignored
+ * @author Marshall Hampson
+ */
+public class ClusterRetryBudget implements RetryBudget {
+  private final ClusterCoordinator coordinator;
+  private final String name;
+  private final double retryRatio;
+  private final double refillPerSecond;
+  private final long capacity;
+  private final int leaseSize;
+  private final long refreshIntervalNanos;
+  private final AtomicLong leasedTokens = new AtomicLong();
+  private final AtomicBoolean leasing = new AtomicBoolean();
+  private volatile long nextLeaseNanos = System.nanoTime();
+  private final AtomicLong pendingFirstTries = new AtomicLong();
+  private final AtomicBoolean depositing = new AtomicBoolean();
+  private volatile long lastDepositNanos = System.nanoTime();
+  /**
+   * Fraction of a token left over from the last deposit, only touched while depositing
+   */
+  private double carriedTokens;
+
+  /**
+   * Creates a new {@link ClusterRetryBudget}
+   * @param coordinator the shared state
+   * @param name the name of the budget, the same on every node sharing it
+   * @param retryRatio the most retries allowed per first try, e.g. 0.1 for retries to be at most 10% of first tries
+   * @param minRetriesPerSecond retries the whole cluster is allowed regardless of the ratio
+   * @param maxBankedRetries the most unused retries the budget saves up
+   * @param leaseSize how many tokens a node takes from the coordinator at once
+   * @param refreshInterval the longest a node holds on to counted first tries, and how long it waits before asking
+   *                        again when the coordinator had too few tokens
+   * @param refreshUnit the unit of the refresh interval
+   */
+  public ClusterRetryBudget(ClusterCoordinator coordinator, String name, double retryRatio, int minRetriesPerSecond,
+                            long maxBankedRetries, int leaseSize, long refreshInterval, TimeUnit refreshUnit) {
+    Objects.requireNonNull(coordinator);
+    Objects.requireNonNull(name);
+    Objects.requireNonNull(refreshUnit);
+    if (retryRatio < 0) {
+      throw new IllegalArgumentException("retryRatio must be 0 or greater");
+    }
+    if (minRetriesPerSecond < 0) {
+      throw new IllegalArgumentException("minRetriesPerSecond must be 0 or greater");
+    }
+    if (maxBankedRetries < 1) {
+      throw new IllegalArgumentException("maxBankedRetries must be at least 1");
+    }
+    if (leaseSize < 1) {
+      throw new IllegalArgumentException("leaseSize must be at least 1");
+    }
+    if (refreshInterval < 0) {
+      throw new IllegalArgumentException("refreshInterval must not be negative");
+    }
+    this.coordinator = coordinator;
+    this.name = name;
+    this.retryRatio = retryRatio;
+    this.refillPerSecond = minRetriesPerSecond;
+    this.capacity = maxBankedRetries;
+    this.leaseSize = leaseSize;
+    this.refreshIntervalNanos = refreshUnit.toNanos(refreshInterval);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void onFirstAttempt(Object key) {
+    long pending = this.pendingFirstTries.incrementAndGet();
+    if (pending * this.retryRatio >= this.leaseSize
+      || System.nanoTime() - this.lastDepositNanos >= this.refreshIntervalNanos) {
+      this.deposit();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean tryAcquireRetry(Object key) {
+    if (this.leasedTokens.get() <= this.leaseSize / 2) {
+      this.lease();
+    }
+    while (true) {
+      long tokens = this.leasedTokens.get();
+      if (tokens <= 0) {
+        return false;
+      }
+      if (this.leasedTokens.compareAndSet(tokens, tokens - 1)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Gets the tokens this node holds
+   * @return the number of retries this node may make without asking the coordinator
+   */
+  public long getLeasedTokens() {
+    return this.leasedTokens.get();
+  }
+
+  /**
+   * Deposits the retries earned by the first tries counted so far, unless a deposit is already on its way
+   */
+  private void deposit() {
+    if (!this.depositing.compareAndSet(false, true)) {
+      return;
+    }
+    this.lastDepositNanos = System.nanoTime();
+    double earned = this.carriedTokens + this.pendingFirstTries.getAndSet(0) * this.retryRatio;
+    long tokens = (long)earned;
+    this.carriedTokens = earned - tokens;
+    if (tokens == 0) {
+      this.depositing.set(false);
+      return;
+    }
+    this.coordinator.addTokens(this.name, tokens, this.refillPerSecond, this.capacity)
+      .whenComplete((ignored, failure) -> {
+        if (failure != null) {
+          // Try again with the next deposit
+          this.carriedTokens += tokens;
+        }
+        this.depositing.set(false);
+      });
+  }
+
+  /**
+   * Fetches a new lease of tokens, unless one is already on its way or the coordinator was short on tokens recently
+   */
+  private void lease() {
+    if (System.nanoTime() - this.nextLeaseNanos < 0 || !this.leasing.compareAndSet(false, true)) {
+      return;
+    }
+    this.coordinator.takeTokens(this.name, this.leaseSize, this.refillPerSecond, this.capacity)
+      .whenComplete((granted, failure) -> {
+        long tokens = granted != null ? granted : 0;
+        this.leasedTokens.addAndGet(tokens);
+        if (tokens < this.leaseSize) {
+          this.nextLeaseNanos = System.nanoTime() + this.refreshIntervalNanos;
+        }
+        this.leasing.set(false);
+      });
+  }
+}
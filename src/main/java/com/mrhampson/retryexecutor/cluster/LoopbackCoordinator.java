@@ -0,0 +1,158 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.cluster;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A {@link ClusterCoordinator} that keeps the shared state in memory, so the executors of one JVM can share it as if
+ * they were on different nodes. Meant for tests and for trying out a setup before a real backend is in place. Calls
+ * complete on the given executor, to behave like remote calls, or right away on the calling thread
+ * @author Marshall Hampson
+ */
+public class LoopbackCoordinator implements ClusterCoordinator {
+  private final Executor executor;
+  private final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, AtomicLong> theoreticalArrivals = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Long> openUntil = new ConcurrentHashMap<>();
+  private final LongAdder calls = new LongAdder();
+
+  /**
+   * Creates a new {@link LoopbackCoordinator} whose calls complete on the calling thread
+   */
+  public LoopbackCoordinator() {
+    this(Runnable::run);
+  }
+
+  /**
+   * Creates a new {@link LoopbackCoordinator}
+   * @param executor the executor the calls complete on
+   */
+  public LoopbackCoordinator(Executor executor) {
+    Objects.requireNonNull(executor);
+    this.executor = executor;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public CompletableFuture<Long> takeTokens(String bucket, long requested, double refillPerSecond, long capacity) {
+    Objects.requireNonNull(bucket);
+    return this.call(() -> this.buckets.computeIfAbsent(bucket, ignored -> new Bucket())
+      .take(requested, refillPerSecond, capacity));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public CompletableFuture<Void> addTokens(String bucket, long tokens, double refillPerSecond, long capacity) {
+    Objects.requireNonNull(bucket);
+    return this.call(() -> {
+      this.buckets.computeIfAbsent(bucket, ignored -> new Bucket()).add(tokens, refillPerSecond, capacity);
+      return null;
+    });
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public CompletableFuture<Long> reservePermits(String limiter, int permits, long intervalNanos,
+                                                long burstToleranceNanos) {
+    Objects.requireNonNull(limiter);
+    return this.call(() -> {
+      AtomicLong theoreticalArrivalNanos =
+        this.theoreticalArrivals.computeIfAbsent(limiter, ignored -> new AtomicLong(System.nanoTime()));
+      long now = System.nanoTime();
+      while (true) {
+        long theoreticalArrival = theoreticalArrivalNanos.get();
+        long start = theoreticalArrival - now > 0 ? theoreticalArrival : now;
+        if (theoreticalArrivalNanos.compareAndSet(theoreticalArrival, start + intervalNanos * permits)) {
+          return start - burstToleranceNanos - now;
+        }
+      }
+    });
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public CompletableFuture<Long> mergeOpenUntil(String breaker, long openUntilMillis) {
+    Objects.requireNonNull(breaker);
+    return this.call(() -> this.openUntil.merge(breaker, openUntilMillis, Math::max));
+  }
+
+  /**
+   * Gets the number of calls made so far, to check how well callers batch
+   * @return the number of calls
+   */
+  public long getCallCount() {
+    return this.calls.sum();
+  }
+
+  /**
+   * Runs a call on the executor
+   * @param call the call
+   * @param <T> the type of the result
+   * @return the result
+   */
+  private <T> CompletableFuture<T> call(Supplier<T> call) {
+    this.calls.increment();
+    return CompletableFuture.supplyAsync(call, this.executor);
+  }
+
+  /**
+   * A token bucket, refilled lazily whenever it is used
+   */
+  private static final class Bucket {
+    private double tokens;
+    private long refilledNanos = System.nanoTime();
+
+    private synchronized long take(long requested, double refillPerSecond, long capacity) {
+      this.refill(refillPerSecond, capacity);
+      long taken = Math.min(requested, (long)this.tokens);
+      this.tokens -= taken;
+      return taken;
+    }
+
+    private synchronized void add(long tokens, double refillPerSecond, long capacity) {
+      this.refill(refillPerSecond, capacity);
+      this.tokens = Math.min(capacity, this.tokens + tokens);
+    }
+
+    private void refill(double refillPerSecond, long capacity) {
+      long now = System.nanoTime();
+      double earned = (now - this.refilledNanos) * refillPerSecond / TimeUnit.SECONDS.toNanos(1);
+      this.tokens = Math.min(capacity, this.tokens + earned);
+      this.refilledNanos = now;
+    }
+  }
+}
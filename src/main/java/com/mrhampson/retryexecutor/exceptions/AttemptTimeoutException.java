@@ -0,0 +1,41 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.exceptions;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The failure recorded for a try that ran longer than its policy's
+ * {@link com.mrhampson.retryexecutor.strategies.RetryPolicy#getAttemptTimeoutMillis() attempt timeout}. The try's
+ * thread was interrupted, whatever the try threw in response is the cause. It is retried like any other failure
+ * @author Marshall Hampson
+ */
+public class AttemptTimeoutException extends TimeoutException {
+
+  /**
+   * Creates a new {@link AttemptTimeoutException}
+   * @param timeoutMillis the timeout the try overran
+   * @param cause what the try threw once it was interrupted
+   */
+  public AttemptTimeoutException(long timeoutMillis, Throwable cause) {
+    super("Try timed out after " + timeoutMillis + "ms");
+    this.initCause(cause);
+  }
+}
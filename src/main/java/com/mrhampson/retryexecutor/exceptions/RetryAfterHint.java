@@ -0,0 +1,35 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.exceptions;
+
+/**
+ * Implemented by exceptions that know when a retry can succeed, e.g. a rate-limit error carrying the server's
+ * {@code Retry-After}. Policies wrapped in a {@link com.mrhampson.retryexecutor.strategies.RetryAfterAwarePolicy}
+ * wait exactly that long instead of using their own backoff
+ * @author Marshall Hampson
+ */
+public interface RetryAfterHint {
+
+  /**
+   * Gets how long to wait before the next try
+   * @return the delay in millis, or a negative value if this failure has no hint
+   */
+  long getRetryAfterMillis();
+}
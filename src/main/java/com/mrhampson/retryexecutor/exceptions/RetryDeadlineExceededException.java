@@ -0,0 +1,39 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.exceptions;
+
+import java.util.List;
+
+/**
+ * A {@link RetryExhaustedException} for a task that still had tries left but whose next try wouldn't have started
+ * before its policy's {@link com.mrhampson.retryexecutor.strategies.RetryPolicy#getDeadlineMillis() deadline}
+ * @author Marshall Hampson
+ */
+public class RetryDeadlineExceededException extends RetryExhaustedException {
+
+  /**
+   * Creates a new {@link RetryDeadlineExceededException}
+   * @param attempts the number of tries that were made
+   * @param failures the recorded failures, oldest first, the last one is used as the cause
+   */
+  public RetryDeadlineExceededException(int attempts, List<Throwable> failures) {
+    super("Retry deadline exceeded after " + attempts + " tries", attempts, failures);
+  }
+}
@@ -0,0 +1,71 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.exceptions;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An exception a task's future completes with when it ran out of tries. The cause is the failure of the last try
+ * and the failures of the tries before it are kept as the attempt history
+ * @author Marshall Hampson
+ */
+public class RetryExhaustedException extends RuntimeException {
+  private final int attempts;
+  private final List<Throwable> failures;
+
+  /**
+   * Creates a new {@link RetryExhaustedException}
+   * @param attempts the number of tries that were made
+   * @param failures the recorded failures, oldest first, the last one is used as the cause
+   */
+  public RetryExhaustedException(int attempts, List<Throwable> failures) {
+    this("Task failed after " + attempts + " tries", attempts, failures);
+  }
+
+  /**
+   * Creates a new {@link RetryExhaustedException} with a message saying why the task gave up
+   * @param message the message
+   * @param attempts the number of tries that were made
+   * @param failures the recorded failures, oldest first, the last one is used as the cause
+   */
+  protected RetryExhaustedException(String message, int attempts, List<Throwable> failures) {
+    super(message, failures.isEmpty() ? null : failures.get(failures.size() - 1));
+    this.attempts = attempts;
+    this.failures = Collections.unmodifiableList(failures);
+  }
+
+  /**
+   * Gets the number of tries that were made
+   * @return the number of tries
+   */
+  public int getAttempts() {
+    return this.attempts;
+  }
+
+  /**
+   * Gets the recorded failures, oldest first. Only the most recent failures are kept, so this can be shorter than
+   * {@link #getAttempts()}
+   * @return the recorded failures
+   */
+  public List<Throwable> getFailures() {
+    return this.failures;
+  }
+}
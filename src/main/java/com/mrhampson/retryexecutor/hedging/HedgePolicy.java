@@ -0,0 +1,164 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.hedging;
+
+import com.mrhampson.retryexecutor.metrics.LatencyHistogram;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Decides when a {@link com.mrhampson.retryexecutor.RetryExecutor} launches a hedge, a second copy of a try that is
+ * taking too long, so a hanging call doesn't have to fail before it is retried. The first copy to succeed wins and
+ * the others are interrupted. The delay is either fixed or a percentile of the latencies seen over the last window,
+ * recorded in a lock-free histogram that is replaced when its window ends. Share one policy between the tasks of a
+ * call path so they learn its latency together
+ * @author Marshall Hampson
+ */
+public final class HedgePolicy {
+  private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+  private static final int MIN_SAMPLES = 20;
+
+  private final double percentile;
+  private final long windowNanos;
+  private final long initialDelayNanos;
+  private final int maxHedges;
+  private final AtomicReference<Window> window;
+  private volatile long learnedDelayNanos;
+
+  /**
+   * Creates a new {@link HedgePolicy}
+   * @param percentile the percentile to hedge at, 0 for a fixed delay
+   * @param windowNanos how long latencies are collected before the percentile is taken
+   * @param initialDelayNanos the delay to use until a window has seen enough latencies
+   * @param maxHedges the most hedges per try
+   */
+  HedgePolicy(double percentile, long windowNanos, long initialDelayNanos, int maxHedges) {
+    if (initialDelayNanos < 0) {
+      throw new IllegalArgumentException("delay must not be negative");
+    }
+    if (maxHedges < 1) {
+      throw new IllegalArgumentException("maxHedges must be at least 1");
+    }
+    this.percentile = percentile;
+    this.windowNanos = windowNanos;
+    this.initialDelayNanos = initialDelayNanos;
+    this.maxHedges = maxHedges;
+    this.window = percentile > 0 ? new AtomicReference<>(new Window(System.nanoTime())) : null;
+    this.learnedDelayNanos = initialDelayNanos;
+  }
+
+  /**
+   * Creates a policy that hedges a try once it has run for a fixed delay
+   * @param delay the delay
+   * @param unit the unit of the delay
+   * @param maxHedges the most hedges per try, each launched one delay after the last
+   * @return the policy
+   */
+  public static HedgePolicy afterDelay(long delay, TimeUnit unit, int maxHedges) {
+    Objects.requireNonNull(unit);
+    return new HedgePolicy(0, WINDOW_NANOS, unit.toNanos(delay), maxHedges);
+  }
+
+  /**
+   * Creates a policy that hedges a try once it has run longer than a percentile of the successful tries seen over the
+   * last 10 seconds, e.g. the 95th so about one try in twenty is hedged
+   * @param percentile the percentile, above 0 and below 100
+   * @param initialDelay the delay to use until enough tries have been seen
+   * @param unit the unit of the initial delay
+   * @param maxHedges the most hedges per try, each launched one delay after the last
+   * @return the policy
+   */
+  public static HedgePolicy atPercentile(double percentile, long initialDelay, TimeUnit unit, int maxHedges) {
+    Objects.requireNonNull(unit);
+    if (!(percentile > 0 && percentile < 100)) {
+      throw new IllegalArgumentException("percentile must be above 0 and below 100");
+    }
+    return new HedgePolicy(percentile, WINDOW_NANOS, unit.toNanos(initialDelay), maxHedges);
+  }
+
+  /**
+   * Gets the most hedges launched for a single try
+   * @return the max hedges
+   */
+  public int getMaxHedges() {
+    return this.maxHedges;
+  }
+
+  /**
+   * Gets how long a try runs before it is hedged
+   * @return the delay in nanoseconds
+   */
+  public long getHedgeDelayNanos() {
+    if (this.window == null) {
+      return this.initialDelayNanos;
+    }
+    this.currentWindow(System.nanoTime());
+    return this.learnedDelayNanos;
+  }
+
+  /**
+   * Records how long a successful try took. A fixed delay policy ignores it
+   * @param latencyNanos the latency in nanoseconds
+   */
+  public void recordLatency(long latencyNanos) {
+    if (this.window != null) {
+      this.currentWindow(System.nanoTime()).latencies.record(latencyNanos);
+    }
+  }
+
+  /**
+   * Gets the window that is collecting latencies, starting a new one if it has ended. The thread that ends a window
+   * learns the delay from it, the rest carry on with the new window
+   * @param now the current {@link System#nanoTime()}
+   * @return the window
+   */
+  private Window currentWindow(long now) {
+    Window current = this.window.get();
+    if (now - current.startNanos < this.windowNanos) {
+      return current;
+    }
+    Window next = new Window(now);
+    if (this.window.compareAndSet(current, next)) {
+      if (current.latencies.getCount() >= MIN_SAMPLES) {
+        this.learnedDelayNanos = current.latencies.getValueAtPercentile(this.percentile);
+      }
+      return next;
+    }
+    return this.window.get();
+  }
+
+  /**
+   * The latencies seen since a point in time
+   */
+  private static final class Window {
+    private final long startNanos;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    /**
+     * Creates a new {@link Window}
+     * @param startNanos when the window started
+     */
+    private Window(long startNanos) {
+      this.startNanos = startNanos;
+    }
+  }
+}
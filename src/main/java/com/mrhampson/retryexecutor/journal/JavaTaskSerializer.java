@@ -0,0 +1,65 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.journal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * A {@link TaskSerializer} using Java serialization, for tasks that implement {@link Serializable}
+ * @author Marshall Hampson
+ */
+public class JavaTaskSerializer implements TaskSerializer {
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public byte[] serialize(Object task) {
+    if (!(task instanceof Serializable)) {
+      throw new IllegalArgumentException(task.getClass().getName() + " is not Serializable");
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(task);
+    }
+    catch (IOException e) {
+      throw new IllegalArgumentException("Could not serialize " + task.getClass().getName(), e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Object deserialize(byte[] bytes) {
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+      return in.readObject();
+    }
+    catch (IOException | ClassNotFoundException e) {
+      throw new IllegalArgumentException("Could not deserialize task", e);
+    }
+  }
+}
@@ -0,0 +1,88 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.journal;
+
+/**
+ * A task read back from a {@link RetryJournal}, with the retry state it was recorded with
+ * @author Marshall Hampson
+ */
+public final class JournaledTask {
+  private final long taskId;
+  private final Object task;
+  private final int failedAttempts;
+  private final long previousDelayMillis;
+  private final long dueEpochMillis;
+
+  /**
+   * Creates a new {@link JournaledTask}
+   * @param taskId the id of the task
+   * @param task the user's task
+   * @param failedAttempts the number of tries that had failed
+   * @param previousDelayMillis the delay before the next try
+   * @param dueEpochMillis when the next try is due, in epoch millis
+   */
+  public JournaledTask(long taskId, Object task, int failedAttempts, long previousDelayMillis, long dueEpochMillis) {
+    this.taskId = taskId;
+    this.task = task;
+    this.failedAttempts = failedAttempts;
+    this.previousDelayMillis = previousDelayMillis;
+    this.dueEpochMillis = dueEpochMillis;
+  }
+
+  /**
+   * Gets the id of the task
+   * @return the id
+   */
+  public long getTaskId() {
+    return this.taskId;
+  }
+
+  /**
+   * Gets the user's task
+   * @return the task
+   */
+  public Object getTask() {
+    return this.task;
+  }
+
+  /**
+   * Gets the number of tries that had failed
+   * @return the failed tries
+   */
+  public int getFailedAttempts() {
+    return this.failedAttempts;
+  }
+
+  /**
+   * Gets the delay before the next try
+   * @return the delay in millis
+   */
+  public long getPreviousDelayMillis() {
+    return this.previousDelayMillis;
+  }
+
+  /**
+   * Gets when the next try is due
+   * @return the due time in epoch millis
+   */
+  public long getDueEpochMillis() {
+    return this.dueEpochMillis;
+  }
+}
@@ -0,0 +1,544 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link RetryJournal} kept in an append-only log of fixed-size, memory-mapped segment files. Every change is a
+ * record appended to the newest segment, a later record of a task replaces the earlier ones. A background thread
+ * forces the written segments to disk once per commit interval, so a burst of appends shares one fsync, and then
+ * compacts: the oldest segment is dropped once few of its records are still live, after copying those forward.
+ * Because old segments go away, reopening the journal only reads the segments that still hold live tasks rather than
+ * the whole history. Records are checksummed and reading a segment stops at the first torn one
+ * @author Marshall Hampson
+ */
+public class MappedSegmentRetryJournal implements RetryJournal, AutoCloseable {
+  private static final byte PENDING = 1;
+  private static final byte COMPLETED = 2;
+  /**
+   * Length and checksum in front of every record
+   */
+  private static final int HEADER_BYTES = 8;
+  /**
+   * Type, id, failed attempts, previous delay and due time, followed by the serialized task
+   */
+  private static final int PENDING_FIXED_BYTES = 1 + 8 + 4 + 8 + 8;
+  private static final int COMPLETED_BYTES = 1 + 8;
+  /**
+   * The oldest segment is compacted once less than this share of it is live
+   */
+  private static final double COMPACTION_THRESHOLD = 0.25;
+  private static final String SEGMENT_PREFIX = "retry-journal-";
+  private static final String SEGMENT_SUFFIX = ".log";
+
+  private final Path directory;
+  private final int segmentBytes;
+  private final TaskSerializer taskSerializer;
+  private final long commitIntervalNanos;
+  private final AtomicLong taskIds = new AtomicLong();
+  // Guarded by this
+  private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+  private final Map<Long, Location> liveRecords = new HashMap<>();
+  private final Thread committer;
+  private volatile boolean closed;
+
+  /**
+   * Creates a new {@link MappedSegmentRetryJournal} with 16MB segments, a 10 millisecond commit interval and Java
+   * serialization
+   * @param directory the directory holding the segment files, created if needed
+   * @throws IOException if the journal can't be opened
+   */
+  public MappedSegmentRetryJournal(Path directory) throws IOException {
+    this(directory, 16 * 1024 * 1024, 10, TimeUnit.MILLISECONDS, new JavaTaskSerializer());
+  }
+
+  /**
+   * Creates a new {@link MappedSegmentRetryJournal}, reading back the records of an existing journal in the directory
+   * @param directory the directory holding the segment files, created if needed
+   * @param segmentBytes the size of a segment file, the largest record that fits
+   * @param commitInterval how often written records are forced to disk
+   * @param commitIntervalUnit the unit of the commit interval
+   * @param taskSerializer the serializer for the tasks
+   * @throws IOException if the journal can't be opened
+   */
+  public MappedSegmentRetryJournal(Path directory, int segmentBytes, long commitInterval,
+                                   TimeUnit commitIntervalUnit, TaskSerializer taskSerializer) throws IOException {
+    Objects.requireNonNull(directory);
+    Objects.requireNonNull(commitIntervalUnit);
+    Objects.requireNonNull(taskSerializer);
+    if (segmentBytes < HEADER_BYTES + PENDING_FIXED_BYTES) {
+      throw new IllegalArgumentException("segmentBytes is too small to hold a record");
+    }
+    if (commitInterval < 1) {
+      throw new IllegalArgumentException("commitInterval must be positive");
+    }
+    this.directory = directory;
+    this.segmentBytes = segmentBytes;
+    this.taskSerializer = taskSerializer;
+    this.commitIntervalNanos = commitIntervalUnit.toNanos(commitInterval);
+    Files.createDirectories(directory);
+    this.load();
+    this.committer = new Thread(this::commitLoop, "retry-journal-committer");
+    this.committer.setDaemon(true);
+    this.committer.start();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long nextTaskId() {
+    return this.taskIds.incrementAndGet();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void recordPending(long taskId, Object task, int failedAttempts, long previousDelayMillis,
+                            long dueEpochMillis) {
+    byte[] payload = this.taskSerializer.serialize(task);
+    ByteBuffer record = newRecord(PENDING_FIXED_BYTES + payload.length);
+    record.put(PENDING)
+      .putLong(taskId)
+      .putInt(failedAttempts)
+      .putLong(previousDelayMillis)
+      .putLong(dueEpochMillis)
+      .put(payload);
+    byte[] bytes = sealRecord(record);
+    synchronized (this) {
+      this.checkOpen();
+      this.makeLive(taskId, this.append(bytes));
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void recordCompleted(long taskId) {
+    ByteBuffer record = newRecord(COMPLETED_BYTES);
+    record.put(COMPLETED).putLong(taskId);
+    byte[] bytes = sealRecord(record);
+    synchronized (this) {
+      this.checkOpen();
+      this.append(bytes);
+      this.makeDead(taskId);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized List<JournaledTask> pendingTasks() {
+    List<JournaledTask> pendingTasks = new ArrayList<>(this.liveRecords.size());
+    List<Long> unreadable = new ArrayList<>();
+    for (Location location : this.liveRecords.values()) {
+      ByteBuffer record = location.segment.read(location.offset + HEADER_BYTES, location.length - HEADER_BYTES);
+      record.get();
+      long taskId = record.getLong();
+      int failedAttempts = record.getInt();
+      long previousDelayMillis = record.getLong();
+      long dueEpochMillis = record.getLong();
+      byte[] payload = new byte[record.remaining()];
+      record.get(payload);
+      Object task;
+      try {
+        task = this.taskSerializer.deserialize(payload);
+      }
+      catch (IllegalArgumentException notDeserializable) {
+        // Its class is gone or changed, it would never be read back
+        unreadable.add(taskId);
+        continue;
+      }
+      pendingTasks.add(new JournaledTask(taskId, task, failedAttempts, previousDelayMillis, dueEpochMillis));
+    }
+    for (long taskId : unreadable) {
+      this.recordCompleted(taskId);
+    }
+    pendingTasks.sort(Comparator.comparingLong(JournaledTask::getDueEpochMillis));
+    return pendingTasks;
+  }
+
+  /**
+   * Forces every record written so far to disk without waiting for the committer
+   */
+  public void sync() {
+    List<Segment> dirty = new ArrayList<>();
+    synchronized (this) {
+      for (Segment segment : this.segments) {
+        if (segment.dirty) {
+          segment.dirty = false;
+          dirty.add(segment);
+        }
+      }
+    }
+    for (Segment segment : dirty) {
+      segment.buffer.force();
+    }
+  }
+
+  /**
+   * Stops the committer, forces what was written and closes the segment files
+   * @throws IOException if a segment file can't be closed
+   */
+  @Override
+  public void close() throws IOException {
+    if (this.closed) {
+      return;
+    }
+    this.closed = true;
+    LockSupport.unpark(this.committer);
+    try {
+      this.committer.join();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    this.sync();
+    synchronized (this) {
+      for (Segment segment : this.segments) {
+        segment.channel.close();
+      }
+    }
+  }
+
+  /**
+   * Forces and compacts once per commit interval until the journal is closed
+   */
+  private void commitLoop() {
+    while (!this.closed) {
+      LockSupport.parkNanos(this, this.commitIntervalNanos);
+      this.sync();
+      synchronized (this) {
+        if (!this.closed) {
+          this.compact();
+        }
+      }
+    }
+  }
+
+  /**
+   * Drops old segments from the front of the log, copying their live records to the newest segment first. Only the
+   * oldest segment is ever dropped, a newer one can hold the completion of a task whose pending record is in an
+   * older one
+   */
+  private void compact() {
+    while (this.segments.size() > 1) {
+      Segment oldest = this.segments.peekFirst();
+      if (oldest.liveBytes > this.segmentBytes * COMPACTION_THRESHOLD) {
+        return;
+      }
+      if (oldest.liveCount > 0) {
+        List<Long> movedTaskIds = new ArrayList<>(oldest.liveCount);
+        for (Map.Entry<Long, Location> entry : this.liveRecords.entrySet()) {
+          if (entry.getValue().segment == oldest) {
+            movedTaskIds.add(entry.getKey());
+          }
+        }
+        List<Segment> copiedTo = new ArrayList<>(2);
+        for (Long taskId : movedTaskIds) {
+          Location location = this.liveRecords.get(taskId);
+          byte[] bytes = new byte[location.length];
+          oldest.read(location.offset, location.length).get(bytes);
+          Location copy = this.append(bytes);
+          this.makeLive(taskId, copy);
+          if (!copiedTo.contains(copy.segment)) {
+            copiedTo.add(copy.segment);
+          }
+        }
+        // The copies have to be on disk before the only other durable copy is deleted
+        for (Segment segment : copiedTo) {
+          segment.dirty = false;
+          segment.buffer.force();
+        }
+      }
+      this.segments.pollFirst();
+      try {
+        oldest.channel.close();
+        Files.deleteIfExists(oldest.path);
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /**
+   * Reads back the segments in the directory and rebuilds the live records
+   * @throws IOException if a segment can't be read
+   */
+  private void load() throws IOException {
+    List<Path> paths = new ArrayList<>();
+    String glob = SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX;
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, glob)) {
+      for (Path path : stream) {
+        paths.add(path);
+      }
+    }
+    paths.sort(Comparator.comparingLong(MappedSegmentRetryJournal::segmentIndex));
+    long maxTaskId = 0;
+    for (Path path : paths) {
+      Segment segment = Segment.open(path, segmentIndex(path), (int)Math.max(Files.size(path), this.segmentBytes));
+      this.segments.addLast(segment);
+      CRC32 crc = new CRC32();
+      int position = 0;
+      while (position + HEADER_BYTES <= segment.capacity) {
+        int bodyLength = segment.buffer.getInt(position);
+        if (bodyLength < COMPLETED_BYTES || position + HEADER_BYTES + bodyLength > segment.capacity) {
+          break;
+        }
+        ByteBuffer body = segment.read(position + HEADER_BYTES, bodyLength);
+        crc.reset();
+        crc.update(body.duplicate());
+        if ((int)crc.getValue() != segment.buffer.getInt(position + 4)) {
+          // Torn write, nothing after it was committed
+          break;
+        }
+        byte type = body.get();
+        long taskId = body.getLong();
+        maxTaskId = Math.max(maxTaskId, taskId);
+        if (type == PENDING) {
+          this.makeLive(taskId, new Location(segment, position, HEADER_BYTES + bodyLength));
+        }
+        else {
+          this.makeDead(taskId);
+        }
+        position += HEADER_BYTES + bodyLength;
+      }
+      segment.writePosition = position;
+    }
+    this.taskIds.set(maxTaskId);
+    if (this.segments.isEmpty()) {
+      this.segments.addLast(this.newSegment(0));
+    }
+    this.compact();
+  }
+
+  /**
+   * Appends a record to the newest segment, starting a new segment if it doesn't fit
+   * @param bytes the sealed record
+   * @return where the record was written
+   */
+  private Location append(byte[] bytes) {
+    if (bytes.length > this.segmentBytes) {
+      throw new IllegalArgumentException("Task is too large for a journal segment");
+    }
+    Segment active = this.segments.peekLast();
+    if (active.writePosition + bytes.length > active.capacity) {
+      try {
+        active = this.newSegment(active.index + 1);
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      this.segments.addLast(active);
+    }
+    ByteBuffer target = active.buffer.duplicate();
+    target.position(active.writePosition);
+    target.put(bytes);
+    Location location = new Location(active, active.writePosition, bytes.length);
+    active.writePosition += bytes.length;
+    active.dirty = true;
+    return location;
+  }
+
+  /**
+   * Makes a record the live one of its task
+   * @param taskId the task
+   * @param location where the record is
+   */
+  private void makeLive(long taskId, Location location) {
+    this.makeDead(taskId);
+    this.liveRecords.put(taskId, location);
+    location.segment.liveCount++;
+    location.segment.liveBytes += location.length;
+  }
+
+  /**
+   * Drops the live record of a task, if it has one
+   * @param taskId the task
+   */
+  private void makeDead(long taskId) {
+    Location previous = this.liveRecords.remove(taskId);
+    if (previous != null) {
+      previous.segment.liveCount--;
+      previous.segment.liveBytes -= previous.length;
+    }
+  }
+
+  /**
+   * Creates and maps a new, empty segment file
+   * @param index the index of the segment
+   * @return the segment
+   * @throws IOException if the file can't be created
+   */
+  private Segment newSegment(long index) throws IOException {
+    return Segment.open(this.directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX)),
+      index, this.segmentBytes);
+  }
+
+  /**
+   * Throws if the journal was closed
+   */
+  private void checkOpen() {
+    if (this.closed) {
+      throw new IllegalStateException("Journal is closed");
+    }
+  }
+
+  /**
+   * Gets the index of a segment from its file name
+   * @param path the segment file
+   * @return the index
+   */
+  private static long segmentIndex(Path path) {
+    String name = path.getFileName().toString();
+    return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+  }
+
+  /**
+   * Allocates a record with room for its header
+   * @param bodyLength the length of the body
+   * @return the buffer, positioned at the start of the body
+   */
+  private static ByteBuffer newRecord(int bodyLength) {
+    ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + bodyLength);
+    record.putInt(bodyLength).putInt(0);
+    return record;
+  }
+
+  /**
+   * Fills in the checksum of a record
+   * @param record the record with its body written
+   * @return the bytes of the record
+   */
+  private static byte[] sealRecord(ByteBuffer record) {
+    CRC32 crc = new CRC32();
+    crc.update(record.array(), HEADER_BYTES, record.capacity() - HEADER_BYTES);
+    record.putInt(4, (int)crc.getValue());
+    return record.array();
+  }
+
+  /**
+   * Where a record is
+   */
+  private static final class Location {
+    private final Segment segment;
+    private final int offset;
+    private final int length;
+
+    /**
+     * Creates a new {@link Location}
+     * @param segment the segment holding the record
+     * @param offset the offset of the record's header
+     * @param length the length of the record, header included
+     */
+    private Location(Segment segment, int offset, int length) {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+  /**
+   * A mapped segment file and the bookkeeping of its records
+   */
+  private static final class Segment {
+    private final Path path;
+    private final long index;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private int writePosition;
+    private int liveCount;
+    private long liveBytes;
+    private boolean dirty;
+
+    /**
+     * Creates a new {@link Segment}
+     * @param path the file
+     * @param index the index of the segment
+     * @param channel the open file
+     * @param buffer the mapping of the file
+     */
+    private Segment(Path path, long index, FileChannel channel, MappedByteBuffer buffer) {
+      this.path = path;
+      this.index = index;
+      this.channel = channel;
+      this.buffer = buffer;
+      this.capacity = buffer.capacity();
+    }
+
+    /**
+     * Opens and maps a segment file, creating it if needed
+     * @param path the file
+     * @param index the index of the segment
+     * @param size the size to map
+     * @return the segment
+     * @throws IOException if the file can't be mapped
+     */
+    private static Segment open(Path path, long index, int size) throws IOException {
+      FileChannel channel = FileChannel.open(path,
+        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      try {
+        return new Segment(path, index, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+      }
+      catch (IOException | RuntimeException e) {
+        channel.close();
+        throw e;
+      }
+    }
+
+    /**
+     * Gets a view of part of the segment
+     * @param offset the offset
+     * @param length the length
+     * @return the view, positioned at the offset
+     */
+    private ByteBuffer read(int offset, int length) {
+      ByteBuffer view = this.buffer.duplicate();
+      view.position(offset);
+      view.limit(offset + length);
+      return view.slice();
+    }
+  }
+}
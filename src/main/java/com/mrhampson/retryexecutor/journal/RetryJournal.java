@@ -0,0 +1,61 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.journal;
+
+import java.util.List;
+
+/**
+ * Persists the tasks of a {@link com.mrhampson.retryexecutor.RetryExecutor} that are waiting for a retry, so they
+ * can be picked up again after a restart instead of being lost with the process. A task is recorded each time a
+ * retry is scheduled and marked completed once it succeeds or gives up. Implementations must be thread-safe
+ * @author Marshall Hampson
+ */
+public interface RetryJournal {
+
+  /**
+   * Hands out an id for a task that is about to be recorded for the first time
+   * @return the id, unique within this journal
+   */
+  long nextTaskId();
+
+  /**
+   * Records a task waiting for its next try, replacing any earlier record of it
+   * @param taskId the id of the task
+   * @param task the user's task
+   * @param failedAttempts the number of tries that have failed so far
+   * @param previousDelayMillis the delay before the next try
+   * @param dueEpochMillis when the next try is due, in epoch millis
+   * @throws IllegalArgumentException if the task can't be serialized
+   */
+  void recordPending(long taskId, Object task, int failedAttempts, long previousDelayMillis, long dueEpochMillis);
+
+  /**
+   * Records a task that no longer needs to be retried
+   * @param taskId the id of the task
+   */
+  void recordCompleted(long taskId);
+
+  /**
+   * Gets the tasks that were recorded as pending and never completed. Tasks that can't be read back are left out
+   * and marked completed
+   * @return the pending tasks
+   */
+  List<JournaledTask> pendingTasks();
+}
@@ -0,0 +1,43 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.journal;
+
+/**
+ * Turns tasks into bytes for a {@link RetryJournal} and back
+ * @author Marshall Hampson
+ */
+public interface TaskSerializer {
+
+  /**
+   * Serializes a task
+   * @param task the task
+   * @return the bytes
+   * @throws IllegalArgumentException if the task can't be serialized
+   */
+  byte[] serialize(Object task);
+
+  /**
+   * Deserializes a task
+   * @param bytes the bytes written by {@link #serialize(Object)}
+   * @return the task
+   * @throws IllegalArgumentException if the bytes can't be read back
+   */
+  Object deserialize(byte[] bytes);
+}
@@ -0,0 +1,118 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * A lock-free histogram with log-linear buckets in the style of HdrHistogram. Every power of two is split into 16
+ * sub-buckets, so recorded values are kept to within about 6% and the whole range of a long fits in a fixed array.
+ * Recording is a single atomic increment
+ * @author Marshall Hampson
+ */
+public final class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Records a value, negative values are recorded as 0
+   * @param value the value
+   */
+  public void record(long value) {
+    long clamped = Math.max(value, 0);
+    this.counts.incrementAndGet(indexOf(clamped));
+    this.max.accumulate(clamped);
+  }
+
+  /**
+   * Gets the number of recorded values
+   * @return the count
+   */
+  public long getCount() {
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      count += this.counts.get(i);
+    }
+    return count;
+  }
+
+  /**
+   * Gets the largest recorded value
+   * @return the max, 0 if nothing was recorded
+   */
+  public long getMax() {
+    return this.max.get();
+  }
+
+  /**
+   * Gets the value below which a percentage of the recorded values fall
+   * @param percentile the percentile between 0 and 100
+   * @return the lower bound of the bucket holding the percentile, 0 if nothing was recorded
+   */
+  public long getValueAtPercentile(double percentile) {
+    long total = this.getCount();
+    if (total == 0) {
+      return 0;
+    }
+    long target = Math.max(1, (long)Math.ceil(total * Math.min(Math.max(percentile, 0), 100) / 100));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += this.counts.get(i);
+      if (seen >= target) {
+        return valueOf(i);
+      }
+    }
+    return this.getMax();
+  }
+
+  /**
+   * Gets the bucket of a value. Values below 16 get a bucket each, larger values go in one of the 16 sub-buckets of
+   * their power of two
+   * @param value the value, not negative
+   * @return the bucket index
+   */
+  private static int indexOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int)value;
+    }
+    int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int)(value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * Gets the smallest value that lands in a bucket
+   * @param index the bucket index
+   * @return the value
+   */
+  private static long valueOf(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    long subBucket = index % SUB_BUCKETS;
+    return (1L << exponent) | (subBucket << (exponent - SUB_BUCKET_BITS));
+  }
+}
@@ -0,0 +1,33 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.metrics;
+
+/**
+ * The default {@link RetryListener} that ignores every event. The executor recognizes it and skips the timing
+ * it would otherwise do for a listener, and the empty calls inline away
+ * @author Marshall Hampson
+ */
+public final class NoOpRetryListener implements RetryListener {
+  public static final NoOpRetryListener INSTANCE = new NoOpRetryListener();
+
+  private NoOpRetryListener() {
+
+  }
+}
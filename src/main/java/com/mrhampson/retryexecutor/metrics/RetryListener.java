@@ -0,0 +1,77 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.metrics;
+
+import com.mrhampson.retryexecutor.GiveUpReason;
+
+/**
+ * Receives the events of every task a {@link com.mrhampson.retryexecutor.RetryExecutor} runs. Events are delivered on
+ * the thread running the task, so implementations must be thread-safe, fast, and must not throw. Every method does
+ * nothing by default
+ * @author Marshall Hampson
+ */
+public interface RetryListener {
+
+  /**
+   * Called when a try starts
+   * @param task the user's task
+   * @param attemptNumber the number of the try, starting at 1
+   * @param schedulingLagNanos how much later than intended the scheduler started the try
+   */
+  default void onAttemptStarted(Object task, int attemptNumber, long schedulingLagNanos) {
+  }
+
+  /**
+   * Called when a try failed
+   * @param task the user's task
+   * @param attemptNumber the number of the try
+   * @param failure the failure
+   * @param durationNanos how long the try ran
+   */
+  default void onAttemptFailed(Object task, int attemptNumber, Throwable failure, long durationNanos) {
+  }
+
+  /**
+   * Called when the next try has been handed to the scheduler
+   * @param task the user's task
+   * @param attemptNumber the number of the try that will run
+   * @param delayMillis the backoff before it runs
+   */
+  default void onRetryScheduled(Object task, int attemptNumber, long delayMillis) {
+  }
+
+  /**
+   * Called when a try succeeded
+   * @param task the user's task
+   * @param attempts the number of tries it took
+   * @param durationNanos how long the successful try ran
+   */
+  default void onSuccess(Object task, int attempts, long durationNanos) {
+  }
+
+  /**
+   * Called when a task gave up
+   * @param task the user's task
+   * @param attempts the number of tries that were made
+   * @param reason why the task gave up
+   */
+  default void onExhausted(Object task, int attempts, GiveUpReason reason) {
+  }
+}
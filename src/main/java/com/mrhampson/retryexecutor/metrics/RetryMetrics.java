@@ -0,0 +1,88 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.metrics;
+
+import com.mrhampson.retryexecutor.GiveUpReason;
+
+import java.util.Objects;
+
+/**
+ * A {@link RetryListener} that keeps {@link TaskMetrics} per task class. The metrics of a class are looked up through
+ * a {@link ClassValue}, so they don't keep the class from being unloaded
+ * @author Marshall Hampson
+ */
+public class RetryMetrics implements RetryListener {
+  private final ClassValue<TaskMetrics> taskMetrics = new ClassValue<TaskMetrics>() {
+    @Override
+    protected TaskMetrics computeValue(Class<?> type) {
+      return new TaskMetrics();
+    }
+  };
+
+  /**
+   * Gets the metrics of a task class
+   * @param taskClass the class of the user's task
+   * @return the metrics, empty if no task of the class has run
+   */
+  public TaskMetrics forTaskClass(Class<?> taskClass) {
+    Objects.requireNonNull(taskClass);
+    return this.taskMetrics.get(taskClass);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void onAttemptStarted(Object task, int attemptNumber, long schedulingLagNanos) {
+    this.taskMetrics.get(task.getClass()).onAttemptStarted(attemptNumber, schedulingLagNanos);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void onAttemptFailed(Object task, int attemptNumber, Throwable failure, long durationNanos) {
+    this.taskMetrics.get(task.getClass()).onAttemptFailed(durationNanos);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void onRetryScheduled(Object task, int attemptNumber, long delayMillis) {
+    this.taskMetrics.get(task.getClass()).onRetryScheduled(delayMillis);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void onSuccess(Object task, int attempts, long durationNanos) {
+    this.taskMetrics.get(task.getClass()).onSuccess(attempts, durationNanos);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void onExhausted(Object task, int attempts, GiveUpReason reason) {
+    this.taskMetrics.get(task.getClass()).onExhausted(attempts, reason);
+  }
+}
@@ -0,0 +1,188 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.metrics;
+
+import com.mrhampson.retryexecutor.GiveUpReason;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters and histograms of one task class, kept by {@link RetryMetrics}. Counters are striped
+ * {@link LongAdder}s, so recording from many threads doesn't contend on a single cache line
+ * @author Marshall Hampson
+ */
+public final class TaskMetrics {
+  private final LongAdder attempts = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private final LongAdder retriesScheduled = new LongAdder();
+  private final LongAdder successes = new LongAdder();
+  private final LongAdder exhausted = new LongAdder();
+  private final LongAdder inBackoff = new LongAdder();
+  private final LatencyHistogram triesPerSuccess = new LatencyHistogram();
+  private final LatencyHistogram backoffDelayMillis = new LatencyHistogram();
+  private final LatencyHistogram schedulingLagNanos = new LatencyHistogram();
+  private final LatencyHistogram attemptDurationNanos = new LatencyHistogram();
+
+  /**
+   * Creates a new {@link TaskMetrics}
+   */
+  TaskMetrics() {
+
+  }
+
+  /**
+   * Records a try starting
+   * @param attemptNumber the number of the try
+   * @param lagNanos how late the scheduler started it
+   */
+  void onAttemptStarted(int attemptNumber, long lagNanos) {
+    this.attempts.increment();
+    if (attemptNumber > 1) {
+      this.inBackoff.decrement();
+    }
+    this.schedulingLagNanos.record(lagNanos);
+  }
+
+  /**
+   * Records a failed try
+   * @param durationNanos how long it ran
+   */
+  void onAttemptFailed(long durationNanos) {
+    this.failures.increment();
+    this.attemptDurationNanos.record(durationNanos);
+  }
+
+  /**
+   * Records a retry handed to the scheduler
+   * @param delayMillis its backoff
+   */
+  void onRetryScheduled(long delayMillis) {
+    this.retriesScheduled.increment();
+    this.inBackoff.increment();
+    this.backoffDelayMillis.record(delayMillis);
+  }
+
+  /**
+   * Records a task succeeding
+   * @param attempts the number of tries it took
+   * @param durationNanos how long the successful try ran
+   */
+  void onSuccess(int attempts, long durationNanos) {
+    this.successes.increment();
+    this.triesPerSuccess.record(attempts);
+    this.attemptDurationNanos.record(durationNanos);
+  }
+
+  /**
+   * Records a task giving up
+   * @param attempts the number of tries that were made
+   * @param reason why it gave up
+   */
+  void onExhausted(int attempts, GiveUpReason reason) {
+    this.exhausted.increment();
+    if ((reason == GiveUpReason.CIRCUIT_OPEN || reason == GiveUpReason.DROPPED || reason == GiveUpReason.REJECTED
+      || reason == GiveUpReason.INTERRUPTED) && attempts > 0) {
+      // Rejected by the circuit breaker or the scheduler when its retry came due, or dropped or interrupted while
+      // waiting for it, so it never started
+      this.inBackoff.decrement();
+    }
+  }
+
+  /**
+   * Gets the number of tries started
+   * @return the count
+   */
+  public long getAttempts() {
+    return this.attempts.sum();
+  }
+
+  /**
+   * Gets the number of tries that failed
+   * @return the count
+   */
+  public long getFailures() {
+    return this.failures.sum();
+  }
+
+  /**
+   * Gets the number of retries handed to the scheduler
+   * @return the count
+   */
+  public long getRetriesScheduled() {
+    return this.retriesScheduled.sum();
+  }
+
+  /**
+   * Gets the number of tasks that succeeded
+   * @return the count
+   */
+  public long getSuccesses() {
+    return this.successes.sum();
+  }
+
+  /**
+   * Gets the number of tasks that gave up
+   * @return the count
+   */
+  public long getExhausted() {
+    return this.exhausted.sum();
+  }
+
+  /**
+   * Gets the number of tasks currently waiting out a backoff. Retries of submitted tasks that are cancelled while
+   * waiting never start, so they stay counted
+   * @return the count
+   */
+  public long getInBackoff() {
+    return this.inBackoff.sum();
+  }
+
+  /**
+   * Gets the distribution of the number of tries successful tasks took
+   * @return the histogram
+   */
+  public LatencyHistogram getTriesPerSuccess() {
+    return this.triesPerSuccess;
+  }
+
+  /**
+   * Gets the distribution of the backoff delays, in millis
+   * @return the histogram
+   */
+  public LatencyHistogram getBackoffDelayMillis() {
+    return this.backoffDelayMillis;
+  }
+
+  /**
+   * Gets the distribution of how late the scheduler started tries, in nanos
+   * @return the histogram
+   */
+  public LatencyHistogram getSchedulingLagNanos() {
+    return this.schedulingLagNanos;
+  }
+
+  /**
+   * Gets the distribution of how long tries ran, in nanos
+   * @return the histogram
+   */
+  public LatencyHistogram getAttemptDurationNanos() {
+    return this.attemptDurationNanos;
+  }
+}
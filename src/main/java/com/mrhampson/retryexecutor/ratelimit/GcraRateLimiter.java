@@ -0,0 +1,86 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.ratelimit;
+
+import com.mrhampson.retryexecutor.annotations.RetryWithRateLimit;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free {@link RateLimiter} using the generic cell rate algorithm. Permits are spaced evenly over the period,
+ * with up to a burst of them available at once after a quiet spell. The whole state is one theoretical arrival time,
+ * so reserving a permit is a single compare-and-set
+ * @author Marshall Hampson
+ */
+public class GcraRateLimiter implements RateLimiter {
+  private final long emissionIntervalNanos;
+  private final long burstToleranceNanos;
+  private final AtomicLong theoreticalArrivalNanos;
+
+  /**
+   * Creates a new {@link GcraRateLimiter}
+   * @param permits the permits per period
+   * @param period the period
+   * @param periodUnit the unit of the period
+   * @param burst how many permits can be taken at once
+   */
+  public GcraRateLimiter(long permits, long period, TimeUnit periodUnit, int burst) {
+    Objects.requireNonNull(periodUnit);
+    if (permits < 1) {
+      throw new IllegalArgumentException("permits must be at least 1");
+    }
+    if (period < 1) {
+      throw new IllegalArgumentException("period must be positive");
+    }
+    if (burst < 1) {
+      throw new IllegalArgumentException("burst must be at least 1");
+    }
+    this.emissionIntervalNanos = Math.max(1, periodUnit.toNanos(period) / permits);
+    this.burstToleranceNanos = this.emissionIntervalNanos * (burst - 1);
+    this.theoreticalArrivalNanos = new AtomicLong(System.nanoTime());
+  }
+
+  /**
+   * Creates a new {@link GcraRateLimiter} from the annotation
+   * @param annotation the annotation
+   * @return the {@link GcraRateLimiter}
+   */
+  public static GcraRateLimiter fromAnnotation(RetryWithRateLimit annotation) {
+    Objects.requireNonNull(annotation);
+    return new GcraRateLimiter(annotation.permits(), annotation.period(), annotation.periodUnit(), annotation.burst());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long reservePermit(Object key) {
+    long now = System.nanoTime();
+    while (true) {
+      long theoreticalArrival = this.theoreticalArrivalNanos.get();
+      long start = theoreticalArrival - now > 0 ? theoreticalArrival : now;
+      if (this.theoreticalArrivalNanos.compareAndSet(theoreticalArrival, start + this.emissionIntervalNanos)) {
+        return Math.max(0, start - this.burstToleranceNanos - now);
+      }
+    }
+  }
+}
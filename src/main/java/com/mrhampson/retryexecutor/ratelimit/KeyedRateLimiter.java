@@ -0,0 +1,55 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.ratelimit;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * A {@link RateLimiter} that keeps a separate limiter per task key, e.g. one per downstream API
+ * @author Marshall Hampson
+ */
+public class KeyedRateLimiter implements RateLimiter {
+  private final Supplier<? extends RateLimiter> rateLimiterFactory;
+  private final ConcurrentMap<Object, RateLimiter> rateLimiters = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a new {@link KeyedRateLimiter}
+   * @param rateLimiterFactory creates the limiter for a key the first time it is seen
+   */
+  public KeyedRateLimiter(Supplier<? extends RateLimiter> rateLimiterFactory) {
+    Objects.requireNonNull(rateLimiterFactory);
+    this.rateLimiterFactory = rateLimiterFactory;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long reservePermit(Object key) {
+    RateLimiter rateLimiter = this.rateLimiters.get(key);
+    if (rateLimiter == null) {
+      rateLimiter = this.rateLimiters.computeIfAbsent(key, ignored -> this.rateLimiterFactory.get());
+    }
+    return rateLimiter.reservePermit(key);
+  }
+}
@@ -0,0 +1,36 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.ratelimit;
+
+/**
+ * Admits the tries of a {@link com.mrhampson.retryexecutor.RetryExecutor} at a limited rate. A task reserves a permit
+ * before each try, first tries and retries alike, and if the permit isn't due yet the task waits in the scheduler
+ * instead of calling out and being throttled. Implementations must be thread-safe and must not block
+ * @author Marshall Hampson
+ */
+public interface RateLimiter {
+
+  /**
+   * Reserves the next permit
+   * @param key the key of the task, see {@link com.mrhampson.retryexecutor.RetryExecutor.Builder#taskKeyFunction}
+   * @return how long to wait in nanos before using the permit, 0 if it can be used right away
+   */
+  long reservePermit(Object key);
+}
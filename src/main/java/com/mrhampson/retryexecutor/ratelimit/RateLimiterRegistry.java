@@ -0,0 +1,71 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.ratelimit;
+
+import com.mrhampson.retryexecutor.annotations.RetryWithRateLimit;
+
+/**
+ * Holds the {@link RateLimiter}s of a {@link com.mrhampson.retryexecutor.RetryExecutor}. Each class annotated with
+ * {@link RetryWithRateLimit} gets a limiter per task key built from the annotation, other tasks use the default
+ * limiter if there is one and aren't limited otherwise
+ * @author Marshall Hampson
+ */
+public class RateLimiterRegistry {
+  /**
+   * Marker cached for classes that aren't annotated, {@link ClassValue} entries can't be absent
+   */
+  private static final RateLimiter NOT_ANNOTATED = key -> 0;
+
+  private final RateLimiter defaultRateLimiter;
+  private final ClassValue<RateLimiter> annotatedRateLimiters = new ClassValue<RateLimiter>() {
+    @Override
+    protected RateLimiter computeValue(Class<?> type) {
+      RetryWithRateLimit annotation = type.getAnnotation(RetryWithRateLimit.class);
+      return annotation == null
+        ? NOT_ANNOTATED
+        : new KeyedRateLimiter(() -> GcraRateLimiter.fromAnnotation(annotation));
+    }
+  };
+
+  /**
+   * Creates a new {@link RateLimiterRegistry} that only limits annotated tasks
+   */
+  public RateLimiterRegistry() {
+    this(null);
+  }
+
+  /**
+   * Creates a new {@link RateLimiterRegistry}
+   * @param defaultRateLimiter the limiter for tasks that aren't annotated, or null to leave them unlimited
+   */
+  public RateLimiterRegistry(RateLimiter defaultRateLimiter) {
+    this.defaultRateLimiter = defaultRateLimiter;
+  }
+
+  /**
+   * Gets the limiter that applies to a task class
+   * @param taskClass the class of the user's task
+   * @return the limiter, or null if tasks of the class aren't limited
+   */
+  public RateLimiter rateLimiterFor(Class<?> taskClass) {
+    RateLimiter rateLimiter = this.annotatedRateLimiters.get(taskClass);
+    return rateLimiter != NOT_ANNOTATED ? rateLimiter : this.defaultRateLimiter;
+  }
+}
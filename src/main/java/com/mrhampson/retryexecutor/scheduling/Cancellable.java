@@ -0,0 +1,33 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.scheduling;
+
+/**
+ * A handle to a task that was scheduled to run later
+ * @author Marshall Hampson
+ */
+public interface Cancellable {
+
+  /**
+   * Stops the task from running if it hasn't started yet
+   * @return true if the task was cancelled by this call
+   */
+  boolean cancel();
+}
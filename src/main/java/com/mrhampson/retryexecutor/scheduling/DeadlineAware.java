@@ -0,0 +1,41 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.scheduling;
+
+/**
+ * A task handed to a {@link RetryScheduler} that tells how urgent it is, so a scheduler such as the
+ * {@link DeadlineScheduler} can run the most urgent due tasks first. The tasks of a
+ * {@link com.mrhampson.retryexecutor.RetryExecutor} implement it
+ * @author Marshall Hampson
+ */
+public interface DeadlineAware {
+
+  /**
+   * Gets the time by which the task has to be done
+   * @return the deadline in {@link System#nanoTime()} terms, 0 if the task has none
+   */
+  long getDeadlineNanos();
+
+  /**
+   * Gets the number of tries of the task that have failed so far
+   * @return the number of failed tries, 0 for a first try
+   */
+  int getFailedAttempts();
+}
@@ -0,0 +1,190 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.scheduling;
+
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link RetryScheduler} that runs due tasks earliest deadline first, so under overload the tasks closest to their
+ * deadline get the workers instead of waiting behind fresh work. A task's deadline comes from its retry policy, see
+ * {@link com.mrhampson.retryexecutor.strategies.RetryPolicy#getDeadlineMillis()}, a task without one is due the
+ * default deadline after it became ready. Every failed try moves a task's deadline forward by the aging step, so a
+ * task that has already failed several times isn't passed over yet again. Tasks run on a work-stealing
+ * {@link ForkJoinPool} with a token per queued task, as in the {@link LaneScheduler}. Ready tasks are spread over
+ * several heaps with a lock each, a task goes to a random heap and a worker takes the more urgent head of two different
+ * random heaps. The order is therefore nearly, not strictly, earliest deadline first, in exchange for workers rarely
+ * contending on a lock. Retries wait out their delay in a hashed-wheel timer before they become ready
+ * @author Marshall Hampson
+ */
+public class DeadlineScheduler extends TokenPoolScheduler {
+  private static final long DEFAULT_DEADLINE_MILLIS = 1000;
+  private static final long DEFAULT_AGING_MILLIS = 100;
+  private static final Comparator<Entry> MOST_URGENT_FIRST =
+    (first, second) -> Long.signum(first.priorityNanos - second.priorityNanos);
+
+  private final Heap[] heaps;
+  private final long defaultDeadlineNanos;
+  private final long agingNanos;
+
+  /**
+   * Creates a new {@link DeadlineScheduler} that gives tasks without a deadline one of a second, and moves a task's
+   * deadline forward 100 millis for every failed try
+   * @param parallelism the number of worker threads
+   */
+  public DeadlineScheduler(int parallelism) {
+    this(parallelism, DEFAULT_DEADLINE_MILLIS, DEFAULT_AGING_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Creates a new {@link DeadlineScheduler}
+   * @param parallelism the number of worker threads
+   * @param defaultDeadline the deadline of a task without one, counted from when it becomes ready
+   * @param agingStep how far a task's deadline moves forward for every failed try
+   * @param unit the unit of the default deadline and aging step
+   */
+  public DeadlineScheduler(int parallelism, long defaultDeadline, long agingStep, TimeUnit unit) {
+    super(parallelism, "retry-deadline-worker-");
+    Objects.requireNonNull(unit);
+    if (defaultDeadline < 0) {
+      throw new IllegalArgumentException("defaultDeadline must not be negative");
+    }
+    if (agingStep < 0) {
+      throw new IllegalArgumentException("agingStep must not be negative");
+    }
+    this.defaultDeadlineNanos = unit.toNanos(defaultDeadline);
+    this.agingNanos = unit.toNanos(agingStep);
+    this.heaps = new Heap[parallelism * 2];
+    for (int i = 0; i < this.heaps.length; i++) {
+      this.heaps[i] = new Heap();
+    }
+  }
+
+  /**
+   * Gets the number of tasks that are due and waiting for a worker
+   * @return the number of queued tasks
+   */
+  public int getQueuedTasks() {
+    int queued = 0;
+    for (Heap heap : this.heaps) {
+      queued += heap.size();
+    }
+    return queued;
+  }
+
+  /**
+   * Queues a ready task in a random heap
+   * @param task the task
+   * @param key the key of the task, ignored
+   * @param retry whether the task is a retry, ignored as its failed tries already age it
+   */
+  @Override
+  void offer(Runnable task, Object key, boolean retry) {
+    long now = System.nanoTime();
+    long deadlineNanos = 0;
+    int failedAttempts = 0;
+    if (task instanceof DeadlineAware) {
+      DeadlineAware deadlineAware = (DeadlineAware)task;
+      deadlineNanos = deadlineAware.getDeadlineNanos();
+      failedAttempts = deadlineAware.getFailedAttempts();
+    }
+    if (deadlineNanos == 0) {
+      deadlineNanos = now + this.defaultDeadlineNanos;
+    }
+    Entry entry = new Entry(task, deadlineNanos - failedAttempts * this.agingNanos);
+    this.heaps[ThreadLocalRandom.current().nextInt(this.heaps.length)].offer(entry);
+  }
+
+  /**
+   * Takes the most urgent of two random heaps' heads
+   * @return the task, null if every heap is empty
+   */
+  @Override
+  Runnable poll() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int firstIndex = random.nextInt(this.heaps.length);
+    Heap first = this.heaps[firstIndex];
+    Heap second = this.heaps[(firstIndex + 1 + random.nextInt(this.heaps.length - 1)) % this.heaps.length];
+    Entry firstHead = first.head;
+    Entry secondHead = second.head;
+    boolean firstIsMoreUrgent =
+      secondHead == null || (firstHead != null && MOST_URGENT_FIRST.compare(firstHead, secondHead) <= 0);
+    Heap preferred = firstIsMoreUrgent ? first : second;
+    Entry entry = preferred.poll();
+    if (entry == null) {
+      entry = this.pollAny();
+    }
+    return entry != null ? entry.task : null;
+  }
+
+  /**
+   * Takes a task from the first heap that has one, for when both random picks came up empty
+   * @return the task, null if every heap is empty
+   */
+  private Entry pollAny() {
+    for (Heap heap : this.heaps) {
+      Entry entry = heap.poll();
+      if (entry != null) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * A ready task along with its deadline after aging
+   */
+  private static final class Entry {
+    private final Runnable task;
+    private final long priorityNanos;
+
+    private Entry(Runnable task, long priorityNanos) {
+      this.task = task;
+      this.priorityNanos = priorityNanos;
+    }
+  }
+
+  /**
+   * One of the heaps of ready tasks. The head is published so workers can compare heaps without taking their locks
+   */
+  private static final class Heap {
+    private final PriorityQueue<Entry> entries = new PriorityQueue<>(MOST_URGENT_FIRST);
+    private volatile Entry head;
+
+    private synchronized void offer(Entry entry) {
+      this.entries.add(entry);
+      this.head = this.entries.peek();
+    }
+
+    private synchronized Entry poll() {
+      Entry entry = this.entries.poll();
+      this.head = this.entries.peek();
+      return entry;
+    }
+
+    private synchronized int size() {
+      return this.entries.size();
+    }
+  }
+}
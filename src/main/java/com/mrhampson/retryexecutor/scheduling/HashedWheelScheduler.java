@@ -0,0 +1,412 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.scheduling;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link RetryScheduler} backed by a hierarchical hashed-wheel timer. Scheduling and cancelling are O(1) lock-free
+ * queue operations, a single timer thread owns the wheels and hands due tasks to a plain {@link Executor}.
+ * Timing is only as precise as the tick, a task never runs early but may run up to a tick late. Rescheduling a task
+ * from within its own run reuses its entry, and new entries are queued on an intrusive stack, so a retry allocates
+ * nothing here
+ * @author Marshall Hampson
+ */
+public class HashedWheelScheduler implements RetryScheduler, AutoCloseable {
+  private static final int LEVELS = 4;
+  private static final long DEFAULT_TICK_MILLIS = 10;
+  private static final int DEFAULT_WHEEL_SIZE = 512;
+  private static final int MAX_WHEEL_SIZE = 1 << 15;
+  private static final long MAX_DELAY_NANOS = Long.MAX_VALUE / 4;
+
+  private final Executor workerExecutor;
+  private final long tickNanos;
+  private final int wheelBits;
+  private final int wheelMask;
+  private final long[] levelSpans = new long[LEVELS];
+  private final Entry[] buckets;
+  /** Newly scheduled entries, linked through {@link Entry#nextNew} */
+  private final AtomicReference<Entry> newEntries = new AtomicReference<>();
+  private final Queue<Entry> cancelledEntries = new ConcurrentLinkedQueue<>();
+  private final long startNanos = System.nanoTime();
+  private final Thread timerThread;
+  private volatile boolean closed;
+
+  /** Only touched by the timer thread */
+  private long currentTick;
+
+  /**
+   * Creates a new {@link HashedWheelScheduler} with a 10ms tick and 512 slots per wheel
+   * @param workerExecutor the executor due tasks are handed to
+   */
+  public HashedWheelScheduler(Executor workerExecutor) {
+    this(workerExecutor, DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE);
+  }
+
+  /**
+   * Creates a new {@link HashedWheelScheduler}
+   * @param workerExecutor the executor due tasks are handed to
+   * @param tickDuration the duration of a single tick
+   * @param tickUnit the unit of the tick duration
+   * @param wheelSize the number of slots per wheel, rounded up to a power of two
+   */
+  public HashedWheelScheduler(Executor workerExecutor, long tickDuration, TimeUnit tickUnit, int wheelSize) {
+    Objects.requireNonNull(workerExecutor);
+    Objects.requireNonNull(tickUnit);
+    if (tickDuration <= 0) {
+      throw new IllegalArgumentException("tickDuration must be greater than 0");
+    }
+    if (wheelSize < 2 || wheelSize > MAX_WHEEL_SIZE) {
+      throw new IllegalArgumentException("wheelSize must be between 2 and " + MAX_WHEEL_SIZE);
+    }
+    this.workerExecutor = workerExecutor;
+    this.tickNanos = tickUnit.toNanos(tickDuration);
+    this.wheelBits = 32 - Integer.numberOfLeadingZeros(wheelSize - 1);
+    this.wheelMask = (1 << this.wheelBits) - 1;
+    for (int level = 0; level < LEVELS; level++) {
+      int shift = this.wheelBits * (level + 1);
+      this.levelSpans[level] = shift >= Long.SIZE - 1 ? Long.MAX_VALUE : 1L << shift;
+    }
+    this.buckets = new Entry[LEVELS << this.wheelBits];
+    this.timerThread = new Thread(this::runTimer, "retry-wheel-timer");
+    this.timerThread.setDaemon(true);
+    this.timerThread.start();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void execute(Runnable task) {
+    Objects.requireNonNull(task);
+    this.workerExecutor.execute(task);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Cancellable schedule(Runnable task, long delay, TimeUnit unit) {
+    Objects.requireNonNull(task);
+    Objects.requireNonNull(unit);
+    if (this.closed) {
+      throw new RejectedExecutionException("Scheduler has been closed");
+    }
+    Entry entry = new Entry(task, this.cancelledEntries);
+    entry.deadlineTick = this.deadlineTick(delay, unit);
+    this.push(entry);
+    return entry;
+  }
+
+  /**
+   * Reschedules a task, reusing its previous entry if the entry is this scheduler's and has fired
+   * @param previous the handle the task's previous schedule returned, null if it has none
+   * @param task the task
+   * @param delay the delay
+   * @param unit the unit of the delay
+   * @param key the key of the task, ignored
+   * @return the reused entry, or a new one
+   */
+  @Override
+  public Cancellable reschedule(Cancellable previous, Runnable task, long delay, TimeUnit unit, Object key) {
+    Objects.requireNonNull(task);
+    Objects.requireNonNull(unit);
+    if (!(previous instanceof Entry)) {
+      return this.schedule(task, delay, unit);
+    }
+    Entry entry = (Entry)previous;
+    if (entry.task != task || entry.cancelledEntries != this.cancelledEntries || entry.state != Entry.EXPIRED) {
+      return this.schedule(task, delay, unit);
+    }
+    if (this.closed) {
+      throw new RejectedExecutionException("Scheduler has been closed");
+    }
+    // Only the task's own run reschedules it, and the timer is done with an entry once it has fired
+    entry.deadlineTick = this.deadlineTick(delay, unit);
+    entry.state = Entry.PENDING;
+    this.push(entry);
+    return entry;
+  }
+
+  /**
+   * Stops the timer thread. Tasks that haven't come due yet are discarded
+   */
+  @Override
+  public void close() {
+    this.closed = true;
+    LockSupport.unpark(this.timerThread);
+  }
+
+  /**
+   * The timer thread's loop
+   */
+  private void runTimer() {
+    while (!this.closed) {
+      this.drainCancelled();
+      this.drainNew();
+      long targetTick = (System.nanoTime() - this.startNanos) / this.tickNanos;
+      while (this.currentTick < targetTick) {
+        this.advance();
+      }
+      long nextTickNanos = (this.currentTick + 1) * this.tickNanos;
+      LockSupport.parkNanos(this, nextTickNanos - (System.nanoTime() - this.startNanos));
+    }
+  }
+
+  /**
+   * Works out the tick a task scheduled now comes due on
+   * @param delay the delay
+   * @param unit the unit of the delay
+   * @return the tick
+   */
+  private long deadlineTick(long delay, TimeUnit unit) {
+    long delayNanos = Math.min(Math.max(unit.toNanos(delay), 0), MAX_DELAY_NANOS);
+    long deadlineNanos = System.nanoTime() - this.startNanos + delayNanos;
+    return (deadlineNanos + this.tickNanos - 1) / this.tickNanos;
+  }
+
+  /**
+   * Hands a scheduled entry to the timer thread
+   * @param entry the entry
+   */
+  private void push(Entry entry) {
+    Entry head;
+    do {
+      head = this.newEntries.get();
+      entry.nextNew = head;
+    } while (!this.newEntries.compareAndSet(head, entry));
+  }
+
+  /**
+   * Places newly scheduled entries on the wheels, including the ones scheduled by tasks that came due meanwhile
+   */
+  private void drainNew() {
+    Entry entry;
+    while ((entry = this.newEntries.getAndSet(null)) != null) {
+      while (entry != null) {
+        Entry next = entry.nextNew;
+        entry.nextNew = null;
+        if (entry.state == Entry.PENDING) {
+          this.place(entry);
+        }
+        entry = next;
+      }
+    }
+  }
+
+  /**
+   * Unlinks cancelled entries so they don't hold on to their tasks until their slot comes around
+   */
+  private void drainCancelled() {
+    Entry entry;
+    while ((entry = this.cancelledEntries.poll()) != null) {
+      if (entry.bucket >= 0) {
+        this.unlink(entry);
+      }
+    }
+  }
+
+  /**
+   * Moves the wheels forward one tick: cascades the higher wheels whose slot just came up, then fires the lowest
+   * wheel's current slot
+   */
+  private void advance() {
+    long tick = ++this.currentTick;
+    for (int level = 1; level < LEVELS; level++) {
+      int shift = this.wheelBits * level;
+      if (shift >= Long.SIZE || (tick & ((1L << shift) - 1)) != 0) {
+        break;
+      }
+      this.cascade(level, (int)((tick >>> shift) & this.wheelMask));
+    }
+    int bucket = (int)(tick & this.wheelMask);
+    Entry entry = this.detach(bucket);
+    while (entry != null) {
+      Entry next = entry.next;
+      entry.next = null;
+      this.expire(entry);
+      entry = next;
+    }
+  }
+
+  /**
+   * Re-places every entry of a higher wheel's slot, they land on lower wheels as they get closer to due
+   * @param level the wheel
+   * @param index the slot
+   */
+  private void cascade(int level, int index) {
+    Entry entry = this.detach((level << this.wheelBits) | index);
+    while (entry != null) {
+      Entry next = entry.next;
+      entry.next = null;
+      this.place(entry);
+      entry = next;
+    }
+  }
+
+  /**
+   * Puts an entry on the lowest wheel whose span covers its remaining delay, or runs it if it's already due
+   * @param entry the entry
+   */
+  private void place(Entry entry) {
+    long remaining = entry.deadlineTick - this.currentTick;
+    if (remaining <= 0) {
+      this.expire(entry);
+      return;
+    }
+    int level = 0;
+    while (level < LEVELS - 1 && remaining >= this.levelSpans[level]) {
+      level++;
+    }
+    int shift = this.wheelBits * level;
+    int index = shift >= Long.SIZE ? 0 : (int)((entry.deadlineTick >>> shift) & this.wheelMask);
+    int bucket = (level << this.wheelBits) | index;
+    Entry head = this.buckets[bucket];
+    entry.bucket = bucket;
+    entry.prev = null;
+    entry.next = head;
+    if (head != null) {
+      head.prev = entry;
+    }
+    this.buckets[bucket] = entry;
+  }
+
+  /**
+   * Empties a slot
+   * @param bucket the slot
+   * @return the first entry of the slot's list, the rest follow through {@link Entry#next}
+   */
+  private Entry detach(int bucket) {
+    Entry head = this.buckets[bucket];
+    this.buckets[bucket] = null;
+    for (Entry entry = head; entry != null; entry = entry.next) {
+      entry.bucket = -1;
+      entry.prev = null;
+    }
+    return head;
+  }
+
+  /**
+   * Removes an entry from its slot
+   * @param entry the entry
+   */
+  private void unlink(Entry entry) {
+    if (entry.prev == null) {
+      this.buckets[entry.bucket] = entry.next;
+    }
+    else {
+      entry.prev.next = entry.next;
+    }
+    if (entry.next != null) {
+      entry.next.prev = entry.prev;
+    }
+    entry.prev = null;
+    entry.next = null;
+    entry.bucket = -1;
+  }
+
+  /**
+   * Hands an entry's task to the worker executor unless it was cancelled. A task the worker executor refuses is told
+   * so if it is {@link RejectionAware}. Anything a task throws is reported rather than let out, so one task can't
+   * stop the timer for every other
+   * @param entry the entry
+   */
+  private void expire(Entry entry) {
+    if (!Entry.STATE.compareAndSet(entry, Entry.PENDING, Entry.EXPIRED)) {
+      return;
+    }
+    try {
+      this.workerExecutor.execute(entry.task);
+    }
+    catch (RejectedExecutionException rejected) {
+      // The worker executor is shutting down, there's no one left to run the task
+      try {
+        RejectionAware.notifyRejected(entry.task, rejected);
+      }
+      catch (RuntimeException e) {
+        reportFailure(e);
+      }
+    }
+    catch (RuntimeException e) {
+      // Thrown by a task the worker executor runs on this thread
+      reportFailure(e);
+    }
+  }
+
+  /**
+   * Hands an exception a task threw on the timer thread to the thread's uncaught exception handler
+   * @param failure the exception
+   */
+  private static void reportFailure(RuntimeException failure) {
+    Thread thread = Thread.currentThread();
+    thread.getUncaughtExceptionHandler().uncaughtException(thread, failure);
+  }
+
+  /**
+   * A scheduled task. The wheel links are only touched by the timer thread, the state is shared with cancelling
+   * threads. The deadline is written before the entry is pushed, which publishes it to the timer thread
+   */
+  private static final class Entry implements Cancellable {
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+    private static final AtomicIntegerFieldUpdater<Entry> STATE =
+      AtomicIntegerFieldUpdater.newUpdater(Entry.class, "state");
+
+    private final Runnable task;
+    private final Queue<Entry> cancelledEntries;
+    private long deadlineTick;
+    private volatile int state;
+    private Entry nextNew;
+    private Entry prev;
+    private Entry next;
+    private int bucket = -1;
+
+    /**
+     * Creates a new {@link Entry}
+     * @param task the task
+     * @param cancelledEntries the queue the timer thread unlinks cancelled entries from
+     */
+    private Entry(Runnable task, Queue<Entry> cancelledEntries) {
+      this.task = task;
+      this.cancelledEntries = cancelledEntries;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean cancel() {
+      if (!STATE.compareAndSet(this, PENDING, CANCELLED)) {
+        return false;
+      }
+      this.cancelledEntries.add(this);
+      return true;
+    }
+  }
+}
@@ -0,0 +1,212 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.scheduling;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+/**
+ * A {@link RetryScheduler} that keeps first tries and retries in separate lanes, so a flood of retries for one broken
+ * dependency can't starve fresh work. Each lane queues tasks per task key and takes turns between the keys, so one
+ * misbehaving key only gets its share of the lane. Tasks run on a work-stealing {@link ForkJoinPool}. Every queued
+ * task hands the pool a token, and a token picks the task to run when it gets a worker rather than when it was
+ * queued, which is what lets the lanes and keys be weighed. Retries wait out their delay in a hashed-wheel timer
+ * before joining the retry lane. The lanes are guarded by a lock each, held only to add or take a task
+ * @author Marshall Hampson
+ */
+public class LaneScheduler extends TokenPoolScheduler {
+  private static final int DEFAULT_FIRST_TRY_WEIGHT = 4;
+  private static final int DEFAULT_RETRY_WEIGHT = 1;
+
+  private final Lane firstTries;
+  private final Lane retries;
+  private final int firstTryWeight;
+  private final int retryWeight;
+  private final AtomicLong turns = new AtomicLong();
+
+  /**
+   * Creates a new {@link LaneScheduler} that gives first tries four turns for every turn of the retries, and every
+   * key the same share of a lane
+   * @param parallelism the number of worker threads
+   */
+  public LaneScheduler(int parallelism) {
+    this(parallelism, DEFAULT_FIRST_TRY_WEIGHT, DEFAULT_RETRY_WEIGHT, key -> 1);
+  }
+
+  /**
+   * Creates a new {@link LaneScheduler}
+   * @param parallelism the number of worker threads
+   * @param firstTryWeight the turns first tries get for every {@code retryWeight} turns of the retries. 0 makes first
+   *                       tries only run when no retry is queued
+   * @param retryWeight the turns retries get for every {@code firstTryWeight} turns of the first tries. 0 makes
+   *                    retries only run when no first try is queued
+   * @param keyWeights the turns in a row a key gets when it comes up in a lane, at least 1
+   */
+  public LaneScheduler(int parallelism, int firstTryWeight, int retryWeight, ToIntFunction<Object> keyWeights) {
+    super(parallelism, "retry-lane-worker-");
+    Objects.requireNonNull(keyWeights);
+    if (firstTryWeight < 0 || retryWeight < 0 || firstTryWeight + retryWeight == 0) {
+      throw new IllegalArgumentException("Weights must not be negative and at least one must be above 0");
+    }
+    this.firstTryWeight = firstTryWeight;
+    this.retryWeight = retryWeight;
+    this.firstTries = new Lane(keyWeights);
+    this.retries = new Lane(keyWeights);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean usesTaskKeys() {
+    return true;
+  }
+
+  /**
+   * Gets the number of first tries waiting for a worker
+   * @return the number of queued first tries
+   */
+  public int getQueuedFirstTries() {
+    return this.firstTries.size();
+  }
+
+  /**
+   * Gets the number of retries that are due and waiting for a worker
+   * @return the number of queued retries
+   */
+  public int getQueuedRetries() {
+    return this.retries.size();
+  }
+
+  /**
+   * Queues a task in the lane of its kind
+   * @param task the task
+   * @param key the key of the task
+   * @param retry whether the task is a retry
+   */
+  @Override
+  void offer(Runnable task, Object key, boolean retry) {
+    (retry ? this.retries : this.firstTries).offer(task, key);
+  }
+
+  /**
+   * Takes the task whose turn it is, from the other lane if the lane whose turn it is has nothing queued
+   * @return the task, null if both lanes are empty
+   */
+  @Override
+  Runnable poll() {
+    long turn = this.turns.getAndIncrement() % (this.firstTryWeight + this.retryWeight);
+    Lane preferred = turn < this.firstTryWeight ? this.firstTries : this.retries;
+    Lane other = preferred == this.firstTries ? this.retries : this.firstTries;
+    Runnable task = preferred.poll();
+    return task != null ? task : other.poll();
+  }
+
+  /**
+   * The tasks of one lane, queued per key. Keys with queued tasks take turns in the order they arrived
+   */
+  private static final class Lane {
+    private final ToIntFunction<Object> keyWeights;
+    private final Map<Object, KeyQueue> queues = new HashMap<>();
+    private final ArrayDeque<KeyQueue> turnOrder = new ArrayDeque<>();
+    private int size;
+
+    /**
+     * Creates a new {@link Lane}
+     * @param keyWeights the turns in a row a key gets
+     */
+    private Lane(ToIntFunction<Object> keyWeights) {
+      this.keyWeights = keyWeights;
+    }
+
+    /**
+     * Queues a task behind the other tasks of its key
+     * @param task the task
+     * @param key the key
+     */
+    private synchronized void offer(Runnable task, Object key) {
+      KeyQueue queue = this.queues.get(key);
+      if (queue == null) {
+        queue = new KeyQueue(key, Math.max(1, this.keyWeights.applyAsInt(key)));
+        this.queues.put(key, queue);
+        this.turnOrder.addLast(queue);
+      }
+      queue.tasks.addLast(task);
+      this.size++;
+    }
+
+    /**
+     * Takes the next task of the key whose turn it is, and moves on to the next key once the key has used up its
+     * turns or has nothing left
+     * @return the task, null if the lane is empty
+     */
+    private synchronized Runnable poll() {
+      KeyQueue queue = this.turnOrder.peekFirst();
+      if (queue == null) {
+        return null;
+      }
+      Runnable task = queue.tasks.pollFirst();
+      this.size--;
+      if (queue.tasks.isEmpty()) {
+        this.turnOrder.pollFirst();
+        this.queues.remove(queue.key);
+      }
+      else if (--queue.turnsLeft == 0) {
+        queue.turnsLeft = queue.weight;
+        this.turnOrder.addLast(this.turnOrder.pollFirst());
+      }
+      return task;
+    }
+
+    /**
+     * Gets the number of queued tasks
+     * @return the size
+     */
+    private synchronized int size() {
+      return this.size;
+    }
+  }
+
+  /**
+   * The queued tasks of a key within a lane
+   */
+  private static final class KeyQueue {
+    private final Object key;
+    private final int weight;
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    private int turnsLeft;
+
+    /**
+     * Creates a new {@link KeyQueue}
+     * @param key the key
+     * @param weight the turns in a row the key gets
+     */
+    private KeyQueue(Object key, int weight) {
+      this.key = key;
+      this.weight = weight;
+      this.turnsLeft = weight;
+    }
+  }
+}
@@ -0,0 +1,48 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.scheduling;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A task handed to a {@link RetryScheduler} that wants to hear when the scheduler accepted it but can't run it after
+ * all, such as a delayed task whose worker executor was shut down before it came due. The tasks of a
+ * {@link com.mrhampson.retryexecutor.RetryExecutor} implement it to give up instead of waiting forever
+ * @author Marshall Hampson
+ */
+public interface RejectionAware {
+
+  /**
+   * Called when the task won't run, on the scheduler's thread
+   * @param rejected why the task won't run
+   */
+  void onRejected(RejectedExecutionException rejected);
+
+  /**
+   * Tells a task that it won't run, if it wants to hear about it
+   * @param task the task
+   * @param rejected why the task won't run
+   */
+  static void notifyRejected(Runnable task, RejectedExecutionException rejected) {
+    if (task instanceof RejectionAware) {
+      ((RejectionAware)task).onRejected(rejected);
+    }
+  }
+}
@@ -0,0 +1,106 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.scheduling;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The backend a {@link com.mrhampson.retryexecutor.RetryExecutor} runs first tries and schedules retries on
+ * @author Marshall Hampson
+ */
+public interface RetryScheduler {
+
+  /**
+   * Runs a task as soon as possible
+   * @param task the task
+   * @throws RejectedExecutionException if the task can't be accepted
+   */
+  void execute(Runnable task);
+
+  /**
+   * Runs a task once a delay has passed
+   * @param task the task
+   * @param delay the delay
+   * @param unit the unit of the delay
+   * @return a handle that can cancel the task before it runs
+   * @throws RejectedExecutionException if the task can't be accepted
+   */
+  Cancellable schedule(Runnable task, long delay, TimeUnit unit);
+
+  /**
+   * Runs a task of a task key as soon as possible. By default the key is ignored, schedulers that share their threads
+   * fairly between keys override it
+   * @param task the task
+   * @param key the key of the task, see {@link #usesTaskKeys()}
+   * @throws RejectedExecutionException if the task can't be accepted
+   */
+  default void execute(Runnable task, Object key) {
+    this.execute(task);
+  }
+
+  /**
+   * Runs a task of a task key once a delay has passed. By default the key is ignored
+   * @param task the task
+   * @param delay the delay
+   * @param unit the unit of the delay
+   * @param key the key of the task, see {@link #usesTaskKeys()}
+   * @return a handle that can cancel the task before it runs
+   * @throws RejectedExecutionException if the task can't be accepted
+   */
+  default Cancellable schedule(Runnable task, long delay, TimeUnit unit, Object key) {
+    return this.schedule(task, delay, unit);
+  }
+
+  /**
+   * Runs a task again once a delay has passed, from within the run its previous schedule started. Schedulers may
+   * reuse the previous handle instead of allocating a new one, so a task that keeps failing doesn't allocate per
+   * retry. By default the task is simply scheduled again
+   * @param previous the handle the task's previous schedule returned, null if it has none
+   * @param task the task
+   * @param delay the delay
+   * @param unit the unit of the delay
+   * @param key the key of the task, see {@link #usesTaskKeys()}
+   * @return a handle that can cancel the task before it runs, possibly the previous handle
+   * @throws RejectedExecutionException if the task can't be accepted
+   */
+  default Cancellable reschedule(Cancellable previous, Runnable task, long delay, TimeUnit unit, Object key) {
+    return this.schedule(task, delay, unit, key);
+  }
+
+  /**
+   * Whether the scheduler looks at task keys. If so the executor works out the key of every task with its
+   * {@link com.mrhampson.retryexecutor.RetryExecutor.Builder#taskKeyFunction}, otherwise the keys passed in are
+   * null unless another keyed feature is in use
+   * @return true if the scheduler uses task keys
+   */
+  default boolean usesTaskKeys() {
+    return false;
+  }
+
+  /**
+   * Whether tasks run on threads that are cheap to block, e.g. virtual threads. If so a task waits out its backoff
+   * by parking its own thread and retries in place instead of being scheduled again
+   * @return true if retries should wait on the task's thread
+   */
+  default boolean backsOffInline() {
+    return false;
+  }
+}
@@ -0,0 +1,59 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.scheduling;
+
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link RetryScheduler} that delegates to a {@link ScheduledExecutorService}
+ * @author Marshall Hampson
+ */
+public class ScheduledExecutorServiceScheduler implements RetryScheduler {
+  private final ScheduledExecutorService scheduledExecutorService;
+
+  /**
+   * Creates a new {@link ScheduledExecutorServiceScheduler}
+   * @param scheduledExecutorService the scheduledExecutorService tasks will run on
+   */
+  public ScheduledExecutorServiceScheduler(ScheduledExecutorService scheduledExecutorService) {
+    Objects.requireNonNull(scheduledExecutorService);
+    this.scheduledExecutorService = scheduledExecutorService;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void execute(Runnable task) {
+    this.scheduledExecutorService.execute(task);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Cancellable schedule(Runnable task, long delay, TimeUnit unit) {
+    ScheduledFuture<?> scheduledFuture = this.scheduledExecutorService.schedule(task, delay, unit);
+    return () -> scheduledFuture.cancel(false);
+  }
+}
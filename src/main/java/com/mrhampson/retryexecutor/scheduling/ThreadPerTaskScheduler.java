@@ -0,0 +1,160 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.scheduling;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link RetryScheduler} that starts a new thread for every task. Tasks back off by parking their own thread, so
+ * with virtual threads a task waiting for its next try costs a parked continuation rather than a queued timer entry
+ * @author Marshall Hampson
+ */
+public class ThreadPerTaskScheduler implements RetryScheduler {
+  private static final ThreadFactory VIRTUAL_THREAD_FACTORY = lookUpVirtualThreadFactory();
+
+  private final ThreadFactory threadFactory;
+
+  /**
+   * Creates a new {@link ThreadPerTaskScheduler}
+   * @param threadFactory the factory that makes a thread for every task
+   */
+  public ThreadPerTaskScheduler(ThreadFactory threadFactory) {
+    Objects.requireNonNull(threadFactory);
+    this.threadFactory = threadFactory;
+  }
+
+  /**
+   * Creates a {@link ThreadPerTaskScheduler} that runs every task on a new virtual thread
+   * @return the scheduler
+   * @throws UnsupportedOperationException if the JVM has no virtual threads, i.e. before JDK 21
+   */
+  public static ThreadPerTaskScheduler ofVirtualThreads() {
+    if (VIRTUAL_THREAD_FACTORY == null) {
+      throw new UnsupportedOperationException("Virtual threads require JDK 21 or later");
+    }
+    return new ThreadPerTaskScheduler(VIRTUAL_THREAD_FACTORY);
+  }
+
+  /**
+   * Checks whether the running JVM has virtual threads
+   * @return true if {@link #ofVirtualThreads()} can be used
+   */
+  public static boolean isVirtualThreadsSupported() {
+    return VIRTUAL_THREAD_FACTORY != null;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void execute(Runnable task) {
+    this.start(task);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Cancellable schedule(Runnable task, long delay, TimeUnit unit) {
+    AtomicBoolean cancelled = new AtomicBoolean();
+    long deadlineNanos = System.nanoTime() + unit.toNanos(delay);
+    Thread thread = this.start(() -> {
+      if (parkUntil(deadlineNanos, cancelled) && !cancelled.get()) {
+        task.run();
+      }
+    });
+    return () -> {
+      if (cancelled.compareAndSet(false, true)) {
+        LockSupport.unpark(thread);
+        return true;
+      }
+      return false;
+    };
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean backsOffInline() {
+    return true;
+  }
+
+  /**
+   * Parks the calling thread until a deadline has passed
+   * @param deadlineNanos the deadline, in {@link System#nanoTime()} terms
+   * @param cancelled a flag that ends the wait early when set
+   * @return true if the deadline passed, false if the wait was cancelled or the thread interrupted
+   */
+  public static boolean parkUntil(long deadlineNanos, AtomicBoolean cancelled) {
+    long remainingNanos;
+    while ((remainingNanos = deadlineNanos - System.nanoTime()) > 0) {
+      if (cancelled.get()) {
+        return false;
+      }
+      if (Thread.interrupted()) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+      LockSupport.parkNanos(remainingNanos);
+    }
+    return true;
+  }
+
+  /**
+   * Starts a thread for a task
+   * @param task the task
+   * @return the started thread
+   * @throws RejectedExecutionException if the thread factory made no thread
+   */
+  private Thread start(Runnable task) {
+    Thread thread = this.threadFactory.newThread(task);
+    if (thread == null) {
+      throw new RejectedExecutionException("Thread factory refused the task");
+    }
+    thread.start();
+    return thread;
+  }
+
+  /**
+   * Looks up {@code Thread.ofVirtual().factory()} reflectively, since this library is compiled for Java 8
+   * @return the factory, or null if the JVM has no virtual threads
+   */
+  private static ThreadFactory lookUpVirtualThreadFactory() {
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder$OfVirtual");
+      MethodHandle ofVirtual = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(builderClass));
+      MethodHandle factory = lookup.findVirtual(builderClass, "factory", MethodType.methodType(ThreadFactory.class));
+      return (ThreadFactory)factory.invoke(ofVirtual.invoke());
+    }
+    catch (Throwable e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,155 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.scheduling;
+
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The base of schedulers that choose which ready task runs next. Tasks run on a work-stealing {@link ForkJoinPool}.
+ * Every ready task is queued by the subclass and hands the pool a token, and a token picks the task to run when it
+ * gets a worker rather than when it was queued. Retries wait out their delay in a hashed-wheel timer before they
+ * become ready, a retry that comes due after the scheduler was closed is told so if it is {@link RejectionAware}
+ * @author Marshall Hampson
+ */
+abstract class TokenPoolScheduler implements RetryScheduler, AutoCloseable {
+  private final ForkJoinPool pool;
+  private final HashedWheelScheduler timer = new HashedWheelScheduler(Runnable::run);
+  private volatile boolean closed;
+
+  /**
+   * Creates a new {@link TokenPoolScheduler}
+   * @param parallelism the number of worker threads
+   * @param threadNamePrefix the name of the worker threads, followed by their index
+   */
+  TokenPoolScheduler(int parallelism, String threadNamePrefix) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be at least 1");
+    }
+    this.pool = new ForkJoinPool(parallelism, pool -> {
+      ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+      thread.setName(threadNamePrefix + thread.getPoolIndex());
+      return thread;
+    }, null, true);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void execute(Runnable task) {
+    this.execute(task, null);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void execute(Runnable task, Object key) {
+    Objects.requireNonNull(task);
+    this.enqueue(task, key, false);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Cancellable schedule(Runnable task, long delay, TimeUnit unit) {
+    return this.schedule(task, delay, unit, null);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Cancellable schedule(Runnable task, long delay, TimeUnit unit, Object key) {
+    Objects.requireNonNull(task);
+    Objects.requireNonNull(unit);
+    if (this.closed) {
+      throw new RejectedExecutionException("Scheduler has been closed");
+    }
+    return this.timer.schedule(() -> {
+      try {
+        this.enqueue(task, key, true);
+      }
+      catch (RejectedExecutionException rejected) {
+        // Closed while the retry waited
+        RejectionAware.notifyRejected(task, rejected);
+      }
+    }, delay, unit);
+  }
+
+  /**
+   * Stops the timer and the workers, queued tasks are dropped
+   */
+  @Override
+  public void close() {
+    this.closed = true;
+    this.timer.close();
+    this.pool.shutdownNow();
+  }
+
+  /**
+   * Queues a ready task, called once per task before its token is handed to the pool
+   * @param task the task
+   * @param key the key of the task
+   * @param retry whether the task is a retry that waited in the timer, rather than a first try
+   */
+  abstract void offer(Runnable task, Object key, boolean retry);
+
+  /**
+   * Takes the queued task that should run next
+   * @return the task, null if nothing is queued
+   */
+  abstract Runnable poll();
+
+  /**
+   * Queues a task and hands the pool a token for it. The task is queued first, so there are always at least as many
+   * queued tasks as tokens looking for one
+   * @param task the task
+   * @param key the key of the task
+   * @param retry whether the task is a retry
+   */
+  private void enqueue(Runnable task, Object key, boolean retry) {
+    if (this.closed) {
+      throw new RejectedExecutionException("Scheduler has been closed");
+    }
+    this.offer(task, key, retry);
+    this.pool.execute(this::runNext);
+  }
+
+  /**
+   * Runs the task that should run next, a token's work
+   */
+  private void runNext() {
+    Runnable task;
+    while ((task = this.poll()) == null) {
+      if (this.closed) {
+        return;
+      }
+      // Another token took the task queued for this one, a task queued since then is on its way
+      Thread.yield();
+    }
+    task.run();
+  }
+}
@@ -0,0 +1,61 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.strategies;
+
+import com.mrhampson.retryexecutor.exceptions.MaxTriesExceededException;
+
+/**
+ * A base class {@link RetryPolicy} can optionally derive from to share the max tries check
+ * @author Marshall Hampson
+ */
+public abstract class AbstractPolicy implements RetryPolicy {
+
+  protected final int maxTries;
+
+  /**
+   * Creates a new {@link AbstractPolicy}
+   * @param maxTries the max tries for a task
+   */
+  public AbstractPolicy(int maxTries) {
+    if (maxTries < 1) {
+      throw new IllegalArgumentException("maxTries must be greater than 1");
+    }
+    this.maxTries = maxTries;
+  }
+
+  /**
+   * Checks the attempt number against the max tries
+   * @param attemptNumber the number of tries that have failed so far
+   * @throws MaxTriesExceededException if we've exceeded the number of tries
+   */
+  protected void checkAttemptNumber(int attemptNumber) {
+    if (attemptNumber > this.maxTries) {
+      throw new MaxTriesExceededException();
+    }
+  }
+
+  /**
+   * Gets the max tries
+   * @return the max tries for a task
+   */
+  public int getMaxTries() {
+    return this.maxTries;
+  }
+}
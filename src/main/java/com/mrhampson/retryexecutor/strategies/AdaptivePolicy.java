@@ -0,0 +1,170 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.strategies;
+
+import com.mrhampson.retryexecutor.exceptions.MaxTriesExceededException;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link RetryPolicy} that learns the delay from how the tasks of a key are doing instead of a fixed schedule. Every
+ * failed try multiplies the key's delay, every successful try takes a step off it (AIMD), so retries back off when a
+ * dependency is struggling and speed back up as it recovers. A try that succeeds but runs slower than the latency
+ * target counts as a failure. All tasks of a key share one delay, kept in an {@link AtomicLong} updated without locks.
+ * Retries wait between half and all of the key's delay so tasks of the same key don't line up
+ * @author Marshall Hampson
+ */
+public class AdaptivePolicy extends AbstractPolicy {
+  private static final Object NO_KEY = new Object();
+
+  private final long minDelayMillis;
+  private final long maxDelayMillis;
+  private final double multiplier;
+  private final long decreaseStepMillis;
+  private final long latencyTargetNanos;
+  private final ConcurrentMap<Object, AtomicLong> delays = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a new {@link AdaptivePolicy} that doubles the delay on failure, takes the min delay off it on success and
+   * has no latency target
+   * @param minDelay the shortest delay between tries, the delay of a healthy key
+   * @param maxDelay the longest delay between tries
+   * @param delayUnit the unit of the min and max delay
+   * @param maxTries stop after this many tries
+   */
+  public AdaptivePolicy(long minDelay, long maxDelay, TimeUnit delayUnit, int maxTries) {
+    this(minDelay, maxDelay, delayUnit, 2, minDelay, maxTries, 0, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Creates a new {@link AdaptivePolicy}
+   * @param minDelay the shortest delay between tries, the delay of a healthy key
+   * @param maxDelay the longest delay between tries
+   * @param delayUnit the unit of the min delay, max delay and decrease step
+   * @param multiplier what the delay of a key is multiplied by when one of its tries fails
+   * @param decreaseStep what is taken off the delay of a key when one of its tries succeeds
+   * @param maxTries stop after this many tries
+   * @param latencyTarget a successful try running longer than this counts as a failure, 0 for no target
+   * @param latencyTargetUnit the unit of the latency target
+   */
+  public AdaptivePolicy(long minDelay, long maxDelay, TimeUnit delayUnit, double multiplier, long decreaseStep,
+                        int maxTries, long latencyTarget, TimeUnit latencyTargetUnit) {
+    super(maxTries);
+    Objects.requireNonNull(delayUnit);
+    Objects.requireNonNull(latencyTargetUnit);
+    if (minDelay < 1) {
+      throw new IllegalArgumentException("minDelay must be greater than 0");
+    }
+    if (maxDelay < minDelay) {
+      throw new IllegalArgumentException("maxDelay must not be less than minDelay");
+    }
+    if (!(multiplier > 1)) {
+      throw new IllegalArgumentException("multiplier must be greater than 1");
+    }
+    if (decreaseStep < 1) {
+      throw new IllegalArgumentException("decreaseStep must be greater than 0");
+    }
+    if (latencyTarget < 0) {
+      throw new IllegalArgumentException("latencyTarget must not be negative");
+    }
+    this.minDelayMillis = Math.max(1, delayUnit.toMillis(minDelay));
+    this.maxDelayMillis = Math.max(this.minDelayMillis, delayUnit.toMillis(maxDelay));
+    this.multiplier = multiplier;
+    this.decreaseStepMillis = Math.max(1, delayUnit.toMillis(decreaseStep));
+    this.latencyTargetNanos = latencyTargetUnit.toNanos(latencyTarget);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getMillisDelayBeforeNextTry(int attemptNumber, Throwable lastFailure) throws MaxTriesExceededException {
+    return this.getMillisDelayBeforeNextTry(null, attemptNumber, 0, lastFailure);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getMillisDelayBeforeNextTry(Object key, int attemptNumber, long previousDelayMillis,
+                                          Throwable lastFailure) throws MaxTriesExceededException {
+    this.checkAttemptNumber(attemptNumber);
+    long half = this.getCurrentDelayMillis(key) / 2;
+    return half + ThreadLocalRandom.current().nextLong(half + 1);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isAdaptive() {
+    return true;
+  }
+
+  /**
+   * Widens the delay of the key after a failed or slow try, narrows it after a successful one
+   * @param key the key of the task
+   * @param failure what the try threw, null if it succeeded
+   * @param latencyNanos how long the try ran
+   */
+  @Override
+  public void onTryFinished(Object key, Throwable failure, long latencyNanos) {
+    AtomicLong delay = this.delayFor(key);
+    boolean widen = failure != null || (this.latencyTargetNanos != 0 && latencyNanos > this.latencyTargetNanos);
+    long current;
+    long next;
+    do {
+      current = delay.get();
+      if (widen) {
+        double widened = current * this.multiplier;
+        next = widened >= this.maxDelayMillis ? this.maxDelayMillis : (long)widened;
+      }
+      else {
+        next = Math.max(this.minDelayMillis, current - this.decreaseStepMillis);
+      }
+    } while (next != current && !delay.compareAndSet(current, next));
+  }
+
+  /**
+   * Gets the delay the next retry of a task of the key is based on, before jitter
+   * @param key the key
+   * @return the delay in millis
+   */
+  public long getCurrentDelayMillis(Object key) {
+    AtomicLong delay = this.delays.get(key != null ? key : NO_KEY);
+    return delay != null ? delay.get() : this.minDelayMillis;
+  }
+
+  /**
+   * Gets the delay of a key, creating it at the min delay if needed
+   * @param key the key, null is allowed
+   * @return the delay
+   */
+  private AtomicLong delayFor(Object key) {
+    Object mapKey = key != null ? key : NO_KEY;
+    AtomicLong delay = this.delays.get(mapKey);
+    return delay != null ? delay : this.delays.computeIfAbsent(mapKey, ignored -> new AtomicLong(this.minDelayMillis));
+  }
+}
@@ -22,16 +22,39 @@ package com.mrhampson.retryexecutor.strategies;
 import com.mrhampson.retryexecutor.annotations.RetryWithCustomDelay;
 import com.mrhampson.retryexecutor.annotations.RetryWithExponentialDelay;
 import com.mrhampson.retryexecutor.annotations.RetryWithFixedDelay;
+import com.mrhampson.retryexecutor.annotations.RetryWithJitteredDelay;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * Class serves as a mapping from the annotations to the corresponding {@link com.mrhampson.retryexecutor.strategies.RetryStrategy}
+ * and {@link com.mrhampson.retryexecutor.strategies.RetryPolicy}
  * @author Marshall Hampson
  */
 public class AnnotationToRetryStrategyFactory {
 
+  /**
+   * Marker cached for classes that carry no supported annotation, {@link ClassValue} entries can't be absent
+   */
+  private static final Supplier<RetryPolicy> NO_POLICY = () -> null;
+
+  /**
+   * Per-class cache of resolved policy providers. Entries are tied to the class so they go away when it is unloaded
+   */
+  private static final ClassValue<Supplier<RetryPolicy>> POLICY_PROVIDERS =
+    new ClassValue<Supplier<RetryPolicy>>() {
+      @Override
+      protected Supplier<RetryPolicy> computeValue(Class<?> type) {
+        return resolveFirstPolicyProvider(type.getAnnotations());
+      }
+    };
+
   private AnnotationToRetryStrategyFactory() {
 
   }
@@ -44,10 +67,12 @@ public class AnnotationToRetryStrategyFactory {
   public static RetryStrategy fromAnnotation(Annotation annotation) {
     if (annotation instanceof RetryWithExponentialDelay) {
       return ExponentialStrategy.fromAnnotation((RetryWithExponentialDelay)annotation);
+    } else if (annotation instanceof RetryWithJitteredDelay) {
+      return ExponentialStrategy.fromAnnotation((RetryWithJitteredDelay)annotation);
     } else if (annotation instanceof RetryWithFixedDelay) {
       return ConstantStrategy.fromAnnotation((RetryWithFixedDelay)annotation);
     } else if (annotation instanceof RetryWithCustomDelay) {
-      return instantiateFromCustomStrategy((RetryWithCustomDelay)annotation);
+      return instantiate(findCustomStrategyConstructor((RetryWithCustomDelay)annotation));
     }
     else {
       throw new IllegalArgumentException("Unsupported annotation");
@@ -55,23 +80,211 @@ public class AnnotationToRetryStrategyFactory {
   }
 
   /**
-   * Handles instantiating a {@link RetryStrategy} provided by an {@link RetryWithCustomDelay}
+   * Gets the policy provider for the first supported annotation on a class. The annotations are only resolved the
+   * first time a class is seen, every later call is a cache lookup. Providers for the built-in annotations and custom
+   * policies always hand back the same shared {@link RetryPolicy}, custom strategies get a fresh instance per call
+   * @param type the annotated class
+   * @return the provider of the {@link RetryPolicy} to use for a task, or null if the class isn't annotated
+   */
+  public static Supplier<RetryPolicy> policyProviderForClass(Class<?> type) {
+    Objects.requireNonNull(type);
+    Supplier<RetryPolicy> provider = POLICY_PROVIDERS.get(type);
+    return provider == NO_POLICY ? null : provider;
+  }
+
+  /**
+   * Gets the provider for the first annotation we can build a {@link RetryPolicy} from
+   * @param annotations the annotations
+   * @return the provider, or {@link #NO_POLICY} if none of the annotations are supported
+   */
+  private static Supplier<RetryPolicy> resolveFirstPolicyProvider(Annotation[] annotations) {
+    for (Annotation annotation : annotations) {
+      try {
+        return policyProviderFromAnnotation(annotation);
+      }
+      catch (IllegalArgumentException ignored) {
+        // Not one of ours or not valid, keep looking
+      }
+    }
+    return NO_POLICY;
+  }
+
+  /**
+   * Creates a provider for the {@link RetryPolicy} described by an annotation
+   * @param annotation the annotation
+   * @return the provider
+   * @throws IllegalArgumentException if the annotation isn't supported or is invalid
+   */
+  private static Supplier<RetryPolicy> policyProviderFromAnnotation(Annotation annotation) {
+    RetryPolicy sharedPolicy;
+    Class<? extends Throwable>[] retryOn;
+    Class<? extends Throwable>[] abortOn;
+    long attemptTimeout;
+    long deadline;
+    TimeUnit timeoutUnit;
+    if (annotation instanceof RetryWithExponentialDelay) {
+      RetryWithExponentialDelay exponentialAnnotation = (RetryWithExponentialDelay)annotation;
+      sharedPolicy = honorRetryAfter(ExponentialPolicy.fromAnnotation(exponentialAnnotation),
+        exponentialAnnotation.honorRetryAfter());
+      retryOn = exponentialAnnotation.retryOn();
+      abortOn = exponentialAnnotation.abortOn();
+      attemptTimeout = exponentialAnnotation.attemptTimeout();
+      deadline = exponentialAnnotation.deadline();
+      timeoutUnit = exponentialAnnotation.timeoutUnit();
+    } else if (annotation instanceof RetryWithJitteredDelay) {
+      RetryWithJitteredDelay jitteredAnnotation = (RetryWithJitteredDelay)annotation;
+      sharedPolicy = honorRetryAfter(ExponentialPolicy.fromAnnotation(jitteredAnnotation),
+        jitteredAnnotation.honorRetryAfter());
+      retryOn = jitteredAnnotation.retryOn();
+      abortOn = jitteredAnnotation.abortOn();
+      attemptTimeout = jitteredAnnotation.attemptTimeout();
+      deadline = jitteredAnnotation.deadline();
+      timeoutUnit = jitteredAnnotation.timeoutUnit();
+    } else if (annotation instanceof RetryWithFixedDelay) {
+      RetryWithFixedDelay fixedAnnotation = (RetryWithFixedDelay)annotation;
+      sharedPolicy = honorRetryAfter(ConstantPolicy.fromAnnotation(fixedAnnotation), fixedAnnotation.honorRetryAfter());
+      retryOn = fixedAnnotation.retryOn();
+      abortOn = fixedAnnotation.abortOn();
+      attemptTimeout = fixedAnnotation.attemptTimeout();
+      deadline = fixedAnnotation.deadline();
+      timeoutUnit = fixedAnnotation.timeoutUnit();
+    } else if (annotation instanceof RetryWithCustomDelay) {
+      RetryWithCustomDelay customAnnotation = (RetryWithCustomDelay)annotation;
+      ExceptionClassifier classifier = classifierFor(customAnnotation.retryOn(), customAnnotation.abortOn());
+      long customAttemptTimeout = customAnnotation.attemptTimeout();
+      long customDeadline = customAnnotation.deadline();
+      TimeUnit customTimeoutUnit = customAnnotation.timeoutUnit();
+      if (customAnnotation.retryPolicy() == RetryPolicy.class) {
+        MethodHandle constructor = findCustomStrategyConstructor(customAnnotation);
+        if (classifier == null && customAttemptTimeout == 0 && customDeadline == 0) {
+          return () -> new RetryStrategyAdapter(instantiate(constructor));
+        }
+        return () -> withTimeouts(classify(new RetryStrategyAdapter(instantiate(constructor)), classifier),
+          customAttemptTimeout, customDeadline, customTimeoutUnit);
+      }
+      sharedPolicy = withTimeouts(classify(instantiate(findCustomPolicyConstructor(customAnnotation)), classifier),
+        customAttemptTimeout, customDeadline, customTimeoutUnit);
+      return () -> sharedPolicy;
+    }
+    else {
+      throw new IllegalArgumentException("Unsupported annotation");
+    }
+    RetryPolicy classifiedPolicy =
+      withTimeouts(classify(sharedPolicy, classifierFor(retryOn, abortOn)), attemptTimeout, deadline, timeoutUnit);
+    return () -> classifiedPolicy;
+  }
+
+  /**
+   * Bounds a policy's tries and deadline if the annotation asks for it
+   * @param policy the policy
+   * @param attemptTimeout the annotation's attempt timeout, 0 for none
+   * @param deadline the annotation's deadline, 0 for none
+   * @param timeoutUnit the unit of both
+   * @return the policy to use
+   */
+  private static RetryPolicy withTimeouts(RetryPolicy policy, long attemptTimeout, long deadline,
+                                          TimeUnit timeoutUnit) {
+    return attemptTimeout == 0 && deadline == 0 ? policy : new TimeoutPolicy(policy, attemptTimeout, deadline,
+      timeoutUnit);
+  }
+
+  /**
+   * Makes a policy follow retry-after hints if the annotation asks for it
+   * @param policy the policy
+   * @param honorRetryAfter the annotation's setting
+   * @return the policy to use
+   */
+  private static RetryPolicy honorRetryAfter(RetryPolicy policy, boolean honorRetryAfter) {
+    return honorRetryAfter ? new RetryAfterAwarePolicy(policy) : policy;
+  }
+
+  /**
+   * Creates the classifier for the exception lists of an annotation
+   * @param retryOn the retryable exception classes
+   * @param abortOn the non-retryable exception classes
+   * @return the classifier, or null if both lists are empty and every exception is retried
+   */
+  private static ExceptionClassifier classifierFor(Class<? extends Throwable>[] retryOn,
+                                                   Class<? extends Throwable>[] abortOn) {
+    if (retryOn.length == 0 && abortOn.length == 0) {
+      return null;
+    }
+    return ExceptionClassifier.of(retryOn, abortOn);
+  }
+
+  /**
+   * Restricts a policy to the failures a classifier accepts
+   * @param policy the policy
+   * @param classifier the classifier, or null to retry every exception
+   * @return the restricted policy
+   */
+  private static RetryPolicy classify(RetryPolicy policy, ExceptionClassifier classifier) {
+    return classifier == null ? policy : new ClassifyingPolicy(policy, classifier);
+  }
+
+  /**
+   * Finds the no-arg constructor of the {@link RetryStrategy} provided by an {@link RetryWithCustomDelay}. The
+   * constructor is looked up once as a {@link MethodHandle} instead of reflecting on every instantiation
    * @param customAnnotation the annotation
-   * @return a {@link RetryStrategy} if it could be instantiated
+   * @return the constructor handle, typed to return a {@link RetryStrategy}
    */
-  private static RetryStrategy instantiateFromCustomStrategy(RetryWithCustomDelay customAnnotation) {
+  private static MethodHandle findCustomStrategyConstructor(RetryWithCustomDelay customAnnotation) {
     Objects.requireNonNull(customAnnotation);
     Class<? extends RetryStrategy> retryStrategyClass = customAnnotation.retryStrategy();
-    if (!RetryStrategy.class.isAssignableFrom(retryStrategyClass)) {
+    if (retryStrategyClass == RetryStrategy.class || !RetryStrategy.class.isAssignableFrom(retryStrategyClass)) {
       throw new IllegalArgumentException("RetryWithCustomDelay must provide a class that implements RetryStrategy");
     }
+    return findNoArgConstructor(retryStrategyClass, RetryStrategy.class);
+  }
+
+  /**
+   * Finds the no-arg constructor of the {@link RetryPolicy} provided by an {@link RetryWithCustomDelay}
+   * @param customAnnotation the annotation
+   * @return the constructor handle, typed to return a {@link RetryPolicy}
+   */
+  private static MethodHandle findCustomPolicyConstructor(RetryWithCustomDelay customAnnotation) {
+    Class<? extends RetryPolicy> retryPolicyClass = customAnnotation.retryPolicy();
+    if (!RetryPolicy.class.isAssignableFrom(retryPolicyClass)) {
+      throw new IllegalArgumentException("RetryWithCustomDelay must provide a class that implements RetryPolicy");
+    }
+    if (customAnnotation.retryStrategy() != RetryStrategy.class) {
+      throw new IllegalArgumentException("RetryWithCustomDelay must provide either a strategy or a policy, not both");
+    }
+    return findNoArgConstructor(retryPolicyClass, RetryPolicy.class);
+  }
+
+  /**
+   * Looks up an accessible no-arg constructor
+   * @param type the class to construct
+   * @param returnType the type the handle should return
+   * @return the constructor handle
+   */
+  private static MethodHandle findNoArgConstructor(Class<?> type, Class<?> returnType) {
     try {
-      return retryStrategyClass.getDeclaredConstructor().newInstance();
+      return MethodHandles.publicLookup()
+        .findConstructor(type, MethodType.methodType(void.class))
+        .asType(MethodType.methodType(returnType));
     }
-    catch (NoSuchMethodException e) {
+    catch (NoSuchMethodException | IllegalAccessException e) {
       throw new IllegalArgumentException("Provided class must have an accessible no-arg constructor");
     }
-    catch (Exception e) {
+  }
+
+  /**
+   * Invokes a precompiled no-arg constructor
+   * @param constructor the constructor handle
+   * @param <T> the type the handle returns
+   * @return the new instance
+   */
+  @SuppressWarnings("unchecked")
+  private static <T> T instantiate(MethodHandle constructor) {
+    try {
+      return (T)constructor.invoke();
+    }
+    catch (RuntimeException | Error e) {
+      throw e;
+    }
+    catch (Throwable e) {
       throw new IllegalArgumentException("An error occurred instantiating the strategy", e);
     }
   }
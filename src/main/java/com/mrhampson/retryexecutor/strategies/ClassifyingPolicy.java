@@ -0,0 +1,112 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.strategies;
+
+import com.mrhampson.retryexecutor.exceptions.MaxTriesExceededException;
+
+import java.util.Objects;
+
+/**
+ * A {@link RetryPolicy} that keeps the delays of another policy but only retries the failures an
+ * {@link ExceptionClassifier} accepts
+ * @author Marshall Hampson
+ */
+public class ClassifyingPolicy implements RetryPolicy {
+  private final RetryPolicy delegate;
+  private final ExceptionClassifier classifier;
+
+  /**
+   * Creates a new {@link ClassifyingPolicy}
+   * @param delegate the policy that decides the delays
+   * @param classifier the classifier that decides which failures are retried
+   */
+  public ClassifyingPolicy(RetryPolicy delegate, ExceptionClassifier classifier) {
+    Objects.requireNonNull(delegate);
+    Objects.requireNonNull(classifier);
+    this.delegate = delegate;
+    this.classifier = classifier;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getMillisDelayBeforeNextTry(int attemptNumber, Throwable lastFailure) throws MaxTriesExceededException {
+    return this.delegate.getMillisDelayBeforeNextTry(attemptNumber, lastFailure);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getMillisDelayBeforeNextTry(int attemptNumber, long previousDelayMillis, Throwable lastFailure)
+    throws MaxTriesExceededException {
+    return this.delegate.getMillisDelayBeforeNextTry(attemptNumber, previousDelayMillis, lastFailure);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getMillisDelayBeforeNextTry(Object key, int attemptNumber, long previousDelayMillis,
+                                          Throwable lastFailure) throws MaxTriesExceededException {
+    return this.delegate.getMillisDelayBeforeNextTry(key, attemptNumber, previousDelayMillis, lastFailure);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isAdaptive() {
+    return this.delegate.isAdaptive();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void onTryFinished(Object key, Throwable failure, long latencyNanos) {
+    this.delegate.onTryFinished(key, failure, latencyNanos);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isRetryable(Throwable failure) {
+    return this.delegate.isRetryable(failure) && this.classifier.isRetryable(failure);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getAttemptTimeoutMillis() {
+    return this.delegate.getAttemptTimeoutMillis();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getDeadlineMillis() {
+    return this.delegate.getDeadlineMillis();
+  }
+}
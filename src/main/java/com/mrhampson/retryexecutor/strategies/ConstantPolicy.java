@@ -0,0 +1,65 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.strategies;
+
+import com.mrhampson.retryexecutor.annotations.RetryWithFixedDelay;
+import com.mrhampson.retryexecutor.exceptions.MaxTriesExceededException;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link RetryPolicy} which will rerun tasks with a constant delay
+ * @author Marshall Hampson
+ */
+public class ConstantPolicy extends AbstractPolicy {
+  private final long constantDelayMillis;
+
+  /**
+   * Creates a new {@link ConstantPolicy}
+   * @param delay the delay
+   * @param delayUnit the delay unit
+   * @param maxTries stop after this many tries
+   */
+  public ConstantPolicy(long delay, TimeUnit delayUnit, int maxTries) {
+    super(maxTries);
+    Objects.requireNonNull(delayUnit);
+    this.constantDelayMillis = delayUnit.toMillis(delay);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getMillisDelayBeforeNextTry(int attemptNumber, Throwable lastFailure) throws MaxTriesExceededException {
+    this.checkAttemptNumber(attemptNumber);
+    return this.constantDelayMillis;
+  }
+
+  /**
+   * Creates a new {@link ConstantPolicy} from the annotation
+   * @param annotation the annotation
+   * @return the {@link ConstantPolicy}
+   */
+  public static ConstantPolicy fromAnnotation(RetryWithFixedDelay annotation) {
+    Objects.requireNonNull(annotation);
+    return new ConstantPolicy(annotation.delay(), annotation.delayUnit(), annotation.maxTries());
+  }
+}
@@ -30,8 +30,7 @@ import java.util.concurrent.TimeUnit;
  * @author Marshall Hampson
  */
 public class ConstantStrategy extends AbstractStrategy {
-  private final long constantDelayMillis;
-  private final int maxTries;
+  private final ConstantPolicy policy;
 
   /**
    * Creates a new {@link ConstantStrategy}
@@ -40,12 +39,7 @@ public class ConstantStrategy extends AbstractStrategy {
    */
   public ConstantStrategy(long delay, TimeUnit delayUnit, int maxTries) {
     super(maxTries);
-    Objects.requireNonNull(delayUnit);
-    if (maxTries < 1) {
-      throw new IllegalArgumentException("maxTries must be greater than 1");
-    }
-    this.constantDelayMillis = delayUnit.toMillis(delay);
-    this.maxTries = maxTries;
+    this.policy = new ConstantPolicy(delay, delayUnit, maxTries);
   }
 
   /**
@@ -53,8 +47,7 @@ public class ConstantStrategy extends AbstractStrategy {
    */
   @Override
   public long getMillisDelayBeforeNextTry() throws MaxTriesExceededException {
-    this.updateTryCounter();
-    return this.constantDelayMillis;
+    return this.policy.getMillisDelayBeforeNextTry(this.updateTryCounter(), null);
   }
 
   /**
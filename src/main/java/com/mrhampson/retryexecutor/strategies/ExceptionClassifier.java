@@ -0,0 +1,117 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.strategies;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Decides which failures are worth retrying. A classifier built from exception class lists resolves each exception
+ * class once and caches the answer, so classifying a failure is a lookup rather than a walk up its class hierarchy
+ * @author Marshall Hampson
+ */
+public final class ExceptionClassifier {
+  private final Predicate<? super Throwable> predicate;
+  private final ClassValue<Boolean> retryableByClass;
+
+  /**
+   * Creates a new {@link ExceptionClassifier}
+   * @param predicate the predicate, or null to use the cache
+   * @param retryableByClass the cached class lookup, or null to use the predicate
+   */
+  private ExceptionClassifier(Predicate<? super Throwable> predicate, ClassValue<Boolean> retryableByClass) {
+    this.predicate = predicate;
+    this.retryableByClass = retryableByClass;
+  }
+
+  /**
+   * Creates a classifier from exception class lists. A failure is matched against its own class first and then its
+   * superclasses, the first class found in either list decides. Failures matching neither list are retryable only if
+   * no retryable classes were given
+   * @param retryOn the retryable exception classes
+   * @param abortOn the non-retryable exception classes
+   * @return the classifier
+   * @throws IllegalArgumentException if a class is in both lists
+   */
+  public static ExceptionClassifier of(Collection<Class<? extends Throwable>> retryOn,
+                                       Collection<Class<? extends Throwable>> abortOn) {
+    Objects.requireNonNull(retryOn);
+    Objects.requireNonNull(abortOn);
+    Set<Class<?>> retryable = new HashSet<>(retryOn);
+    Set<Class<?>> notRetryable = new HashSet<>(abortOn);
+    for (Class<?> type : retryable) {
+      if (notRetryable.contains(type)) {
+        throw new IllegalArgumentException(type.getName() + " can't be both retried and aborted on");
+      }
+    }
+    boolean retryUnmatched = retryable.isEmpty();
+    return new ExceptionClassifier(null, new ClassValue<Boolean>() {
+      @Override
+      protected Boolean computeValue(Class<?> type) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+          if (retryable.contains(current)) {
+            return Boolean.TRUE;
+          }
+          if (notRetryable.contains(current)) {
+            return Boolean.FALSE;
+          }
+        }
+        return retryUnmatched;
+      }
+    });
+  }
+
+  /**
+   * Creates a classifier from exception class arrays, as found on the retry annotations
+   * @param retryOn the retryable exception classes
+   * @param abortOn the non-retryable exception classes
+   * @return the classifier
+   * @see #of(Collection, Collection)
+   */
+  public static ExceptionClassifier of(Class<? extends Throwable>[] retryOn, Class<? extends Throwable>[] abortOn) {
+    return of(Arrays.asList(retryOn), Arrays.asList(abortOn));
+  }
+
+  /**
+   * Creates a classifier that asks a predicate about every failure
+   * @param retryable the predicate, true for failures that should be retried
+   * @return the classifier
+   */
+  public static ExceptionClassifier fromPredicate(Predicate<? super Throwable> retryable) {
+    Objects.requireNonNull(retryable);
+    return new ExceptionClassifier(retryable, null);
+  }
+
+  /**
+   * Checks whether a failure is worth retrying
+   * @param failure the failure
+   * @return true if the failure should be retried
+   */
+  public boolean isRetryable(Throwable failure) {
+    if (this.predicate != null) {
+      return this.predicate.test(failure);
+    }
+    return this.retryableByClass.get(failure.getClass());
+  }
+}
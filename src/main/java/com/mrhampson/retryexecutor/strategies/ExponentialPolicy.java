@@ -0,0 +1,150 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.strategies;
+
+import com.mrhampson.retryexecutor.annotations.RetryWithExponentialDelay;
+import com.mrhampson.retryexecutor.annotations.RetryWithJitteredDelay;
+import com.mrhampson.retryexecutor.exceptions.MaxTriesExceededException;
+
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link RetryPolicy} that delays the task longer each time it fails. The n-th retry waits
+ * {@code initialDelay * multiplier^(n - 1)}, capped at the max delay and optionally randomized by a {@link JitterMode}.
+ * Random numbers come from {@link ThreadLocalRandom} so tasks retrying on different threads don't contend
+ * @author Marshall Hampson
+ */
+public class ExponentialPolicy extends AbstractPolicy {
+
+  private final long initialDelayMillis;
+  private final int multiplier;
+  private final long maxDelayMillis;
+  private final JitterMode jitterMode;
+
+  /**
+   * Creates new {@link ExponentialPolicy} without a cap or jitter
+   * @param initialDelay the delay before the first retry
+   * @param initialDelayUnit the unit of the initial delay
+   * @param multiplier the multiplier that multiplies the delay time between each task
+   * @param maxTries stop after this many tries
+   */
+  public ExponentialPolicy(long initialDelay, TimeUnit initialDelayUnit, int multiplier, int maxTries) {
+    this(initialDelay, Long.MAX_VALUE, initialDelayUnit, multiplier, maxTries, JitterMode.NONE);
+  }
+
+  /**
+   * Creates new {@link ExponentialPolicy}
+   * @param initialDelay the delay before the first retry
+   * @param maxDelay the longest delay between tries
+   * @param delayUnit the unit of the initial and max delay
+   * @param multiplier the multiplier that multiplies the delay time between each task
+   * @param maxTries stop after this many tries
+   * @param jitterMode how the delays are randomized
+   */
+  public ExponentialPolicy(long initialDelay, long maxDelay, TimeUnit delayUnit, int multiplier, int maxTries,
+                           JitterMode jitterMode) {
+    super(maxTries);
+    Objects.requireNonNull(delayUnit);
+    Objects.requireNonNull(jitterMode);
+    if (multiplier < 1) {
+      throw new IllegalArgumentException("multiplier must be 1 or greater");
+    }
+    if (maxDelay < initialDelay) {
+      throw new IllegalArgumentException("maxDelay must not be less than initialDelay");
+    }
+    this.initialDelayMillis = delayUnit.toMillis(initialDelay);
+    this.maxDelayMillis = delayUnit.toMillis(maxDelay);
+    this.multiplier = multiplier;
+    this.jitterMode = jitterMode;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getMillisDelayBeforeNextTry(int attemptNumber, Throwable lastFailure) throws MaxTriesExceededException {
+    return this.getMillisDelayBeforeNextTry(attemptNumber, this.initialDelayMillis, lastFailure);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getMillisDelayBeforeNextTry(int attemptNumber, long previousDelayMillis, Throwable lastFailure)
+    throws MaxTriesExceededException {
+    this.checkAttemptNumber(attemptNumber);
+    switch (this.jitterMode) {
+      case FULL:
+        return randomUpTo(this.exponentialDelayMillis(attemptNumber));
+      case EQUAL:
+        long half = this.exponentialDelayMillis(attemptNumber) / 2;
+        return half + randomUpTo(half);
+      case DECORRELATED:
+        long upper = Math.max(previousDelayMillis, this.initialDelayMillis);
+        upper = upper > this.maxDelayMillis / 3 ? this.maxDelayMillis : upper * 3;
+        return this.initialDelayMillis + randomUpTo(upper - this.initialDelayMillis);
+      default:
+        return this.exponentialDelayMillis(attemptNumber);
+    }
+  }
+
+  /**
+   * Picks a random delay from zero up to a bound
+   * @param bound the largest delay, inclusive unless it is {@link Long#MAX_VALUE}
+   * @return the delay in millis
+   */
+  private static long randomUpTo(long bound) {
+    return ThreadLocalRandom.current().nextLong(bound == Long.MAX_VALUE ? bound : bound + 1);
+  }
+
+  /**
+   * Computes the capped delay before jitter
+   * @param attemptNumber the number of tries that have failed so far
+   * @return the delay in millis
+   */
+  private long exponentialDelayMillis(int attemptNumber) {
+    double delay = this.initialDelayMillis * Math.pow(this.multiplier, attemptNumber - 1);
+    return delay >= this.maxDelayMillis ? this.maxDelayMillis : (long)delay;
+  }
+
+  /**
+   * Creates a new {@link ExponentialPolicy} from an annotation
+   * @param annotation the annotation
+   * @return the policy from the annotation
+   */
+  public static ExponentialPolicy fromAnnotation(RetryWithExponentialDelay annotation) {
+    Objects.requireNonNull(annotation);
+    return new ExponentialPolicy(annotation.initialDelay(), annotation.maxDelay(), annotation.initialDelayUnit(),
+            annotation.multiplier(), annotation.maxTries(), JitterMode.NONE);
+  }
+
+  /**
+   * Creates a new {@link ExponentialPolicy} from a jitter annotation
+   * @param annotation the annotation
+   * @return the policy from the annotation
+   */
+  public static ExponentialPolicy fromAnnotation(RetryWithJitteredDelay annotation) {
+    Objects.requireNonNull(annotation);
+    return new ExponentialPolicy(annotation.baseDelay(), annotation.maxDelay(), annotation.delayUnit(),
+            annotation.multiplier(), annotation.maxTries(), annotation.jitter());
+  }
+}
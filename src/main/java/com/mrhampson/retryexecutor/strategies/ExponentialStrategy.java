@@ -20,6 +20,7 @@
 package com.mrhampson.retryexecutor.strategies;
 
 import com.mrhampson.retryexecutor.annotations.RetryWithExponentialDelay;
+import com.mrhampson.retryexecutor.annotations.RetryWithJitteredDelay;
 import com.mrhampson.retryexecutor.exceptions.MaxTriesExceededException;
 
 import java.util.Objects;
@@ -31,9 +32,8 @@ import java.util.concurrent.TimeUnit;
  */
 public class ExponentialStrategy extends AbstractStrategy {
 
-  private final long initialDelayMillis;
-  private final int multiplier;
-  private final int maxTries;
+  private final ExponentialPolicy policy;
+  private long previousDelayMillis;
 
   /**
    * Creates new {@link ExponentialStrategy}
@@ -41,18 +41,16 @@ public class ExponentialStrategy extends AbstractStrategy {
    * @param maxTries stop after this many tries
    */
   public ExponentialStrategy(long initialDelay, TimeUnit initialDelayUnit, int multiplier, int maxTries) {
-    super(maxTries);
-    Objects.requireNonNull(initialDelay);
-    Objects.requireNonNull(initialDelayUnit);
-    if (multiplier < 1) {
-      throw new IllegalArgumentException("multiplier must be 1 or greater");
-    }
-    if (maxTries < 1) {
-      throw new IllegalArgumentException("maxTries must be 1 or greater");
-    }
-    this.initialDelayMillis = initialDelayUnit.toMillis(initialDelay);
-    this.multiplier = multiplier;
-    this.maxTries = maxTries;
+    this(new ExponentialPolicy(initialDelay, initialDelayUnit, multiplier, maxTries));
+  }
+
+  /**
+   * Creates new {@link ExponentialStrategy} that counts tries for a task on top of a shared policy
+   * @param policy the policy that computes the delays
+   */
+  public ExponentialStrategy(ExponentialPolicy policy) {
+    super(Objects.requireNonNull(policy).getMaxTries());
+    this.policy = policy;
   }
 
   /**
@@ -60,8 +58,9 @@ public class ExponentialStrategy extends AbstractStrategy {
    */
   @Override
   public long getMillisDelayBeforeNextTry() throws MaxTriesExceededException {
-    int nextTry = this.updateTryCounter();
-    return nextTry * this.multiplier * this.initialDelayMillis;
+    this.previousDelayMillis =
+      this.policy.getMillisDelayBeforeNextTry(this.updateTryCounter(), this.previousDelayMillis, null);
+    return this.previousDelayMillis;
   }
 
   /**
@@ -71,7 +70,16 @@ public class ExponentialStrategy extends AbstractStrategy {
    */
   public static ExponentialStrategy fromAnnotation(RetryWithExponentialDelay annotation) {
     Objects.requireNonNull(annotation);
-    return new ExponentialStrategy(annotation.initialDelay(), annotation.initialDelayUnit(), annotation.multiplier(),
-            annotation.maxTries());
+    return new ExponentialStrategy(ExponentialPolicy.fromAnnotation(annotation));
+  }
+
+  /**
+   * Creates a new {@link ExponentialStrategy} from a jitter annotation
+   * @param annotation the annotation
+   * @return the strategy from the annotation
+   */
+  public static ExponentialStrategy fromAnnotation(RetryWithJitteredDelay annotation) {
+    Objects.requireNonNull(annotation);
+    return new ExponentialStrategy(ExponentialPolicy.fromAnnotation(annotation));
   }
 }
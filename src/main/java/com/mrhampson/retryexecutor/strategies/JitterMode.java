@@ -0,0 +1,44 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.strategies;
+
+/**
+ * How an {@link ExponentialPolicy} randomizes its delays so tasks that failed together don't all retry together
+ * @author Marshall Hampson
+ */
+public enum JitterMode {
+  /**
+   * Use the exponential delay as is
+   */
+  NONE,
+  /**
+   * Pick a delay between zero and the exponential delay
+   */
+  FULL,
+  /**
+   * Keep half of the exponential delay and pick the other half between zero and that
+   */
+  EQUAL,
+  /**
+   * Pick a delay between the base delay and three times the previous delay, so each delay depends on the last one
+   * instead of on the attempt number
+   */
+  DECORRELATED
+}
@@ -0,0 +1,161 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.strategies;
+
+import com.mrhampson.retryexecutor.exceptions.MaxTriesExceededException;
+import com.mrhampson.retryexecutor.exceptions.RetryAfterHint;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link RetryPolicy} that waits as long as a failure's {@link RetryAfterHint} says, and falls back to another
+ * policy's backoff for failures without one. The fallback still counts the tries, so hinted retries use up max tries
+ * like any other
+ * @author Marshall Hampson
+ */
+public class RetryAfterAwarePolicy implements RetryPolicy {
+  /**
+   * How far down the cause chain to look for a hint, it's usually on the failure itself or one wrapper down
+   */
+  private static final int MAX_CAUSE_DEPTH = 4;
+
+  private final RetryPolicy fallback;
+  private final long maxHintMillis;
+
+  /**
+   * Creates a new {@link RetryAfterAwarePolicy} that follows hints of any length
+   * @param fallback the policy used for failures without a hint
+   */
+  public RetryAfterAwarePolicy(RetryPolicy fallback) {
+    this(fallback, Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Creates a new {@link RetryAfterAwarePolicy}
+   * @param fallback the policy used for failures without a hint
+   * @param maxHint hints longer than this are cut down to it
+   * @param maxHintUnit the unit of the max hint
+   */
+  public RetryAfterAwarePolicy(RetryPolicy fallback, long maxHint, TimeUnit maxHintUnit) {
+    Objects.requireNonNull(fallback);
+    Objects.requireNonNull(maxHintUnit);
+    if (maxHint < 0) {
+      throw new IllegalArgumentException("maxHint must not be negative");
+    }
+    this.fallback = fallback;
+    this.maxHintMillis = maxHintUnit.toMillis(maxHint);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getMillisDelayBeforeNextTry(int attemptNumber, Throwable lastFailure) throws MaxTriesExceededException {
+    return this.hintedDelay(this.fallback.getMillisDelayBeforeNextTry(attemptNumber, lastFailure), lastFailure);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getMillisDelayBeforeNextTry(int attemptNumber, long previousDelayMillis, Throwable lastFailure)
+    throws MaxTriesExceededException {
+    return this.hintedDelay(
+      this.fallback.getMillisDelayBeforeNextTry(attemptNumber, previousDelayMillis, lastFailure), lastFailure);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getMillisDelayBeforeNextTry(Object key, int attemptNumber, long previousDelayMillis,
+                                          Throwable lastFailure) throws MaxTriesExceededException {
+    return this.hintedDelay(
+      this.fallback.getMillisDelayBeforeNextTry(key, attemptNumber, previousDelayMillis, lastFailure), lastFailure);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isAdaptive() {
+    return this.fallback.isAdaptive();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void onTryFinished(Object key, Throwable failure, long latencyNanos) {
+    this.fallback.onTryFinished(key, failure, latencyNanos);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isRetryable(Throwable failure) {
+    return this.fallback.isRetryable(failure);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getAttemptTimeoutMillis() {
+    return this.fallback.getAttemptTimeoutMillis();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getDeadlineMillis() {
+    return this.fallback.getDeadlineMillis();
+  }
+
+  /**
+   * Picks the hinted delay over the fallback's
+   * @param fallbackDelayMillis the fallback's delay
+   * @param failure the failure that may carry a hint
+   * @return the delay to use
+   */
+  private long hintedDelay(long fallbackDelayMillis, Throwable failure) {
+    long hintMillis = findHintMillis(failure);
+    return hintMillis < 0 ? fallbackDelayMillis : Math.min(hintMillis, this.maxHintMillis);
+  }
+
+  /**
+   * Looks for a {@link RetryAfterHint} on a failure and its causes
+   * @param failure the failure
+   * @return the hinted delay in millis, or a negative value if there is none
+   */
+  private static long findHintMillis(Throwable failure) {
+    Throwable current = failure;
+    for (int depth = 0; current != null && depth < MAX_CAUSE_DEPTH; depth++) {
+      if (current instanceof RetryAfterHint) {
+        return ((RetryAfterHint)current).getRetryAfterMillis();
+      }
+      current = current.getCause();
+    }
+    return -1;
+  }
+}
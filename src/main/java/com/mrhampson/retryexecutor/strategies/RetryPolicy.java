@@ -0,0 +1,149 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.strategies;
+
+import com.mrhampson.retryexecutor.exceptions.MaxTriesExceededException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * A stateless retry policy. Unlike a {@link RetryStrategy} a policy doesn't count tries itself, the attempt number is
+ * passed in by the caller, so one instance can be shared by every task and must be thread-safe
+ * @author Marshall Hampson
+ */
+public interface RetryPolicy {
+
+  /**
+   * Determines the delay until the task should run again after a failure
+   * @param attemptNumber the number of tries that have failed so far, starting at 1
+   * @param lastFailure the exception thrown by the last try
+   * @return the delay in millis until the task should run again
+   * @throws MaxTriesExceededException if the task should never run again
+   */
+  long getMillisDelayBeforeNextTry(int attemptNumber, Throwable lastFailure) throws MaxTriesExceededException;
+
+  /**
+   * Determines the delay until the task should run again after a failure, for policies whose next delay depends on
+   * the last one. By default the previous delay is ignored
+   * @param attemptNumber the number of tries that have failed so far, starting at 1
+   * @param previousDelayMillis the delay before the try that just failed, 0 for the first try
+   * @param lastFailure the exception thrown by the last try
+   * @return the delay in millis until the task should run again
+   * @throws MaxTriesExceededException if the task should never run again
+   */
+  default long getMillisDelayBeforeNextTry(int attemptNumber, long previousDelayMillis, Throwable lastFailure)
+    throws MaxTriesExceededException {
+    return this.getMillisDelayBeforeNextTry(attemptNumber, lastFailure);
+  }
+
+  /**
+   * Determines the delay until a task should run again after a failure, for policies that keep state per task key.
+   * By default the key is ignored
+   * @param key the key of the task, see {@link com.mrhampson.retryexecutor.RetryExecutor.Builder#taskKeyFunction}.
+   *            Only worked out by the executor for a policy that {@link #isAdaptive()}, null otherwise
+   * @param attemptNumber the number of tries that have failed so far, starting at 1
+   * @param previousDelayMillis the delay before the try that just failed, 0 for the first try
+   * @param lastFailure the exception thrown by the last try
+   * @return the delay in millis until the task should run again
+   * @throws MaxTriesExceededException if the task should never run again
+   */
+  default long getMillisDelayBeforeNextTry(Object key, int attemptNumber, long previousDelayMillis,
+                                           Throwable lastFailure) throws MaxTriesExceededException {
+    return this.getMillisDelayBeforeNextTry(attemptNumber, previousDelayMillis, lastFailure);
+  }
+
+  /**
+   * Whether the policy learns from the outcome of every try, see {@link #onTryFinished(Object, Throwable, long)}. If
+   * so the executor times every try and works out the task key of every task using the policy
+   * @return true if the policy wants to hear about every try
+   */
+  default boolean isAdaptive() {
+    return false;
+  }
+
+  /**
+   * Called by the executor after every try of a task using this policy, if the policy {@link #isAdaptive()}. Must be
+   * cheap and thread-safe, it runs on the try's thread
+   * @param key the key of the task
+   * @param failure what the try threw, null if it succeeded
+   * @param latencyNanos how long the try ran
+   */
+  default void onTryFinished(Object key, Throwable failure, long latencyNanos) {
+  }
+
+  /**
+   * Determines whether a failure is worth retrying at all. A task whose try fails with a non-retryable exception
+   * gives up right away without consulting {@link #getMillisDelayBeforeNextTry(int, Throwable)}. By default every
+   * exception is retryable
+   * @param failure the exception thrown by the last try
+   * @return true if the task may try again
+   */
+  default boolean isRetryable(Throwable failure) {
+    return true;
+  }
+
+  /**
+   * Gets how long a single try may run before its thread is interrupted and the try counts as failed with an
+   * {@link com.mrhampson.retryexecutor.exceptions.AttemptTimeoutException}. By default a try runs as long as it takes
+   * @return the timeout in millis, 0 for none
+   */
+  default long getAttemptTimeoutMillis() {
+    return 0;
+  }
+
+  /**
+   * Gets how long a task may keep trying, counted from its first try. A retry that wouldn't start before the deadline
+   * isn't made, and the timeout of a try is cut to the time left. By default there is no deadline
+   * @return the deadline in millis, 0 for none
+   */
+  default long getDeadlineMillis() {
+    return 0;
+  }
+
+  /**
+   * Creates a policy with the same delays as this one that bounds every try and the task as a whole
+   * @param attemptTimeout how long a single try may run, 0 for no limit
+   * @param deadline how long the task may keep trying, 0 for no limit
+   * @param unit the unit of the timeout and the deadline
+   * @return the new policy
+   */
+  default RetryPolicy withTimeouts(long attemptTimeout, long deadline, TimeUnit unit) {
+    return new TimeoutPolicy(this, attemptTimeout, deadline, unit);
+  }
+
+  /**
+   * Creates a policy with the same delays as this one that only retries failures matching a predicate
+   * @param retryable the predicate, true for failures that should be retried
+   * @return the new policy
+   */
+  default RetryPolicy retryIf(Predicate<? super Throwable> retryable) {
+    return new ClassifyingPolicy(this, ExceptionClassifier.fromPredicate(retryable));
+  }
+
+  /**
+   * Creates a policy that waits as long as a failure's {@link com.mrhampson.retryexecutor.exceptions.RetryAfterHint}
+   * says, and uses this policy's delays for failures without one
+   * @return the new policy
+   */
+  default RetryPolicy honoringRetryAfter() {
+    return new RetryAfterAwarePolicy(this);
+  }
+}
@@ -33,4 +33,15 @@ public interface RetryStrategy {
    * @throws MaxTriesExceededException if the task should never run again
    */
   long getMillisDelayBeforeNextTry() throws MaxTriesExceededException;
+
+  /**
+   * Determines the delay until the task should run again after failure, for strategies that look at what the failure
+   * said, e.g. a {@link com.mrhampson.retryexecutor.exceptions.RetryAfterHint}. By default the failure is ignored
+   * @param lastFailure the exception thrown by the last try
+   * @return the delay in millis until the task should run again
+   * @throws MaxTriesExceededException if the task should never run again
+   */
+  default long getMillisDelayBeforeNextTry(Throwable lastFailure) throws MaxTriesExceededException {
+    return this.getMillisDelayBeforeNextTry();
+  }
 }
@@ -0,0 +1,50 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.strategies;
+
+import com.mrhampson.retryexecutor.exceptions.MaxTriesExceededException;
+
+import java.util.Objects;
+
+/**
+ * Adapts a stateful {@link RetryStrategy} to the {@link RetryPolicy} interface. The strategy keeps counting its own
+ * tries, so an adapter belongs to a single task and must not be shared
+ * @author Marshall Hampson
+ */
+public final class RetryStrategyAdapter implements RetryPolicy {
+  private final RetryStrategy retryStrategy;
+
+  /**
+   * Creates a new {@link RetryStrategyAdapter}
+   * @param retryStrategy the strategy to adapt
+   */
+  public RetryStrategyAdapter(RetryStrategy retryStrategy) {
+    Objects.requireNonNull(retryStrategy);
+    this.retryStrategy = retryStrategy;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getMillisDelayBeforeNextTry(int attemptNumber, Throwable lastFailure) throws MaxTriesExceededException {
+    return this.retryStrategy.getMillisDelayBeforeNextTry(lastFailure);
+  }
+}
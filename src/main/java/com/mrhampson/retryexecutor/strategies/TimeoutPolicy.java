@@ -0,0 +1,122 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.strategies;
+
+import com.mrhampson.retryexecutor.exceptions.MaxTriesExceededException;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link RetryPolicy} that keeps the delays and classification of another policy and bounds how long each try may
+ * run and how long the task may keep trying. The executor enforces both, see
+ * {@link RetryPolicy#getAttemptTimeoutMillis()} and {@link RetryPolicy#getDeadlineMillis()}
+ * @author Marshall Hampson
+ */
+public class TimeoutPolicy implements RetryPolicy {
+  private final RetryPolicy delegate;
+  private final long attemptTimeoutMillis;
+  private final long deadlineMillis;
+
+  /**
+   * Creates a new {@link TimeoutPolicy}
+   * @param delegate the policy that decides the delays
+   * @param attemptTimeout how long a single try may run, 0 for no limit
+   * @param deadline how long the task may keep trying, 0 for no limit
+   * @param unit the unit of the timeout and the deadline
+   */
+  public TimeoutPolicy(RetryPolicy delegate, long attemptTimeout, long deadline, TimeUnit unit) {
+    Objects.requireNonNull(delegate);
+    Objects.requireNonNull(unit);
+    if (attemptTimeout < 0 || deadline < 0) {
+      throw new IllegalArgumentException("attemptTimeout and deadline must not be negative");
+    }
+    this.delegate = delegate;
+    // Round up so a timeout shorter than a milli isn't taken for no timeout at all
+    this.attemptTimeoutMillis = attemptTimeout == 0 ? 0 : Math.max(1, unit.toMillis(attemptTimeout));
+    this.deadlineMillis = deadline == 0 ? 0 : Math.max(1, unit.toMillis(deadline));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getMillisDelayBeforeNextTry(int attemptNumber, Throwable lastFailure) throws MaxTriesExceededException {
+    return this.delegate.getMillisDelayBeforeNextTry(attemptNumber, lastFailure);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getMillisDelayBeforeNextTry(int attemptNumber, long previousDelayMillis, Throwable lastFailure)
+    throws MaxTriesExceededException {
+    return this.delegate.getMillisDelayBeforeNextTry(attemptNumber, previousDelayMillis, lastFailure);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getMillisDelayBeforeNextTry(Object key, int attemptNumber, long previousDelayMillis,
+                                          Throwable lastFailure) throws MaxTriesExceededException {
+    return this.delegate.getMillisDelayBeforeNextTry(key, attemptNumber, previousDelayMillis, lastFailure);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isAdaptive() {
+    return this.delegate.isAdaptive();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void onTryFinished(Object key, Throwable failure, long latencyNanos) {
+    this.delegate.onTryFinished(key, failure, latencyNanos);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isRetryable(Throwable failure) {
+    return this.delegate.isRetryable(failure);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getAttemptTimeoutMillis() {
+    return this.attemptTimeoutMillis;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getDeadlineMillis() {
+    return this.deadlineMillis;
+  }
+}
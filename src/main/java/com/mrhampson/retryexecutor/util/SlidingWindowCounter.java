@@ -0,0 +1,109 @@
+
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.util;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free counter of the events seen over a sliding time window. The window is split into slots of striped
+ * counters that expire one at a time, so the sum is only as precise as a slot
+ * @author Marshall Hampson
+ */
+public final class SlidingWindowCounter {
+  private static final int SLOTS = 10;
+
+  private final long slotNanos;
+  private final Slot[] slots = new Slot[SLOTS];
+
+  /**
+   * Creates a new {@link SlidingWindowCounter}
+   * @param window the length of the window
+   * @param windowUnit the unit of the window
+   */
+  public SlidingWindowCounter(long window, TimeUnit windowUnit) {
+    Objects.requireNonNull(windowUnit);
+    long windowNanos = windowUnit.toNanos(window);
+    if (windowNanos < SLOTS) {
+      throw new IllegalArgumentException("window is too short");
+    }
+    this.slotNanos = windowNanos / SLOTS;
+    for (int i = 0; i < SLOTS; i++) {
+      this.slots[i] = new Slot();
+    }
+  }
+
+  /**
+   * Counts an event
+   */
+  public void increment() {
+    this.currentSlot(System.nanoTime() / this.slotNanos).count.increment();
+  }
+
+  /**
+   * Gets the number of events in the window
+   * @return the sum
+   */
+  public long sum() {
+    long oldestLiveEpoch = System.nanoTime() / this.slotNanos - SLOTS;
+    long sum = 0;
+    for (Slot slot : this.slots) {
+      if (slot.epoch.get() > oldestLiveEpoch) {
+        sum += slot.count.sum();
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Forgets every event in the window
+   */
+  public void reset() {
+    for (Slot slot : this.slots) {
+      slot.epoch.set(Long.MIN_VALUE);
+      slot.count.reset();
+    }
+  }
+
+  /**
+   * Gets the slot for an epoch, clearing it first if it still holds an expired epoch
+   * @param epoch the epoch
+   * @return the slot
+   */
+  private Slot currentSlot(long epoch) {
+    // nanoTime, and so the epoch, may be negative
+    Slot slot = this.slots[(int)Math.floorMod(epoch, (long)SLOTS)];
+    long slotEpoch = slot.epoch.get();
+    if (slotEpoch < epoch && slot.epoch.compareAndSet(slotEpoch, epoch)) {
+      slot.count.reset();
+    }
+    return slot;
+  }
+
+  /**
+   * One slice of the window
+   */
+  private static final class Slot {
+    private final AtomicLong epoch = new AtomicLong(Long.MIN_VALUE);
+    private final LongAdder count = new LongAdder();
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor;
+
+import com.mrhampson.retryexecutor.annotations.CoalesceDuplicates;
+import com.mrhampson.retryexecutor.annotations.RetryWithFixedDelay;
+import com.mrhampson.retryexecutor.strategies.ConstantPolicy;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CoalescingTest {
+
+  @Test
+  public void testDuplicateSubmissionsShareOneTask() throws Exception {
+    ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    RetryExecutor retryExecutor = RetryExecutor.builder(executorService)
+      .coalescingKeyFunction(task -> "entity-42")
+      .build();
+    AtomicInteger calls = new AtomicInteger();
+    CountDownLatch firstTry = new CountDownLatch(1);
+    CompletableFuture<String> first = retryExecutor.submit(() -> {
+      if (calls.incrementAndGet() == 1) {
+        firstTry.countDown();
+        throw new IllegalStateException("Thrown on purpose");
+      }
+      return "Refreshed";
+    }, new ConstantPolicy(200, TimeUnit.MILLISECONDS, 5));
+    assertTrue(firstTry.await(5, TimeUnit.SECONDS));
+    CompletableFuture<String> duplicate = retryExecutor.submit(() -> {
+      calls.incrementAndGet();
+      return "Duplicate";
+    }, new ConstantPolicy(200, TimeUnit.MILLISECONDS, 5));
+    assertEquals("Refreshed", first.get(5, TimeUnit.SECONDS));
+    assertEquals("Refreshed", duplicate.get(5, TimeUnit.SECONDS));
+    assertEquals(2, calls.get());
+    // Once the task is done the key is free again
+    assertEquals("Again", retryExecutor.submit(() -> "Again", new ConstantPolicy(1, TimeUnit.MILLISECONDS, 5))
+      .get(5, TimeUnit.SECONDS));
+    executorService.shutdown();
+  }
+
+  @Test
+  public void testCancellingDuplicateLeavesTaskRunning() throws Exception {
+    ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    RetryExecutor retryExecutor = RetryExecutor.builder(executorService)
+      .coalescingKeyFunction(task -> "entity-42")
+      .build();
+    CountDownLatch release = new CountDownLatch(1);
+    CompletableFuture<String> first = retryExecutor.submit(() -> {
+      assertTrue(release.await(5, TimeUnit.SECONDS));
+      return "Refreshed";
+    }, new ConstantPolicy(1, TimeUnit.MILLISECONDS, 5));
+    CompletableFuture<String> duplicate = retryExecutor.submit(() -> "Duplicate",
+      new ConstantPolicy(1, TimeUnit.MILLISECONDS, 5));
+    assertTrue(duplicate.cancel(false));
+    release.countDown();
+    assertEquals("Refreshed", first.get(5, TimeUnit.SECONDS));
+    executorService.shutdown();
+  }
+
+  @Test
+  public void testRacingDuplicatesTakeNoCapacity() throws Exception {
+    ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    RetryExecutor retryExecutor = RetryExecutor.builder(executorService)
+      .capacity(new RetryCapacity(1, OverflowPolicy.REJECT))
+      .coalescingKeyFunction(task -> "entity-42")
+      .build();
+    AtomicInteger calls = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    Callable<String> refresh = () -> {
+      calls.incrementAndGet();
+      assertTrue(release.await(5, TimeUnit.SECONDS));
+      return "Refreshed";
+    };
+    int submitters = 8;
+    ExecutorService submitterPool = Executors.newFixedThreadPool(submitters);
+    CyclicBarrier barrier = new CyclicBarrier(submitters);
+    List<Future<CompletableFuture<String>>> submissions = new ArrayList<>();
+    for (int i = 0; i < submitters; i++) {
+      submissions.add(submitterPool.submit(() -> {
+        barrier.await(5, TimeUnit.SECONDS);
+        return retryExecutor.submit(refresh, new ConstantPolicy(1, TimeUnit.MILLISECONDS, 5));
+      }));
+    }
+    List<CompletableFuture<String>> futures = new ArrayList<>();
+    for (Future<CompletableFuture<String>> submission : submissions) {
+      // A duplicate that took capacity would have been rejected here
+      futures.add(submission.get(5, TimeUnit.SECONDS));
+    }
+    release.countDown();
+    for (CompletableFuture<String> future : futures) {
+      assertEquals("Refreshed", future.get(5, TimeUnit.SECONDS));
+    }
+    assertEquals(1, calls.get());
+    submitterPool.shutdown();
+    executorService.shutdown();
+  }
+
+  @Test
+  public void testAnnotatedDuplicatesAreDroppedWhileInFlight() throws Exception {
+    ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    RetryExecutor retryExecutor = new RetryExecutor(executorService);
+    Map<Integer, AtomicInteger> runs = new ConcurrentHashMap<>();
+    CountDownLatch done = new CountDownLatch(2);
+    retryExecutor.execute(new RefreshEntity(42, runs, done));
+    retryExecutor.execute(new RefreshEntity(42, runs, done));
+    retryExecutor.execute(new RefreshEntity(7, runs, done));
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    executorService.shutdown();
+    assertTrue(executorService.awaitTermination(5, TimeUnit.SECONDS));
+    // Each entity fails once and then succeeds
+    assertEquals(2, runs.get(42).get());
+    assertEquals(2, runs.get(7).get());
+  }
+
+  @CoalesceDuplicates
+  @RetryWithFixedDelay(delay = 100, delayUnit = TimeUnit.MILLISECONDS, maxTries = 5)
+  private static class RefreshEntity implements Runnable {
+    private final int id;
+    private final Map<Integer, AtomicInteger> runs;
+    private final CountDownLatch done;
+
+    private RefreshEntity(int id, Map<Integer, AtomicInteger> runs, CountDownLatch done) {
+      this.id = id;
+      this.runs = runs;
+      this.done = done;
+    }
+
+    @Override
+    public void run() {
+      if (this.runs.computeIfAbsent(this.id, ignored -> new AtomicInteger()).incrementAndGet() == 1) {
+        throw new IllegalStateException("Thrown on purpose");
+      }
+      this.done.countDown();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof RefreshEntity && ((RefreshEntity)other).id == this.id;
+    }
+
+    @Override
+    public int hashCode() {
+      return Integer.hashCode(this.id);
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor;
+
+import com.mrhampson.retryexecutor.exceptions.RetryCapacityExceededException;
+import com.mrhampson.retryexecutor.strategies.ConstantPolicy;
+import org.junit.Test;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RetryCapacityTest {
+
+  @Test
+  public void testRejectRefusesTasksWhenFull() throws Exception {
+    ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    RetryCapacity capacity = new RetryCapacity(1, OverflowPolicy.REJECT);
+    RetryExecutor retryExecutor = RetryExecutor.builder(executorService).capacity(capacity).build();
+    CountDownLatch firstTry = new CountDownLatch(1);
+    CompletableFuture<String> backingOff = retryExecutor.submit(() -> {
+      firstTry.countDown();
+      throw new IllegalStateException("Thrown on purpose");
+    }, new ConstantPolicy(10, TimeUnit.SECONDS, 5));
+    assertTrue(firstTry.await(5, TimeUnit.SECONDS));
+    assertEquals(1, capacity.getDepth());
+    try {
+      retryExecutor.submit(() -> "Hello", new ConstantPolicy(1, TimeUnit.MILLISECONDS, 5));
+      fail("Expected the task to be refused");
+    }
+    catch (RejectedExecutionException expected) {
+      // Full
+    }
+    assertTrue(backingOff.cancel(false));
+    assertEquals(0, capacity.getDepth());
+    assertEquals("Hello",
+      retryExecutor.submit(() -> "Hello", new ConstantPolicy(1, TimeUnit.MILLISECONDS, 5)).get(5, TimeUnit.SECONDS));
+    assertEquals(0, capacity.getDepth());
+    executorService.shutdown();
+  }
+
+  @Test
+  public void testDropOldestEvictsTaskWaitingForRetry() throws Exception {
+    ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    RetryCapacity capacity = new RetryCapacity(1, OverflowPolicy.DROP_OLDEST);
+    RetryExecutor retryExecutor = RetryExecutor.builder(executorService).capacity(capacity).build();
+    CompletableFuture<String> backingOff = retryExecutor.submit(() -> {
+      throw new IllegalStateException("Thrown on purpose");
+    }, new ConstantPolicy(10, TimeUnit.SECONDS, 5));
+    awaitFirstTry(executorService);
+    CompletableFuture<String> admitted = retryExecutor.submit(() -> "Hello",
+      new ConstantPolicy(1, TimeUnit.MILLISECONDS, 5));
+    try {
+      backingOff.get(5, TimeUnit.SECONDS);
+      fail("Expected the task to be dropped");
+    }
+    catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RetryCapacityExceededException);
+      assertEquals(1, ((RetryCapacityExceededException)e.getCause()).getAttempts());
+    }
+    assertEquals("Hello", admitted.get(5, TimeUnit.SECONDS));
+    assertEquals(0, capacity.getDepth());
+    executorService.shutdown();
+  }
+
+  @Test
+  public void testFailRetryGivesUpWhileOverCapacity() throws Exception {
+    ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    RetryCapacity capacity = new RetryCapacity(1, OverflowPolicy.FAIL_RETRY);
+    RetryExecutor retryExecutor = RetryExecutor.builder(executorService).capacity(capacity).build();
+    CompletableFuture<String> backingOff = retryExecutor.submit(() -> {
+      throw new IllegalStateException("Thrown on purpose");
+    }, new ConstantPolicy(10, TimeUnit.SECONDS, 5));
+    awaitFirstTry(executorService);
+    AtomicInteger tries = new AtomicInteger();
+    CompletableFuture<String> overflowing = retryExecutor.submit(() -> {
+      tries.incrementAndGet();
+      throw new IllegalStateException("Thrown on purpose");
+    }, new ConstantPolicy(1, TimeUnit.MILLISECONDS, 5));
+    try {
+      overflowing.get(5, TimeUnit.SECONDS);
+      fail("Expected the task to give up");
+    }
+    catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RetryCapacityExceededException);
+    }
+    assertEquals(1, tries.get());
+    assertEquals(1, capacity.getDepth());
+    assertTrue(backingOff.cancel(false));
+    assertEquals(0, capacity.getDepth());
+    executorService.shutdown();
+  }
+
+  @Test
+  public void testBlockWaitsForRoom() throws Exception {
+    ScheduledExecutorService executorService = Executors.newScheduledThreadPool(2);
+    RetryCapacity capacity = new RetryCapacity(1, OverflowPolicy.BLOCK);
+    RetryExecutor retryExecutor = RetryExecutor.builder(executorService).capacity(capacity).build();
+    CountDownLatch release = new CountDownLatch(1);
+    CompletableFuture<String> running = retryExecutor.submit(() -> {
+      release.await();
+      return "First";
+    }, new ConstantPolicy(1, TimeUnit.MILLISECONDS, 5));
+    CompletableFuture<CompletableFuture<String>> submitted = CompletableFuture.supplyAsync(
+      () -> retryExecutor.submit(() -> "Second", new ConstantPolicy(1, TimeUnit.MILLISECONDS, 5)));
+    Thread.sleep(100);
+    assertFalse(submitted.isDone());
+    release.countDown();
+    assertEquals("First", running.get(5, TimeUnit.SECONDS));
+    assertEquals("Second", submitted.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS));
+    assertEquals(0, capacity.getDepth());
+    executorService.shutdown();
+  }
+
+  private static void awaitFirstTry(ScheduledExecutorService executorService) throws Exception {
+    // The first try ran once the single scheduler thread has moved past it
+    executorService.submit(() -> { }).get(5, TimeUnit.SECONDS);
+  }
+}
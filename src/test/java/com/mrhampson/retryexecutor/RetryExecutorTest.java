@@ -18,15 +18,32 @@
 
 package com.mrhampson.retryexecutor;
 
+import com.mrhampson.retryexecutor.annotations.RetryWithCircuitBreaker;
 import com.mrhampson.retryexecutor.annotations.RetryWithCustomDelay;
 import com.mrhampson.retryexecutor.annotations.RetryWithExponentialDelay;
 import com.mrhampson.retryexecutor.annotations.RetryWithFixedDelay;
+import com.mrhampson.retryexecutor.annotations.RetryWithJitteredDelay;
+import com.mrhampson.retryexecutor.budget.TokenBucketRetryBudget;
+import com.mrhampson.retryexecutor.circuitbreaker.OpenCircuitBehavior;
+import com.mrhampson.retryexecutor.exceptions.CircuitBreakerOpenException;
 import com.mrhampson.retryexecutor.exceptions.MaxTriesExceededException;
+import com.mrhampson.retryexecutor.exceptions.RetryBudgetExhaustedException;
+import com.mrhampson.retryexecutor.exceptions.RetryDeadlineExceededException;
+import com.mrhampson.retryexecutor.exceptions.RetryExhaustedException;
+import com.mrhampson.retryexecutor.hedging.HedgePolicy;
+import com.mrhampson.retryexecutor.scheduling.Cancellable;
+import com.mrhampson.retryexecutor.scheduling.RetryScheduler;
+import com.mrhampson.retryexecutor.strategies.AdaptivePolicy;
+import com.mrhampson.retryexecutor.strategies.AnnotationToRetryStrategyFactory;
+import com.mrhampson.retryexecutor.strategies.ConstantPolicy;
 import com.mrhampson.retryexecutor.strategies.ConstantStrategy;
+import com.mrhampson.retryexecutor.strategies.JitterMode;
+import com.mrhampson.retryexecutor.strategies.RetryPolicy;
 import com.mrhampson.retryexecutor.strategies.RetryStrategy;
 import org.junit.Test;
 
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -47,6 +64,323 @@ public class RetryExecutorTest {
     testExecutorWithRunnable(new CustomStrategyRunnable());
   }
 
+  @Test
+  public void testPolicyProviderIsCachedPerClass() {
+    assertSame(AnnotationToRetryStrategyFactory.policyProviderForClass(ConstantTestRunnable.class),
+      AnnotationToRetryStrategyFactory.policyProviderForClass(ConstantTestRunnable.class));
+    assertSame(AnnotationToRetryStrategyFactory.policyProviderForClass(ConstantTestRunnable.class).get(),
+      AnnotationToRetryStrategyFactory.policyProviderForClass(ConstantTestRunnable.class).get());
+    assertNotSame(AnnotationToRetryStrategyFactory.policyProviderForClass(CustomStrategyRunnable.class).get(),
+      AnnotationToRetryStrategyFactory.policyProviderForClass(CustomStrategyRunnable.class).get());
+    assertNull(AnnotationToRetryStrategyFactory.policyProviderForClass(HelloWorldRunnable.class));
+  }
+
+  @Test
+  public void testJitteredAnnotationMapsToStrategy() {
+    RetryWithJitteredDelay annotation = JitteredTestRunnable.class.getAnnotation(RetryWithJitteredDelay.class);
+    RetryStrategy strategy = AnnotationToRetryStrategyFactory.fromAnnotation(annotation);
+    long delay = strategy.getMillisDelayBeforeNextTry();
+    assertTrue(delay >= 0 && delay <= 100);
+    strategy.getMillisDelayBeforeNextTry();
+    try {
+      strategy.getMillisDelayBeforeNextTry();
+      fail();
+    }
+    catch (MaxTriesExceededException expected) {
+
+    }
+  }
+
+  @Test
+  public void testCustomPolicy() {
+    testExecutorWithRunnable(new CustomPolicyRunnable());
+  }
+
+  @Test
+  public void testSubmitCompletesWithResult() throws Exception {
+    ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    RetryExecutor retryExecutor = new RetryExecutor(executorService);
+    AtomicInteger tries = new AtomicInteger();
+    CompletableFuture<String> future = retryExecutor.submit(() -> {
+      if (tries.incrementAndGet() < 3) {
+        throw new IllegalStateException("Thrown on purpose");
+      }
+      return "done";
+    }, new ConstantPolicy(1, TimeUnit.MILLISECONDS, 5));
+    assertEquals("done", future.get(5, TimeUnit.SECONDS));
+    assertEquals(3, tries.get());
+    executorService.shutdown();
+  }
+
+  @Test
+  public void testSubmitCompletesWithAttemptHistoryWhenExhausted() throws Exception {
+    ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    RetryExecutor retryExecutor = new RetryExecutor(executorService);
+    CompletableFuture<String> future = retryExecutor.submit(() -> {
+      throw new IllegalStateException("Thrown on purpose");
+    }, new ConstantPolicy(1, TimeUnit.MILLISECONDS, 2));
+    try {
+      future.get(5, TimeUnit.SECONDS);
+      fail("Expected the task to run out of tries");
+    }
+    catch (ExecutionException e) {
+      RetryExhaustedException exhausted = (RetryExhaustedException)e.getCause();
+      assertEquals(3, exhausted.getAttempts());
+      assertEquals(3, exhausted.getFailures().size());
+      assertTrue(exhausted.getCause() instanceof IllegalStateException);
+    }
+    executorService.shutdown();
+  }
+
+  @Test
+  public void testCancelStopsPendingRetry() throws Exception {
+    ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    RetryExecutor retryExecutor = new RetryExecutor(executorService);
+    CountDownLatch firstTry = new CountDownLatch(1);
+    AtomicInteger tries = new AtomicInteger();
+    CompletableFuture<String> future = retryExecutor.submit(() -> {
+      tries.incrementAndGet();
+      firstTry.countDown();
+      throw new IllegalStateException("Thrown on purpose");
+    }, new ConstantPolicy(200, TimeUnit.MILLISECONDS, 5));
+    assertTrue(firstTry.await(5, TimeUnit.SECONDS));
+    Thread.sleep(50);
+    assertTrue(future.cancel(false));
+    Thread.sleep(400);
+    assertEquals(1, tries.get());
+    executorService.shutdown();
+  }
+
+  @Test
+  public void testRetryBudgetFailsFastWhenExhausted() throws Exception {
+    ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    RetryExecutor retryExecutor = RetryExecutor.builder(executorService)
+      .retryBudget(new TokenBucketRetryBudget(0, 0, 1, TimeUnit.MINUTES))
+      .build();
+    AtomicInteger tries = new AtomicInteger();
+    CompletableFuture<String> future = retryExecutor.submit(() -> {
+      tries.incrementAndGet();
+      throw new IllegalStateException("Thrown on purpose");
+    }, new ConstantPolicy(1, TimeUnit.MILLISECONDS, 5));
+    try {
+      future.get(5, TimeUnit.SECONDS);
+      fail("Expected the retry budget to be exhausted");
+    }
+    catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RetryBudgetExhaustedException);
+    }
+    assertEquals(1, tries.get());
+    executorService.shutdown();
+  }
+
+  @Test
+  public void testOpenCircuitRejectsTries() throws Exception {
+    ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    RetryExecutor retryExecutor = new RetryExecutor(executorService);
+    CircuitBreakerCallable task = new CircuitBreakerCallable();
+    CompletableFuture<String> future = retryExecutor.submit(task, new ConstantPolicy(1, TimeUnit.MILLISECONDS, 5));
+    try {
+      future.get(5, TimeUnit.SECONDS);
+      fail("Expected the circuit to open");
+    }
+    catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof CircuitBreakerOpenException);
+      assertEquals(2, ((CircuitBreakerOpenException)e.getCause()).getAttempts());
+    }
+    assertEquals(2, task.tries.get());
+    executorService.shutdown();
+  }
+
+  @Test
+  public void testSubmitFailsFastOnNonRetryableException() throws Exception {
+    ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    RetryExecutor retryExecutor = new RetryExecutor(executorService);
+    BadPayloadCallable task = new BadPayloadCallable();
+    try {
+      retryExecutor.submit(task).get(5, TimeUnit.SECONDS);
+      fail("Expected the task to fail");
+    }
+    catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IllegalArgumentException);
+    }
+    assertEquals(1, task.tries.get());
+    executorService.shutdown();
+  }
+
+  @Test
+  public void testSubmitDoesNotRetryError() throws Exception {
+    ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    RetryExecutor retryExecutor = new RetryExecutor(executorService);
+    AtomicInteger tries = new AtomicInteger();
+    CompletableFuture<String> future = retryExecutor.submit(() -> {
+      tries.incrementAndGet();
+      throw new AssertionError("Thrown on purpose");
+    }, new ConstantPolicy(1, TimeUnit.MILLISECONDS, 5));
+    try {
+      future.get(5, TimeUnit.SECONDS);
+      fail("Expected the task to fail");
+    }
+    catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof AssertionError);
+    }
+    assertEquals(1, tries.get());
+    executorService.shutdown();
+  }
+
+  @Test
+  public void testHedgeWinsWhenFirstCopyHangs() throws Exception {
+    ScheduledExecutorService executorService = Executors.newScheduledThreadPool(2);
+    RetryExecutor retryExecutor = new RetryExecutor(executorService);
+    AtomicInteger calls = new AtomicInteger();
+    CountDownLatch loserInterrupted = new CountDownLatch(1);
+    CompletableFuture<String> future = retryExecutor.submit(() -> {
+      if (calls.incrementAndGet() == 1) {
+        try {
+          Thread.sleep(10_000);
+        }
+        catch (InterruptedException e) {
+          loserInterrupted.countDown();
+          throw e;
+        }
+        return "Hung";
+      }
+      return "Hedged";
+    }, new ConstantPolicy(1, TimeUnit.MILLISECONDS, 5), HedgePolicy.afterDelay(50, TimeUnit.MILLISECONDS, 1));
+    assertEquals("Hedged", future.get(5, TimeUnit.SECONDS));
+    assertTrue(loserInterrupted.await(5, TimeUnit.SECONDS));
+    assertEquals(2, calls.get());
+    executorService.shutdown();
+  }
+
+  @Test
+  public void testHedgeBudgetLimitsHedges() throws Exception {
+    ScheduledExecutorService executorService = Executors.newScheduledThreadPool(2);
+    RetryExecutor retryExecutor = RetryExecutor.builder(executorService)
+      .hedgeBudget(new TokenBucketRetryBudget(0, 0, 1, TimeUnit.MINUTES))
+      .build();
+    AtomicInteger calls = new AtomicInteger();
+    CompletableFuture<String> future = retryExecutor.submit(() -> {
+      calls.incrementAndGet();
+      Thread.sleep(200);
+      return "Slow";
+    }, new ConstantPolicy(1, TimeUnit.MILLISECONDS, 5), HedgePolicy.afterDelay(20, TimeUnit.MILLISECONDS, 1));
+    assertEquals("Slow", future.get(5, TimeUnit.SECONDS));
+    assertEquals(1, calls.get());
+    executorService.shutdown();
+  }
+
+  @Test
+  public void testHedgedTryRetriesOnceEveryCopyFailed() throws Exception {
+    ScheduledExecutorService executorService = Executors.newScheduledThreadPool(2);
+    RetryExecutor retryExecutor = new RetryExecutor(executorService);
+    AtomicInteger calls = new AtomicInteger();
+    CompletableFuture<String> future = retryExecutor.submit(() -> {
+      int call = calls.incrementAndGet();
+      if (call == 1) {
+        Thread.sleep(100);
+      }
+      if (call <= 2) {
+        throw new IllegalStateException("Thrown on purpose");
+      }
+      return "Retried";
+    }, new ConstantPolicy(1, TimeUnit.MILLISECONDS, 5), HedgePolicy.afterDelay(20, TimeUnit.MILLISECONDS, 1));
+    assertEquals("Retried", future.get(5, TimeUnit.SECONDS));
+    assertEquals(3, calls.get());
+    executorService.shutdown();
+  }
+
+  @Test
+  public void testFailedFirstCopyDoesNotWaitForQueuedHedge() throws Exception {
+    ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    ExecutorService worker = Executors.newSingleThreadExecutor();
+    // Timed tasks run on the timer thread, everything else queues for the one worker
+    RetryScheduler scheduler = new RetryScheduler() {
+      @Override
+      public void execute(Runnable task) {
+        worker.execute(task);
+      }
+
+      @Override
+      public Cancellable schedule(Runnable task, long delay, TimeUnit unit) {
+        ScheduledFuture<?> scheduled = timer.schedule(task, delay, unit);
+        return () -> scheduled.cancel(false);
+      }
+    };
+    RetryExecutor retryExecutor = new RetryExecutor(scheduler);
+    AtomicInteger calls = new AtomicInteger();
+    CompletableFuture<String> future = retryExecutor.submit(() -> {
+      if (calls.incrementAndGet() == 1) {
+        Thread.sleep(100);
+        throw new IllegalStateException("Thrown on purpose");
+      }
+      return "Retried";
+    }, new ConstantPolicy(1, TimeUnit.MILLISECONDS, 5), HedgePolicy.afterDelay(20, TimeUnit.MILLISECONDS, 1));
+    assertEquals("Retried", future.get(5, TimeUnit.SECONDS));
+    assertEquals(2, calls.get());
+    timer.shutdown();
+    worker.shutdown();
+  }
+
+  @Test
+  public void testAttemptTimeoutInterruptsHungTry() throws Exception {
+    ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    RetryExecutor retryExecutor = new RetryExecutor(executorService);
+    AtomicInteger calls = new AtomicInteger();
+    CompletableFuture<String> future = retryExecutor.submit(() -> {
+      if (calls.incrementAndGet() == 1) {
+        Thread.sleep(10_000);
+      }
+      return "Done";
+    }, new ConstantPolicy(1, TimeUnit.MILLISECONDS, 5).withTimeouts(100, 0, TimeUnit.MILLISECONDS));
+    assertEquals("Done", future.get(5, TimeUnit.SECONDS));
+    assertEquals(2, calls.get());
+    assertFalse(executorService.submit(() -> Thread.currentThread().isInterrupted()).get());
+    executorService.shutdown();
+  }
+
+  @Test
+  public void testDeadlineBoundsRetries() throws Exception {
+    ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    RetryExecutor retryExecutor = new RetryExecutor(executorService);
+    AtomicInteger tries = new AtomicInteger();
+    long startNanos = System.nanoTime();
+    CompletableFuture<String> future = retryExecutor.submit(() -> {
+      tries.incrementAndGet();
+      throw new IllegalStateException("Thrown on purpose");
+    }, new ConstantPolicy(100, TimeUnit.MILLISECONDS, 100).withTimeouts(0, 250, TimeUnit.MILLISECONDS));
+    try {
+      future.get(5, TimeUnit.SECONDS);
+      fail("Expected the deadline to pass");
+    }
+    catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RetryDeadlineExceededException);
+    }
+    assertTrue(tries.get() <= 3);
+    assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(1));
+    executorService.shutdown();
+  }
+
+  @Test
+  public void testAdaptivePolicyLearnsFromTries() throws Exception {
+    ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    RetryExecutor retryExecutor = RetryExecutor.builder(executorService)
+      .taskKeyFunction(task -> "backend")
+      .build();
+    AdaptivePolicy policy = new AdaptivePolicy(10, 1000, TimeUnit.MILLISECONDS, 5);
+    AtomicInteger calls = new AtomicInteger();
+    CompletableFuture<String> future = retryExecutor.submit(() -> {
+      if (calls.incrementAndGet() <= 2) {
+        throw new IllegalStateException("Thrown on purpose");
+      }
+      return "Done";
+    }, policy);
+    assertEquals("Done", future.get(5, TimeUnit.SECONDS));
+    assertEquals(3, calls.get());
+    executorService.shutdown();
+    assertTrue(executorService.awaitTermination(5, TimeUnit.SECONDS));
+    assertEquals(30, policy.getCurrentDelayMillis("backend"));
+  }
+
   private void testExecutorWithRunnable(HelloWorldRunnable testRunnable) {
     ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
     RetryExecutor retryExecutor = new RetryExecutor(executorService);
@@ -77,6 +411,14 @@ public class RetryExecutorTest {
     }
   }
 
+  @RetryWithJitteredDelay(jitter = JitterMode.FULL, baseDelay = 100, maxDelay = 1_000,
+    delayUnit = TimeUnit.MILLISECONDS, maxTries = 2)
+  class JitteredTestRunnable extends HelloWorldRunnable {
+    public JitteredTestRunnable() {
+      super(2);
+    }
+  }
+
   @RetryWithCustomDelay(retryStrategy = CustomStrategy.class)
   class CustomStrategyRunnable extends HelloWorldRunnable {
     public CustomStrategyRunnable() {
@@ -84,6 +426,49 @@ public class RetryExecutorTest {
     }
   }
 
+  @RetryWithCustomDelay(retryPolicy = CustomPolicy.class)
+  class CustomPolicyRunnable extends HelloWorldRunnable {
+    public CustomPolicyRunnable() {
+      super(3);
+    }
+  }
+
+  public static final class CustomPolicy implements RetryPolicy {
+    public CustomPolicy() { }
+
+    @Override
+    public long getMillisDelayBeforeNextTry(int attemptNumber, Throwable lastFailure) throws MaxTriesExceededException {
+      if (attemptNumber > 3) {
+        throw new MaxTriesExceededException();
+      }
+      return 10;
+    }
+  }
+
+  @RetryWithFixedDelay(delay = 1, delayUnit = TimeUnit.MILLISECONDS, maxTries = 5,
+    abortOn = IllegalArgumentException.class)
+  static class BadPayloadCallable implements Callable<String> {
+    private final AtomicInteger tries = new AtomicInteger();
+
+    @Override
+    public String call() {
+      tries.incrementAndGet();
+      throw new IllegalArgumentException("Thrown on purpose");
+    }
+  }
+
+  @RetryWithCircuitBreaker(minimumCalls = 2, openDuration = 1, openDurationUnit = TimeUnit.MINUTES,
+    whenOpen = OpenCircuitBehavior.REJECT)
+  static class CircuitBreakerCallable implements Callable<String> {
+    private final AtomicInteger tries = new AtomicInteger();
+
+    @Override
+    public String call() {
+      tries.incrementAndGet();
+      throw new IllegalStateException("Thrown on purpose");
+    }
+  }
+
   public static final class CustomStrategy implements RetryStrategy {
     private final RetryStrategy strategy = new ConstantStrategy(1, TimeUnit.SECONDS, 5);
 
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.batch;
+
+import com.mrhampson.retryexecutor.exceptions.RetryExhaustedException;
+import com.mrhampson.retryexecutor.scheduling.Cancellable;
+import com.mrhampson.retryexecutor.scheduling.RetryScheduler;
+import com.mrhampson.retryexecutor.scheduling.ScheduledExecutorServiceScheduler;
+import com.mrhampson.retryexecutor.strategies.ConstantPolicy;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class BatchRetryExecutorTest {
+
+  @Test
+  public void testFailedItemsAreRetriedTogether() throws Exception {
+    ScheduledExecutorService executorService = Executors.newScheduledThreadPool(2);
+    List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    Set<Integer> failedOnce = ConcurrentHashMap.newKeySet();
+    BatchRetryExecutor<Integer, String> batchRetryExecutor = BatchRetryExecutor.<Integer, String>builder(
+      new ScheduledExecutorServiceScheduler(executorService), items -> {
+        batchSizes.add(items.size());
+        List<BatchResult<String>> results = new ArrayList<>();
+        for (Integer item : items) {
+          results.add(item % 2 == 1 && failedOnce.add(item)
+            ? BatchResult.failure(new IllegalStateException("Thrown on purpose"))
+            : BatchResult.success("item-" + item));
+        }
+        return results;
+      })
+      .window(50, TimeUnit.MILLISECONDS)
+      .build();
+    List<CompletableFuture<String>> futures = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      futures.add(batchRetryExecutor.submit(i, new ConstantPolicy(10, TimeUnit.MILLISECONDS, 3)));
+    }
+    for (int i = 0; i < 10; i++) {
+      assertEquals("item-" + i, futures.get(i).get(5, TimeUnit.SECONDS));
+    }
+    assertEquals(10, batchSizes.get(0).intValue());
+    assertEquals(5, batchSizes.get(1).intValue());
+    assertEquals(2, batchSizes.size());
+    executorService.shutdown();
+  }
+
+  @Test
+  public void testRejectedWindowTimerFailsBatch() throws Exception {
+    ScheduledExecutorService executorService = Executors.newScheduledThreadPool(1);
+    executorService.shutdown();
+    BatchRetryExecutor<Integer, Integer> batchRetryExecutor = BatchRetryExecutor.<Integer, Integer>builder(
+      new ScheduledExecutorServiceScheduler(executorService), items -> {
+        throw new AssertionError("A rejected batch must not be handled");
+      })
+      .window(1, TimeUnit.MINUTES)
+      .build();
+    // Neither item may be left waiting in a batch that has no timer
+    for (int i = 0; i < 2; i++) {
+      assertRejected(batchRetryExecutor.submit(i, new ConstantPolicy(10, TimeUnit.MILLISECONDS, 3)));
+    }
+  }
+
+  @Test
+  public void testRejectedFlushFailsWholeBatch() throws Exception {
+    ScheduledExecutorService executorService = Executors.newScheduledThreadPool(1);
+    // Timers are taken, but full batches can't be handed over
+    RetryScheduler scheduler = new RetryScheduler() {
+      @Override
+      public void execute(Runnable task) {
+        throw new RejectedExecutionException("Thrown on purpose");
+      }
+
+      @Override
+      public Cancellable schedule(Runnable task, long delay, TimeUnit unit) {
+        ScheduledFuture<?> scheduled = executorService.schedule(task, delay, unit);
+        return () -> scheduled.cancel(false);
+      }
+    };
+    BatchRetryExecutor<Integer, Integer> batchRetryExecutor = BatchRetryExecutor.<Integer, Integer>builder(
+      scheduler, items -> {
+        throw new AssertionError("A rejected batch must not be handled");
+      })
+      .window(1, TimeUnit.MINUTES)
+      .maxBatchSize(3)
+      .build();
+    List<CompletableFuture<Integer>> futures = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      futures.add(batchRetryExecutor.submit(i, new ConstantPolicy(10, TimeUnit.MILLISECONDS, 3)));
+    }
+    for (CompletableFuture<Integer> future : futures) {
+      assertRejected(future);
+    }
+    executorService.shutdownNow();
+  }
+
+  private static void assertRejected(CompletableFuture<?> future) throws Exception {
+    try {
+      future.get(5, TimeUnit.SECONDS);
+      fail("Expected the item to be rejected");
+    }
+    catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+  }
+
+  @Test
+  public void testFullBatchDoesNotWaitForWindow() throws Exception {
+    ScheduledExecutorService executorService = Executors.newScheduledThreadPool(2);
+    BatchRetryExecutor<Integer, Integer> batchRetryExecutor = BatchRetryExecutor.<Integer, Integer>builder(
+      new ScheduledExecutorServiceScheduler(executorService), items -> {
+        List<BatchResult<Integer>> results = new ArrayList<>();
+        for (Integer item : items) {
+          results.add(BatchResult.success(items.size()));
+        }
+        return results;
+      })
+      .window(1, TimeUnit.MINUTES)
+      .maxBatchSize(3)
+      .build();
+    List<CompletableFuture<Integer>> futures = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      futures.add(batchRetryExecutor.submit(i, new ConstantPolicy(10, TimeUnit.MILLISECONDS, 3)));
+    }
+    for (CompletableFuture<Integer> future : futures) {
+      assertEquals(Integer.valueOf(3), future.get(5, TimeUnit.SECONDS));
+    }
+    executorService.shutdown();
+  }
+
+  @Test
+  public void testNullResultRetriesWholeBatch() throws Exception {
+    ScheduledExecutorService executorService = Executors.newScheduledThreadPool(2);
+    List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    BatchRetryExecutor<Integer, String> batchRetryExecutor = BatchRetryExecutor.<Integer, String>builder(
+      new ScheduledExecutorServiceScheduler(executorService), items -> {
+        batchSizes.add(items.size());
+        List<BatchResult<String>> results = new ArrayList<>();
+        for (Integer item : items) {
+          results.add(batchSizes.size() == 1 && item == 1 ? null : BatchResult.success("item-" + item));
+        }
+        return results;
+      })
+      .window(50, TimeUnit.MILLISECONDS)
+      .build();
+    List<CompletableFuture<String>> futures = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      futures.add(batchRetryExecutor.submit(i, new ConstantPolicy(10, TimeUnit.MILLISECONDS, 3)));
+    }
+    for (int i = 0; i < 3; i++) {
+      assertEquals("item-" + i, futures.get(i).get(5, TimeUnit.SECONDS));
+    }
+    assertEquals(3, batchSizes.get(0).intValue());
+    assertEquals(3, batchSizes.get(1).intValue());
+    assertEquals(2, batchSizes.size());
+    executorService.shutdown();
+  }
+
+  @Test
+  public void testItemGivesUpWhenBatchKeepsFailing() throws Exception {
+    ScheduledExecutorService executorService = Executors.newScheduledThreadPool(2);
+    BatchRetryExecutor<String, String> batchRetryExecutor = BatchRetryExecutor.<String, String>builder(
+      new ScheduledExecutorServiceScheduler(executorService), items -> {
+        throw new IllegalStateException("Thrown on purpose");
+      })
+      .window(1, TimeUnit.MILLISECONDS)
+      .build();
+    try {
+      batchRetryExecutor.submit("a", new ConstantPolicy(1, TimeUnit.MILLISECONDS, 2)).get(5, TimeUnit.SECONDS);
+      fail("Expected the item to run out of tries");
+    }
+    catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RetryExhaustedException);
+      assertEquals(3, ((RetryExhaustedException)e.getCause()).getAttempts());
+    }
+    executorService.shutdown();
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.budget;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TokenBucketRetryBudgetTest {
+
+  @Test
+  public void testRetriesAreCappedByRatioOfFirstAttempts() {
+    TokenBucketRetryBudget budget = new TokenBucketRetryBudget(0.1, 0, 1, TimeUnit.MINUTES);
+    assertFalse(budget.tryAcquireRetry(null));
+    for (int i = 0; i < 20; i++) {
+      budget.onFirstAttempt(null);
+    }
+    assertTrue(budget.tryAcquireRetry(null));
+    assertTrue(budget.tryAcquireRetry(null));
+    assertFalse(budget.tryAcquireRetry(null));
+  }
+
+  @Test
+  public void testKeyedBudgetsAreIndependent() {
+    KeyedRetryBudget budget = new KeyedRetryBudget(() -> new TokenBucketRetryBudget(1, 0, 1, TimeUnit.MINUTES));
+    budget.onFirstAttempt("a");
+    assertFalse(budget.tryAcquireRetry("b"));
+    assertTrue(budget.tryAcquireRetry("a"));
+    assertFalse(budget.tryAcquireRetry("a"));
+  }
+}
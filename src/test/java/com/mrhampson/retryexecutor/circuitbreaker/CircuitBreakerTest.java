@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.circuitbreaker;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+
+  @Test
+  public void testOpensProbesAndCloses() throws Exception {
+    CircuitBreaker circuitBreaker = new CircuitBreaker(new CircuitBreakerConfig(0.5, 4, 1, TimeUnit.MINUTES,
+      50, TimeUnit.MILLISECONDS, 2, OpenCircuitBehavior.HOLD));
+    circuitBreaker.onSuccess();
+    circuitBreaker.onSuccess();
+    circuitBreaker.onFailure();
+    assertEquals(CircuitState.CLOSED, circuitBreaker.getState());
+    circuitBreaker.onFailure();
+    assertEquals(CircuitState.OPEN, circuitBreaker.getState());
+    assertFalse(circuitBreaker.tryAcquirePermission());
+
+    Thread.sleep(80);
+    assertTrue(circuitBreaker.tryAcquirePermission());
+    assertTrue(circuitBreaker.tryAcquirePermission());
+    assertFalse(circuitBreaker.tryAcquirePermission());
+    assertEquals(CircuitState.HALF_OPEN, circuitBreaker.getState());
+    circuitBreaker.onSuccess();
+    circuitBreaker.onSuccess();
+    assertEquals(CircuitState.CLOSED, circuitBreaker.getState());
+    assertTrue(circuitBreaker.tryAcquirePermission());
+  }
+
+  @Test
+  public void testFailedProbeReopens() throws Exception {
+    CircuitBreaker circuitBreaker = new CircuitBreaker(new CircuitBreakerConfig(1, 1, 1, TimeUnit.MINUTES,
+      20, TimeUnit.MILLISECONDS, 1, OpenCircuitBehavior.HOLD));
+    circuitBreaker.onFailure();
+    assertEquals(CircuitState.OPEN, circuitBreaker.getState());
+    Thread.sleep(40);
+    assertTrue(circuitBreaker.tryAcquirePermission());
+    circuitBreaker.onFailure();
+    assertEquals(CircuitState.OPEN, circuitBreaker.getState());
+    assertFalse(circuitBreaker.tryAcquirePermission());
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.cluster;
+
+import com.mrhampson.retryexecutor.RetryExecutor;
+import com.mrhampson.retryexecutor.circuitbreaker.CircuitBreakerConfig;
+import com.mrhampson.retryexecutor.circuitbreaker.CircuitBreakerRegistry;
+import com.mrhampson.retryexecutor.circuitbreaker.CircuitState;
+import com.mrhampson.retryexecutor.circuitbreaker.OpenCircuitBehavior;
+import com.mrhampson.retryexecutor.strategies.ConstantPolicy;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class ClusterCoordinationTest {
+
+  @Test
+  public void testBudgetIsSharedByAllNodes() {
+    LoopbackCoordinator coordinator = new LoopbackCoordinator();
+    List<ClusterRetryBudget> budgets = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      budgets.add(new ClusterRetryBudget(coordinator, "budget", 0.5, 0, 1000, 1, 0, TimeUnit.MILLISECONDS));
+    }
+    for (ClusterRetryBudget budget : budgets) {
+      for (int i = 0; i < 10; i++) {
+        budget.onFirstAttempt("key");
+      }
+    }
+    int retries = 0;
+    boolean granted = true;
+    while (granted) {
+      granted = false;
+      for (ClusterRetryBudget budget : budgets) {
+        if (budget.tryAcquireRetry("key")) {
+          retries++;
+          granted = true;
+        }
+      }
+    }
+    assertEquals(20, retries);
+  }
+
+  @Test
+  public void testRateLimitPermitsAreSpacedAcrossNodes() {
+    LoopbackCoordinator coordinator = new LoopbackCoordinator();
+    List<ClusterRateLimiter> rateLimiters = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      rateLimiters.add(new ClusterRateLimiter(coordinator, "limiter", 100, 1, TimeUnit.SECONDS, 1, 4));
+    }
+    List<Long> dueNanos = new ArrayList<>();
+    for (int i = 0; i < 30; i++) {
+      dueNanos.add(System.nanoTime() + rateLimiters.get(i % 3).reservePermit("key"));
+    }
+    Collections.sort(dueNanos);
+    // Ten permits span ten intervals. The slack covers a slow call skewing a due time, and a first permit that was
+    // already due when it was taken
+    for (int i = 10; i < dueNanos.size(); i++) {
+      assertTrue(dueNanos.get(i) - dueNanos.get(i - 10) >= TimeUnit.MILLISECONDS.toNanos(80));
+    }
+    assertTrue(coordinator.getCallCount() <= 15);
+  }
+
+  @Test
+  public void testExecutorsRespectOneRateLimit() throws Exception {
+    LoopbackCoordinator coordinator = new LoopbackCoordinator();
+    List<ScheduledExecutorService> executorServices = new ArrayList<>();
+    List<CompletableFuture<Long>> futures = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+      executorServices.add(executorService);
+      RetryExecutor retryExecutor = RetryExecutor.builder(executorService)
+        .rateLimiter(new ClusterRateLimiter(coordinator, "limiter", 20, 1, TimeUnit.SECONDS, 1, 10))
+        .build();
+      for (int j = 0; j < 10; j++) {
+        futures.add(retryExecutor.submit(System::nanoTime, new ConstantPolicy(1, TimeUnit.MILLISECONDS, 1)));
+      }
+    }
+    List<Long> startNanos = new ArrayList<>();
+    for (CompletableFuture<Long> future : futures) {
+      startNanos.add(future.get(10, TimeUnit.SECONDS));
+    }
+    Collections.sort(startNanos);
+    // 30 tries at 20 per second across all executors, each executor alone would have been done in half a second
+    assertTrue(startNanos.get(29) - startNanos.get(0) >= TimeUnit.MILLISECONDS.toNanos(1300));
+    for (ScheduledExecutorService executorService : executorServices) {
+      executorService.shutdown();
+    }
+  }
+
+  @Test
+  public void testBreakerOpenOnOneNodeRefusesTheOthers() {
+    LoopbackCoordinator coordinator = new LoopbackCoordinator();
+    CircuitBreakerConfig config = new CircuitBreakerConfig(0.5, 2, 10, TimeUnit.SECONDS, 10, TimeUnit.SECONDS, 1,
+      OpenCircuitBehavior.HOLD);
+    CircuitBreakerRegistry registry = new CircuitBreakerRegistry(config,
+      (key, keyConfig) -> new ClusterCircuitBreaker(coordinator, "breaker-" + key, keyConfig, 0, TimeUnit.SECONDS));
+    ClusterCircuitBreaker failing = (ClusterCircuitBreaker)registry.circuitBreakerFor("key", config);
+    ClusterCircuitBreaker other =
+      new ClusterCircuitBreaker(coordinator, "breaker-key", config, 0, TimeUnit.SECONDS);
+    assertTrue(other.tryAcquirePermission());
+    failing.onFailure();
+    failing.onFailure();
+    assertEquals(CircuitState.OPEN, failing.getState());
+    assertFalse(other.tryAcquirePermission());
+    assertEquals(CircuitState.CLOSED, other.getState());
+    assertTrue(other.getMillisUntilNextPermission() > TimeUnit.SECONDS.toMillis(5));
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.hedging;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class HedgePolicyTest {
+
+  @Test
+  public void testFixedDelay() {
+    HedgePolicy hedgePolicy = HedgePolicy.afterDelay(25, TimeUnit.MILLISECONDS, 2);
+    hedgePolicy.recordLatency(TimeUnit.SECONDS.toNanos(1));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(25), hedgePolicy.getHedgeDelayNanos());
+    assertEquals(2, hedgePolicy.getMaxHedges());
+  }
+
+  @Test
+  public void testPercentileIsLearnedFromLastWindow() throws Exception {
+    long windowNanos = TimeUnit.MILLISECONDS.toNanos(50);
+    HedgePolicy hedgePolicy = new HedgePolicy(95, windowNanos, TimeUnit.MILLISECONDS.toNanos(500), 1);
+    for (int i = 1; i <= 100; i++) {
+      hedgePolicy.recordLatency(TimeUnit.MILLISECONDS.toNanos(i));
+    }
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(500), hedgePolicy.getHedgeDelayNanos());
+    Thread.sleep(60);
+    long learned = hedgePolicy.getHedgeDelayNanos();
+    assertTrue(learned >= TimeUnit.MILLISECONDS.toNanos(88));
+    assertTrue(learned <= TimeUnit.MILLISECONDS.toNanos(95));
+  }
+
+  @Test
+  public void testWindowWithFewLatenciesKeepsDelay() throws Exception {
+    long windowNanos = TimeUnit.MILLISECONDS.toNanos(50);
+    HedgePolicy hedgePolicy = new HedgePolicy(95, windowNanos, TimeUnit.MILLISECONDS.toNanos(500), 1);
+    hedgePolicy.recordLatency(TimeUnit.MILLISECONDS.toNanos(1));
+    Thread.sleep(60);
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(500), hedgePolicy.getHedgeDelayNanos());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPercentileMustBeBelow100() {
+    HedgePolicy.atPercentile(100, 1, TimeUnit.MILLISECONDS, 1);
+  }
+}
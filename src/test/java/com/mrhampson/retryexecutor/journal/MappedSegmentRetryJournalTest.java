@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.journal;
+
+import com.mrhampson.retryexecutor.RetryExecutor;
+import com.mrhampson.retryexecutor.annotations.RetryWithFixedDelay;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class MappedSegmentRetryJournalTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testPendingTasksSurviveReopen() throws Exception {
+    Path directory = folder.getRoot().toPath();
+    try (MappedSegmentRetryJournal journal = new MappedSegmentRetryJournal(directory)) {
+      long first = journal.nextTaskId();
+      long second = journal.nextTaskId();
+      journal.recordPending(first, "first", 1, 100, 1_000);
+      journal.recordPending(second, "second", 1, 100, 2_000);
+      journal.recordPending(first, "first", 2, 200, 3_000);
+      journal.recordCompleted(second);
+    }
+    try (MappedSegmentRetryJournal journal = new MappedSegmentRetryJournal(directory)) {
+      List<JournaledTask> pendingTasks = journal.pendingTasks();
+      assertEquals(1, pendingTasks.size());
+      assertEquals("first", pendingTasks.get(0).getTask());
+      assertEquals(2, pendingTasks.get(0).getFailedAttempts());
+      assertEquals(200, pendingTasks.get(0).getPreviousDelayMillis());
+      assertEquals(3_000, pendingTasks.get(0).getDueEpochMillis());
+      assertTrue(journal.nextTaskId() > 2);
+    }
+  }
+
+  @Test
+  public void testUnreadableTaskIsSkippedAndCompleted() throws Exception {
+    Path directory = folder.getRoot().toPath();
+    try (MappedSegmentRetryJournal journal = new MappedSegmentRetryJournal(directory)) {
+      journal.recordPending(journal.nextTaskId(), "bad", 1, 100, 1_000);
+      journal.recordPending(journal.nextTaskId(), "good", 1, 100, 2_000);
+    }
+    TaskSerializer rejectingBad = new JavaTaskSerializer() {
+      @Override
+      public Object deserialize(byte[] bytes) {
+        Object task = super.deserialize(bytes);
+        if ("bad".equals(task)) {
+          throw new IllegalArgumentException("Thrown on purpose");
+        }
+        return task;
+      }
+    };
+    try (MappedSegmentRetryJournal journal =
+           new MappedSegmentRetryJournal(directory, 16 * 1024 * 1024, 10, TimeUnit.MILLISECONDS, rejectingBad)) {
+      List<JournaledTask> pendingTasks = journal.pendingTasks();
+      assertEquals(1, pendingTasks.size());
+      assertEquals("good", pendingTasks.get(0).getTask());
+    }
+    try (MappedSegmentRetryJournal journal = new MappedSegmentRetryJournal(directory)) {
+      List<JournaledTask> pendingTasks = journal.pendingTasks();
+      assertEquals(1, pendingTasks.size());
+      assertEquals("good", pendingTasks.get(0).getTask());
+    }
+  }
+
+  @Test
+  public void testCompactionDropsOldSegments() throws Exception {
+    Path directory = folder.getRoot().toPath();
+    try (MappedSegmentRetryJournal journal =
+           new MappedSegmentRetryJournal(directory, 1024, 1, TimeUnit.MILLISECONDS, new JavaTaskSerializer())) {
+      long keep = journal.nextTaskId();
+      journal.recordPending(keep, "keep", 1, 10, 10);
+      for (int i = 0; i < 200; i++) {
+        long taskId = journal.nextTaskId();
+        journal.recordPending(taskId, "task-" + i, 1, 10, 10);
+        journal.recordCompleted(taskId);
+      }
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (segmentCount(directory) > 2 && System.nanoTime() < deadline) {
+        Thread.sleep(5);
+      }
+      assertTrue(segmentCount(directory) <= 2);
+    }
+    try (MappedSegmentRetryJournal journal =
+           new MappedSegmentRetryJournal(directory, 1024, 1, TimeUnit.MILLISECONDS, new JavaTaskSerializer())) {
+      List<JournaledTask> pendingTasks = journal.pendingTasks();
+      assertEquals(1, pendingTasks.size());
+      assertEquals("keep", pendingTasks.get(0).getTask());
+    }
+  }
+
+  @Test
+  public void testExecutorRecoversTaskAfterRestart() throws Exception {
+    Path directory = folder.getRoot().toPath();
+    ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    try (MappedSegmentRetryJournal journal = new MappedSegmentRetryJournal(directory)) {
+      RetryExecutor retryExecutor = RetryExecutor.builder(executorService).retryJournal(journal).build();
+      retryExecutor.execute(new DurableRunnable());
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (journal.pendingTasks().isEmpty() && System.nanoTime() < deadline) {
+        Thread.sleep(5);
+      }
+      assertEquals(1, journal.pendingTasks().size());
+      // The process dies while the task waits for its retry
+      executorService.shutdownNow();
+    }
+    assertEquals(1, DurableRunnable.TRIES.get());
+
+    executorService = Executors.newSingleThreadScheduledExecutor();
+    try (MappedSegmentRetryJournal journal = new MappedSegmentRetryJournal(directory)) {
+      RetryExecutor retryExecutor = RetryExecutor.builder(executorService).retryJournal(journal).build();
+      assertEquals(1, retryExecutor.recoverJournaledTasks());
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (!journal.pendingTasks().isEmpty() && System.nanoTime() < deadline) {
+        Thread.sleep(5);
+      }
+      assertEquals(2, DurableRunnable.TRIES.get());
+      assertTrue(journal.pendingTasks().isEmpty());
+    }
+    finally {
+      executorService.shutdown();
+    }
+  }
+
+  @Test
+  public void testTaskKeepsRetryingWhenJournalCloses() throws Exception {
+    ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    try {
+      MappedSegmentRetryJournal journal = new MappedSegmentRetryJournal(folder.getRoot().toPath());
+      RetryExecutor retryExecutor = RetryExecutor.builder(executorService).retryJournal(journal).build();
+      journal.close();
+      ClosedJournalRunnable task = new ClosedJournalRunnable();
+      retryExecutor.execute(task);
+      assertTrue(task.finished.await(5, TimeUnit.SECONDS));
+      assertEquals(2, task.tries.get());
+    }
+    finally {
+      executorService.shutdown();
+    }
+  }
+
+  private static long segmentCount(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.count();
+    }
+  }
+
+  @RetryWithFixedDelay(delay = 200, delayUnit = TimeUnit.MILLISECONDS, maxTries = 3)
+  static class DurableRunnable implements Runnable, Serializable {
+    static final AtomicInteger TRIES = new AtomicInteger();
+
+    @Override
+    public void run() {
+      if (TRIES.incrementAndGet() < 2) {
+        throw new IllegalStateException("Thrown on purpose");
+      }
+    }
+  }
+
+  @RetryWithFixedDelay(delay = 10, delayUnit = TimeUnit.MILLISECONDS, maxTries = 3)
+  static class ClosedJournalRunnable implements Runnable, Serializable {
+    final transient AtomicInteger tries = new AtomicInteger();
+    final transient CountDownLatch finished = new CountDownLatch(1);
+
+    @Override
+    public void run() {
+      if (this.tries.incrementAndGet() < 2) {
+        throw new IllegalStateException("Thrown on purpose");
+      }
+      this.finished.countDown();
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.metrics;
+
+import com.mrhampson.retryexecutor.RetryExecutor;
+import com.mrhampson.retryexecutor.exceptions.RetryExhaustedException;
+import com.mrhampson.retryexecutor.scheduling.ThreadPerTaskScheduler;
+import com.mrhampson.retryexecutor.strategies.ConstantPolicy;
+import org.junit.Test;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RetryMetricsTest {
+
+  @Test
+  public void testCountsTriesOfSucceedingTask() throws Exception {
+    ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    RetryMetrics metrics = new RetryMetrics();
+    RetryExecutor retryExecutor = RetryExecutor.builder(executorService).retryListener(metrics).build();
+    FlakyCallable callable = new FlakyCallable(3);
+    assertEquals("done", retryExecutor.submit(callable, new ConstantPolicy(1, TimeUnit.MILLISECONDS, 5))
+      .get(5, TimeUnit.SECONDS));
+    executorService.shutdown();
+    assertTrue(executorService.awaitTermination(5, TimeUnit.SECONDS));
+
+    TaskMetrics taskMetrics = metrics.forTaskClass(FlakyCallable.class);
+    assertEquals(3, taskMetrics.getAttempts());
+    assertEquals(2, taskMetrics.getFailures());
+    assertEquals(2, taskMetrics.getRetriesScheduled());
+    assertEquals(1, taskMetrics.getSuccesses());
+    assertEquals(0, taskMetrics.getExhausted());
+    assertEquals(0, taskMetrics.getInBackoff());
+    assertEquals(3, taskMetrics.getTriesPerSuccess().getMax());
+    assertEquals(2, taskMetrics.getBackoffDelayMillis().getCount());
+  }
+
+  @Test
+  public void testCountsExhaustedTask() throws Exception {
+    ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    RetryMetrics metrics = new RetryMetrics();
+    RetryExecutor retryExecutor = RetryExecutor.builder(executorService).retryListener(metrics).build();
+    try {
+      retryExecutor.submit(new FlakyCallable(10), new ConstantPolicy(1, TimeUnit.MILLISECONDS, 2))
+        .get(5, TimeUnit.SECONDS);
+      fail();
+    }
+    catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RetryExhaustedException);
+    }
+    executorService.shutdown();
+    assertTrue(executorService.awaitTermination(5, TimeUnit.SECONDS));
+
+    TaskMetrics taskMetrics = metrics.forTaskClass(FlakyCallable.class);
+    assertEquals(3, taskMetrics.getAttempts());
+    assertEquals(2, taskMetrics.getRetriesScheduled());
+    assertEquals(0, taskMetrics.getSuccesses());
+    assertEquals(1, taskMetrics.getExhausted());
+    assertEquals(0, taskMetrics.getInBackoff());
+  }
+
+  @Test
+  public void testInterruptedBackoffLeavesNothingInBackoff() throws Exception {
+    RetryMetrics metrics = new RetryMetrics();
+    RetryExecutor retryExecutor = RetryExecutor.builder(new ThreadPerTaskScheduler(Thread::new))
+      .retryListener(metrics)
+      .build();
+    BlockingQueue<Thread> threads = new LinkedBlockingQueue<>();
+    Callable<String> task = () -> {
+      threads.add(Thread.currentThread());
+      throw new IllegalStateException("Thrown on purpose");
+    };
+    CompletableFuture<String> future = retryExecutor.submit(task, new ConstantPolicy(1, TimeUnit.MINUTES, 5));
+    Thread thread = threads.poll(5, TimeUnit.SECONDS);
+    assertNotNull(thread);
+    Thread.sleep(50);
+    thread.interrupt();
+    try {
+      future.get(5, TimeUnit.SECONDS);
+      fail();
+    }
+    catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RetryExhaustedException);
+    }
+
+    TaskMetrics taskMetrics = metrics.forTaskClass(task.getClass());
+    assertEquals(1, taskMetrics.getExhausted());
+    assertEquals(0, taskMetrics.getInBackoff());
+  }
+
+  @Test
+  public void testHistogramPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i);
+    }
+    assertEquals(1000, histogram.getCount());
+    assertEquals(1000, histogram.getMax());
+    long median = histogram.getValueAtPercentile(50);
+    assertTrue(median >= 470 && median <= 530);
+    long p99 = histogram.getValueAtPercentile(99);
+    assertTrue(p99 >= 940 && p99 <= 1000);
+  }
+
+  static class FlakyCallable implements Callable<String> {
+    private final int succeedOnTry;
+    private final AtomicInteger tries = new AtomicInteger();
+
+    FlakyCallable(int succeedOnTry) {
+      this.succeedOnTry = succeedOnTry;
+    }
+
+    @Override
+    public String call() {
+      if (this.tries.incrementAndGet() < this.succeedOnTry) {
+        throw new IllegalStateException("Thrown on purpose");
+      }
+      return "done";
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.ratelimit;
+
+import com.mrhampson.retryexecutor.RetryExecutor;
+import com.mrhampson.retryexecutor.annotations.RetryWithRateLimit;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class GcraRateLimiterTest {
+
+  @Test
+  public void testBurstThenEvenSpacing() {
+    GcraRateLimiter rateLimiter = new GcraRateLimiter(10, 1, TimeUnit.SECONDS, 3);
+    assertEquals(0, rateLimiter.reservePermit(null));
+    assertEquals(0, rateLimiter.reservePermit(null));
+    assertEquals(0, rateLimiter.reservePermit(null));
+    long fourth = rateLimiter.reservePermit(null);
+    long fifth = rateLimiter.reservePermit(null);
+    assertTrue(fourth > TimeUnit.MILLISECONDS.toNanos(90) && fourth <= TimeUnit.MILLISECONDS.toNanos(100));
+    assertTrue(fifth > TimeUnit.MILLISECONDS.toNanos(190) && fifth <= TimeUnit.MILLISECONDS.toNanos(200));
+  }
+
+  @Test
+  public void testKeyedLimitersAreIndependent() {
+    KeyedRateLimiter rateLimiter = new KeyedRateLimiter(() -> new GcraRateLimiter(1, 1, TimeUnit.MINUTES, 1));
+    assertEquals(0, rateLimiter.reservePermit("a"));
+    assertEquals(0, rateLimiter.reservePermit("b"));
+    assertTrue(rateLimiter.reservePermit("a") > 0);
+  }
+
+  @Test
+  public void testAnnotatedTasksWaitForTheirPermits() throws Exception {
+    ScheduledExecutorService executorService = Executors.newScheduledThreadPool(2);
+    RetryExecutor retryExecutor = new RetryExecutor(executorService);
+    long start = System.nanoTime();
+    List<CompletableFuture<Long>> futures = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      futures.add(retryExecutor.submit(new LimitedCallable()));
+    }
+    for (CompletableFuture<Long> future : futures) {
+      future.get(5, TimeUnit.SECONDS);
+    }
+    // 100 permits a second without a burst spaces the five tries at least 40ms apart end to end
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+    executorService.shutdown();
+  }
+
+  @RetryWithRateLimit(permits = 100)
+  static class LimitedCallable implements Callable<Long> {
+    @Override
+    public Long call() {
+      return System.nanoTime();
+    }
+  }
+}
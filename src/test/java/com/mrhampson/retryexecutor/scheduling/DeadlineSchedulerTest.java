@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.scheduling;
+
+import com.mrhampson.retryexecutor.RetryExecutor;
+import com.mrhampson.retryexecutor.strategies.ConstantPolicy;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DeadlineSchedulerTest {
+
+  @Test
+  public void testEarliestDeadlineRunsFirst() throws Exception {
+    try (DeadlineScheduler scheduler = new DeadlineScheduler(1)) {
+      CountDownLatch release = blockWorker(scheduler);
+      List<String> ran = Collections.synchronizedList(new ArrayList<>());
+      CountDownLatch done = new CountDownLatch(4);
+      long now = System.nanoTime();
+      scheduler.execute(new Task(ran, "late", now + TimeUnit.SECONDS.toNanos(30), 0, done));
+      scheduler.execute(new Task(ran, "none", 0, 0, done));
+      scheduler.execute(new Task(ran, "soon", now + TimeUnit.MILLISECONDS.toNanos(500), 0, done));
+      scheduler.execute(new Task(ran, "later", now + TimeUnit.SECONDS.toNanos(10), 0, done));
+      assertEquals(4, scheduler.getQueuedTasks());
+      release.countDown();
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+      // A task without a deadline is due a second after it became ready
+      assertEquals(Arrays.asList("soon", "none", "later", "late"), ran);
+    }
+  }
+
+  @Test
+  public void testFailedTriesAgeTheDeadline() throws Exception {
+    try (DeadlineScheduler scheduler = new DeadlineScheduler(1, 1, 1, TimeUnit.SECONDS)) {
+      CountDownLatch release = blockWorker(scheduler);
+      List<String> ran = Collections.synchronizedList(new ArrayList<>());
+      CountDownLatch done = new CountDownLatch(3);
+      long now = System.nanoTime();
+      scheduler.execute(new Task(ran, "fresh", now + TimeUnit.SECONDS.toNanos(2), 0, done));
+      scheduler.execute(new Task(ran, "third retry", now + TimeUnit.SECONDS.toNanos(4), 3, done));
+      scheduler.execute(new Task(ran, "first retry", now + TimeUnit.MILLISECONDS.toNanos(3500), 1, done));
+      release.countDown();
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+      assertEquals(Arrays.asList("third retry", "fresh", "first retry"), ran);
+    }
+  }
+
+  @Test
+  public void testRetryExecutorRetriesByDeadline() throws Exception {
+    try (DeadlineScheduler scheduler = new DeadlineScheduler(2)) {
+      RetryExecutor retryExecutor = new RetryExecutor(scheduler);
+      AtomicInteger tries = new AtomicInteger();
+      CompletableFuture<String> future = retryExecutor.submit(() -> {
+        if (tries.incrementAndGet() < 3) {
+          throw new IllegalStateException("Thrown on purpose");
+        }
+        return "Hello";
+      }, new ConstantPolicy(1, TimeUnit.MILLISECONDS, 5).withTimeouts(0, 5, TimeUnit.SECONDS));
+      assertEquals("Hello", future.get(5, TimeUnit.SECONDS));
+      assertEquals(3, tries.get());
+    }
+  }
+
+  @Test(expected = RejectedExecutionException.class)
+  public void testClosedSchedulerRejectsTasks() {
+    DeadlineScheduler scheduler = new DeadlineScheduler(1);
+    scheduler.close();
+    scheduler.execute(() -> { });
+  }
+
+  private static CountDownLatch blockWorker(DeadlineScheduler scheduler) throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    scheduler.execute(() -> {
+      started.countDown();
+      try {
+        release.await();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    return release;
+  }
+
+  private static final class Task implements Runnable, DeadlineAware {
+    private final List<String> ran;
+    private final String name;
+    private final long deadlineNanos;
+    private final int failedAttempts;
+    private final CountDownLatch done;
+
+    private Task(List<String> ran, String name, long deadlineNanos, int failedAttempts, CountDownLatch done) {
+      this.ran = ran;
+      this.name = name;
+      this.deadlineNanos = deadlineNanos;
+      this.failedAttempts = failedAttempts;
+      this.done = done;
+    }
+
+    @Override
+    public void run() {
+      this.ran.add(this.name);
+      this.done.countDown();
+    }
+
+    @Override
+    public long getDeadlineNanos() {
+      return this.deadlineNanos;
+    }
+
+    @Override
+    public int getFailedAttempts() {
+      return this.failedAttempts;
+    }
+  }
+}
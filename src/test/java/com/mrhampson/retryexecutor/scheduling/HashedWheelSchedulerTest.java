@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.scheduling;
+
+import com.mrhampson.retryexecutor.OverflowPolicy;
+import com.mrhampson.retryexecutor.RetryCapacity;
+import com.mrhampson.retryexecutor.RetryExecutor;
+import com.mrhampson.retryexecutor.strategies.ConstantPolicy;
+import org.junit.Test;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class HashedWheelSchedulerTest {
+
+  @Test
+  public void testTasksRunAfterTheirDelayAcrossWheels() throws Exception {
+    ExecutorService workers = Executors.newFixedThreadPool(2);
+    try (HashedWheelScheduler scheduler = new HashedWheelScheduler(workers, 1, TimeUnit.MILLISECONDS, 4)) {
+      int taskCount = 200;
+      CountDownLatch latch = new CountDownLatch(taskCount);
+      AtomicInteger early = new AtomicInteger();
+      for (int i = 0; i < taskCount; i++) {
+        long delayMillis = i % 150;
+        long scheduledAt = System.nanoTime();
+        scheduler.schedule(() -> {
+          if (System.nanoTime() - scheduledAt < TimeUnit.MILLISECONDS.toNanos(delayMillis)) {
+            early.incrementAndGet();
+          }
+          latch.countDown();
+        }, delayMillis, TimeUnit.MILLISECONDS);
+      }
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+      assertEquals(0, early.get());
+    }
+    finally {
+      workers.shutdown();
+    }
+  }
+
+  @Test
+  public void testCancelledTaskDoesNotRun() throws Exception {
+    ExecutorService workers = Executors.newSingleThreadExecutor();
+    try (HashedWheelScheduler scheduler = new HashedWheelScheduler(workers, 1, TimeUnit.MILLISECONDS, 8)) {
+      AtomicInteger runs = new AtomicInteger();
+      Cancellable cancellable = scheduler.schedule(runs::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+      assertTrue(cancellable.cancel());
+      assertFalse(cancellable.cancel());
+      Thread.sleep(150);
+      assertEquals(0, runs.get());
+    }
+    finally {
+      workers.shutdown();
+    }
+  }
+
+  @Test
+  public void testRescheduleFromRunReusesEntry() throws Exception {
+    ExecutorService workers = Executors.newSingleThreadExecutor();
+    try (HashedWheelScheduler scheduler = new HashedWheelScheduler(workers, 1, TimeUnit.MILLISECONDS, 8)) {
+      AtomicInteger runs = new AtomicInteger();
+      CountDownLatch latch = new CountDownLatch(1);
+      Cancellable[] handles = new Cancellable[3];
+      Runnable task = new Runnable() {
+        @Override
+        public void run() {
+          int run = runs.incrementAndGet();
+          if (run < handles.length) {
+            handles[run] = scheduler.reschedule(handles[run - 1], this, 5, TimeUnit.MILLISECONDS, null);
+          }
+          else {
+            latch.countDown();
+          }
+        }
+      };
+      handles[0] = scheduler.schedule(task, 5, TimeUnit.MILLISECONDS);
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+      assertSame(handles[0], handles[1]);
+      assertSame(handles[0], handles[2]);
+      // A pending entry can't be reused, rescheduling it schedules the task again
+      Cancellable pending = scheduler.schedule(task, 1, TimeUnit.SECONDS);
+      Cancellable other = scheduler.reschedule(pending, task, 1, TimeUnit.SECONDS, null);
+      assertNotSame(pending, other);
+      assertTrue(pending.cancel());
+      assertTrue(other.cancel());
+    }
+    finally {
+      workers.shutdown();
+    }
+  }
+
+  @Test
+  public void testRetryPendingWhenWorkersShutDownGivesUp() throws Exception {
+    ExecutorService workers = Executors.newSingleThreadExecutor();
+    try (HashedWheelScheduler scheduler = new HashedWheelScheduler(workers, 1, TimeUnit.MILLISECONDS, 8)) {
+      RetryCapacity capacity = new RetryCapacity(1, OverflowPolicy.REJECT);
+      RetryExecutor retryExecutor = RetryExecutor.builder(scheduler).capacity(capacity).build();
+      CountDownLatch firstTry = new CountDownLatch(1);
+      CompletableFuture<String> future = retryExecutor.submit(() -> {
+        firstTry.countDown();
+        throw new IllegalStateException("Thrown on purpose");
+      }, new ConstantPolicy(100, TimeUnit.MILLISECONDS, 5));
+      assertTrue(firstTry.await(5, TimeUnit.SECONDS));
+      workers.shutdown();
+      try {
+        future.get(5, TimeUnit.SECONDS);
+        fail("Expected the retry to be rejected");
+      }
+      catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+      }
+      assertEquals(0, capacity.getDepth());
+    }
+    finally {
+      workers.shutdown();
+    }
+  }
+
+  @Test
+  public void testThrowingTaskDoesNotStopTimer() throws Exception {
+    Thread.UncaughtExceptionHandler defaultHandler = Thread.getDefaultUncaughtExceptionHandler();
+    BlockingQueue<Throwable> reported = new LinkedBlockingQueue<>();
+    Thread.setDefaultUncaughtExceptionHandler((thread, failure) -> reported.add(failure));
+    try (HashedWheelScheduler scheduler = new HashedWheelScheduler(Runnable::run, 1, TimeUnit.MILLISECONDS, 8)) {
+      IllegalStateException failure = new IllegalStateException("Thrown on purpose");
+      scheduler.schedule(() -> {
+        throw failure;
+      }, 5, TimeUnit.MILLISECONDS);
+      assertSame(failure, reported.poll(5, TimeUnit.SECONDS));
+      CountDownLatch ran = new CountDownLatch(1);
+      scheduler.schedule(ran::countDown, 5, TimeUnit.MILLISECONDS);
+      assertTrue(ran.await(5, TimeUnit.SECONDS));
+    }
+    finally {
+      Thread.setDefaultUncaughtExceptionHandler(defaultHandler);
+    }
+  }
+
+  @Test
+  public void testRetryExecutorOnWheel() throws Exception {
+    ExecutorService workers = Executors.newFixedThreadPool(2);
+    try (HashedWheelScheduler scheduler = new HashedWheelScheduler(workers)) {
+      RetryExecutor retryExecutor = new RetryExecutor(scheduler);
+      AtomicInteger tries = new AtomicInteger();
+      CompletableFuture<Integer> future = retryExecutor.submit(() -> {
+        if (tries.incrementAndGet() < 4) {
+          throw new IllegalStateException("Thrown on purpose");
+        }
+        return tries.get();
+      }, new ConstantPolicy(20, TimeUnit.MILLISECONDS, 5));
+      assertEquals(Integer.valueOf(4), future.get(5, TimeUnit.SECONDS));
+    }
+    finally {
+      workers.shutdown();
+    }
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.scheduling;
+
+import com.mrhampson.retryexecutor.RetryExecutor;
+import com.mrhampson.retryexecutor.strategies.ConstantPolicy;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class LaneSchedulerTest {
+
+  @Test
+  public void testKeysTakeTurns() throws Exception {
+    try (LaneScheduler scheduler = new LaneScheduler(1)) {
+      CountDownLatch release = blockWorker(scheduler);
+      List<String> ran = Collections.synchronizedList(new ArrayList<>());
+      CountDownLatch done = new CountDownLatch(12);
+      for (int i = 0; i < 10; i++) {
+        scheduler.execute(run(ran, "A", done), "A");
+      }
+      scheduler.execute(run(ran, "B", done), "B");
+      scheduler.execute(run(ran, "B", done), "B");
+      release.countDown();
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+      assertEquals(Arrays.asList("A", "B", "A", "B", "A"), ran.subList(0, 5));
+    }
+  }
+
+  @Test
+  public void testKeyWeightsGiveTurnsInARow() throws Exception {
+    try (LaneScheduler scheduler = new LaneScheduler(1, 1, 1, key -> "A".equals(key) ? 2 : 1)) {
+      CountDownLatch release = blockWorker(scheduler);
+      List<String> ran = Collections.synchronizedList(new ArrayList<>());
+      CountDownLatch done = new CountDownLatch(6);
+      for (int i = 0; i < 4; i++) {
+        scheduler.execute(run(ran, "A", done), "A");
+      }
+      scheduler.execute(run(ran, "B", done), "B");
+      scheduler.execute(run(ran, "B", done), "B");
+      release.countDown();
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+      assertEquals(Arrays.asList("A", "A", "B", "A", "A", "B"), ran);
+    }
+  }
+
+  @Test
+  public void testRetriesWaitForFirstTriesWithoutWeight() throws Exception {
+    try (LaneScheduler scheduler = new LaneScheduler(1, 1, 0, key -> 1)) {
+      CountDownLatch release = blockWorker(scheduler);
+      List<String> ran = Collections.synchronizedList(new ArrayList<>());
+      CountDownLatch done = new CountDownLatch(6);
+      for (int i = 0; i < 3; i++) {
+        scheduler.schedule(run(ran, "retry", done), 0, TimeUnit.MILLISECONDS, "A");
+      }
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (scheduler.getQueuedRetries() < 3 && System.nanoTime() < deadline) {
+        Thread.sleep(5);
+      }
+      for (int i = 0; i < 3; i++) {
+        scheduler.execute(run(ran, "first", done), "B");
+      }
+      assertEquals(3, scheduler.getQueuedFirstTries());
+      release.countDown();
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+      assertEquals(Arrays.asList("first", "first", "first", "retry", "retry", "retry"), ran);
+    }
+  }
+
+  @Test
+  public void testRetryExecutorRetriesOnLanes() throws Exception {
+    try (LaneScheduler scheduler = new LaneScheduler(2)) {
+      RetryExecutor retryExecutor = new RetryExecutor(scheduler);
+      AtomicInteger tries = new AtomicInteger();
+      CompletableFuture<String> future = retryExecutor.submit(() -> {
+        if (tries.incrementAndGet() < 3) {
+          throw new IllegalStateException("Thrown on purpose");
+        }
+        return "Hello";
+      }, new ConstantPolicy(1, TimeUnit.MILLISECONDS, 5));
+      assertEquals("Hello", future.get(5, TimeUnit.SECONDS));
+      assertEquals(3, tries.get());
+    }
+  }
+
+  private static CountDownLatch blockWorker(LaneScheduler scheduler) throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    scheduler.execute(() -> {
+      started.countDown();
+      try {
+        release.await();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    return release;
+  }
+
+  private static Runnable run(List<String> ran, String name, CountDownLatch done) {
+    return () -> {
+      ran.add(name);
+      done.countDown();
+    };
+  }
+}
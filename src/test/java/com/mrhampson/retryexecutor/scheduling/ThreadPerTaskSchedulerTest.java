@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.scheduling;
+
+import com.mrhampson.retryexecutor.OverflowPolicy;
+import com.mrhampson.retryexecutor.RetryCapacity;
+import com.mrhampson.retryexecutor.RetryExecutor;
+import com.mrhampson.retryexecutor.exceptions.RetryExhaustedException;
+import com.mrhampson.retryexecutor.strategies.ConstantPolicy;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ThreadPerTaskSchedulerTest {
+
+  @Test
+  public void testRetriesWaitOnTheTasksOwnThread() throws Exception {
+    RetryExecutor retryExecutor = new RetryExecutor(new ThreadPerTaskScheduler(Thread::new));
+    Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    AtomicInteger tries = new AtomicInteger();
+    CompletableFuture<String> future = retryExecutor.submit(() -> {
+      threads.add(Thread.currentThread());
+      if (tries.incrementAndGet() < 4) {
+        throw new IllegalStateException("Thrown on purpose");
+      }
+      return "done";
+    }, new ConstantPolicy(1, TimeUnit.MILLISECONDS, 5));
+    assertEquals("done", future.get(5, TimeUnit.SECONDS));
+    assertEquals(4, tries.get());
+    assertEquals(1, threads.size());
+  }
+
+  @Test
+  public void testCancelWakesTaskWaitingForItsNextTry() throws Exception {
+    RetryExecutor retryExecutor = new RetryExecutor(new ThreadPerTaskScheduler(Thread::new));
+    AtomicInteger tries = new AtomicInteger();
+    CountDownLatch firstTry = new CountDownLatch(1);
+    CompletableFuture<String> future = retryExecutor.submit(() -> {
+      tries.incrementAndGet();
+      firstTry.countDown();
+      throw new IllegalStateException("Thrown on purpose");
+    }, new ConstantPolicy(1, TimeUnit.MINUTES, 5));
+    assertTrue(firstTry.await(5, TimeUnit.SECONDS));
+    Thread.sleep(50);
+    assertTrue(future.cancel(false));
+    Thread.sleep(50);
+    assertEquals(1, tries.get());
+  }
+
+  @Test
+  public void testInterruptedWaitGivesUpAndFreesCapacity() throws Exception {
+    RetryCapacity capacity = new RetryCapacity(1, OverflowPolicy.REJECT);
+    RetryExecutor retryExecutor = RetryExecutor.builder(new ThreadPerTaskScheduler(Thread::new))
+      .capacity(capacity)
+      .build();
+    BlockingQueue<Thread> threads = new LinkedBlockingQueue<>();
+    CompletableFuture<String> future = retryExecutor.submit(() -> {
+      threads.add(Thread.currentThread());
+      throw new IllegalStateException("Thrown on purpose");
+    }, new ConstantPolicy(1, TimeUnit.MINUTES, 5));
+    Thread thread = threads.poll(5, TimeUnit.SECONDS);
+    assertNotNull(thread);
+    Thread.sleep(50);
+    thread.interrupt();
+    try {
+      future.get(5, TimeUnit.SECONDS);
+      fail("Expected the task to give up");
+    }
+    catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RetryExhaustedException);
+    }
+    assertEquals(0, capacity.getDepth());
+    assertEquals("done", retryExecutor.submit(() -> "done").get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testScheduledTaskCanBeCancelled() throws Exception {
+    ThreadPerTaskScheduler scheduler = new ThreadPerTaskScheduler(Thread::new);
+    CountDownLatch ran = new CountDownLatch(1);
+    Cancellable cancellable = scheduler.schedule(ran::countDown, 100, TimeUnit.MILLISECONDS);
+    assertTrue(cancellable.cancel());
+    assertFalse(cancellable.cancel());
+    assertFalse(ran.await(300, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testVirtualThreads() throws Exception {
+    Assume.assumeTrue(ThreadPerTaskScheduler.isVirtualThreadsSupported());
+    RetryExecutor retryExecutor = new RetryExecutor(ThreadPerTaskScheduler.ofVirtualThreads());
+    AtomicInteger tries = new AtomicInteger();
+    CompletableFuture<Integer> future = retryExecutor.submit(() -> {
+      if (tries.incrementAndGet() < 3) {
+        throw new IllegalStateException("Thrown on purpose");
+      }
+      return tries.get();
+    }, new ConstantPolicy(1, TimeUnit.MILLISECONDS, 5));
+    assertEquals(Integer.valueOf(3), future.get(5, TimeUnit.SECONDS));
+  }
+}
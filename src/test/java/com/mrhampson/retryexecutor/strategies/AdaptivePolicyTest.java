@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.strategies;
+
+import com.mrhampson.retryexecutor.exceptions.MaxTriesExceededException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AdaptivePolicyTest {
+
+  @Test
+  public void testFailuresWidenAndSuccessesNarrowTheDelay() {
+    AdaptivePolicy policy = new AdaptivePolicy(10, 100, TimeUnit.MILLISECONDS, 5);
+    assertEquals(10, policy.getCurrentDelayMillis("backend"));
+    policy.onTryFinished("backend", new IOException(), 0);
+    assertEquals(20, policy.getCurrentDelayMillis("backend"));
+    for (int i = 0; i < 10; i++) {
+      policy.onTryFinished("backend", new IOException(), 0);
+    }
+    assertEquals(100, policy.getCurrentDelayMillis("backend"));
+    policy.onTryFinished("backend", null, 0);
+    assertEquals(90, policy.getCurrentDelayMillis("backend"));
+    for (int i = 0; i < 20; i++) {
+      policy.onTryFinished("backend", null, 0);
+    }
+    assertEquals(10, policy.getCurrentDelayMillis("backend"));
+  }
+
+  @Test
+  public void testKeysAreIndependent() {
+    AdaptivePolicy policy = new AdaptivePolicy(10, 100, TimeUnit.MILLISECONDS, 5);
+    policy.onTryFinished("failing", new IOException(), 0);
+    policy.onTryFinished(null, new IOException(), 0);
+    policy.onTryFinished(null, new IOException(), 0);
+    assertEquals(20, policy.getCurrentDelayMillis("failing"));
+    assertEquals(10, policy.getCurrentDelayMillis("healthy"));
+    assertEquals(40, policy.getCurrentDelayMillis(null));
+  }
+
+  @Test
+  public void testSlowSuccessCountsAsFailure() {
+    AdaptivePolicy policy =
+      new AdaptivePolicy(10, 100, TimeUnit.MILLISECONDS, 1.5, 5, 5, 50, TimeUnit.MILLISECONDS);
+    policy.onTryFinished("backend", null, TimeUnit.MILLISECONDS.toNanos(80));
+    assertEquals(15, policy.getCurrentDelayMillis("backend"));
+    policy.onTryFinished("backend", null, TimeUnit.MILLISECONDS.toNanos(20));
+    assertEquals(10, policy.getCurrentDelayMillis("backend"));
+  }
+
+  @Test
+  public void testDelayIsJitteredAroundTheKeysDelay() throws Exception {
+    AdaptivePolicy policy = new AdaptivePolicy(10, 1000, TimeUnit.MILLISECONDS, 5);
+    for (int i = 0; i < 3; i++) {
+      policy.onTryFinished("backend", new IOException(), 0);
+    }
+    for (int i = 0; i < 100; i++) {
+      long delay = policy.getMillisDelayBeforeNextTry("backend", 1, 0, new IOException());
+      assertTrue(delay >= 40 && delay <= 80);
+    }
+  }
+
+  @Test(expected = MaxTriesExceededException.class)
+  public void testMaxTries() throws Exception {
+    new AdaptivePolicy(10, 100, TimeUnit.MILLISECONDS, 2).getMillisDelayBeforeNextTry("backend", 3, 0, null);
+  }
+
+  @Test
+  public void testDecoratorsForwardFeedback() {
+    AdaptivePolicy adaptive = new AdaptivePolicy(10, 100, TimeUnit.MILLISECONDS, 5);
+    RetryPolicy policy = adaptive
+      .withTimeouts(100, 0, TimeUnit.MILLISECONDS)
+      .honoringRetryAfter()
+      .retryIf(failure -> true);
+    assertTrue(policy.isAdaptive());
+    policy.onTryFinished("backend", new IOException(), 0);
+    assertEquals(20, adaptive.getCurrentDelayMillis("backend"));
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.strategies;
+
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ExceptionClassifierTest {
+
+  @Test
+  public void testMostSpecificClassWins() {
+    ExceptionClassifier classifier = ExceptionClassifier.of(
+      Collections.singletonList(IOException.class),
+      Collections.singletonList(FileNotFoundException.class));
+    assertTrue(classifier.isRetryable(new IOException()));
+    assertFalse(classifier.isRetryable(new FileNotFoundException()));
+    assertFalse(classifier.isRetryable(new IllegalStateException()));
+  }
+
+  @Test
+  public void testAbortOnlyRetriesEverythingElse() {
+    ExceptionClassifier classifier = ExceptionClassifier.of(
+      Collections.emptyList(),
+      Arrays.asList(IllegalArgumentException.class, UnsupportedOperationException.class));
+    assertFalse(classifier.isRetryable(new NumberFormatException()));
+    assertFalse(classifier.isRetryable(new UnsupportedOperationException()));
+    assertTrue(classifier.isRetryable(new UncheckedIOException(new IOException())));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testClassInBothListsIsRejected() {
+    ExceptionClassifier.of(
+      Collections.singletonList(IOException.class),
+      Collections.singletonList(IOException.class));
+  }
+
+  @Test
+  public void testRetryIfKeepsDelays() {
+    RetryPolicy policy = new ConstantPolicy(5, TimeUnit.MILLISECONDS, 3)
+      .retryIf(failure -> failure instanceof IOException);
+    assertTrue(policy.isRetryable(new IOException()));
+    assertFalse(policy.isRetryable(new IllegalStateException()));
+    assertEquals(5, policy.getMillisDelayBeforeNextTry(1, new IOException()));
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.strategies;
+
+import com.mrhampson.retryexecutor.exceptions.MaxTriesExceededException;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ExponentialPolicyTest {
+
+  @Test
+  public void testDelayGrowsExponentiallyUpToCap() {
+    ExponentialPolicy policy = new ExponentialPolicy(100, 1_000, TimeUnit.MILLISECONDS, 2, 10, JitterMode.NONE);
+    assertEquals(100, policy.getMillisDelayBeforeNextTry(1, null));
+    assertEquals(200, policy.getMillisDelayBeforeNextTry(2, null));
+    assertEquals(400, policy.getMillisDelayBeforeNextTry(3, null));
+    assertEquals(800, policy.getMillisDelayBeforeNextTry(4, null));
+    assertEquals(1_000, policy.getMillisDelayBeforeNextTry(5, null));
+    assertEquals(1_000, policy.getMillisDelayBeforeNextTry(10, null));
+  }
+
+  @Test(expected = MaxTriesExceededException.class)
+  public void testThrowsPastMaxTries() {
+    new ExponentialPolicy(100, TimeUnit.MILLISECONDS, 2, 3).getMillisDelayBeforeNextTry(4, null);
+  }
+
+  @Test
+  public void testJitteredDelaysStayInRange() {
+    ExponentialPolicy full = new ExponentialPolicy(100, 1_000, TimeUnit.MILLISECONDS, 2, 10, JitterMode.FULL);
+    ExponentialPolicy equal = new ExponentialPolicy(100, 1_000, TimeUnit.MILLISECONDS, 2, 10, JitterMode.EQUAL);
+    ExponentialPolicy decorrelated =
+      new ExponentialPolicy(100, 1_000, TimeUnit.MILLISECONDS, 2, 10, JitterMode.DECORRELATED);
+    long previousDelay = 0;
+    for (int i = 0; i < 1_000; i++) {
+      long fullDelay = full.getMillisDelayBeforeNextTry(3, null);
+      assertTrue(fullDelay >= 0 && fullDelay <= 400);
+      long equalDelay = equal.getMillisDelayBeforeNextTry(3, null);
+      assertTrue(equalDelay >= 200 && equalDelay <= 400);
+      long decorrelatedDelay = decorrelated.getMillisDelayBeforeNextTry(1 + i % 10, previousDelay, null);
+      assertTrue(decorrelatedDelay >= 100 && decorrelatedDelay <= Math.min(1_000, Math.max(previousDelay, 100) * 3));
+      previousDelay = decorrelatedDelay;
+    }
+  }
+
+  @Test
+  public void testJitterAtUncappedMaxDelay() {
+    ExponentialPolicy full = new ExponentialPolicy(1, Long.MAX_VALUE, TimeUnit.MILLISECONDS, 2, 100, JitterMode.FULL);
+    assertTrue(full.getMillisDelayBeforeNextTry(80, null) >= 0);
+    ExponentialPolicy decorrelated =
+      new ExponentialPolicy(0, Long.MAX_VALUE, TimeUnit.MILLISECONDS, 2, 100, JitterMode.DECORRELATED);
+    assertTrue(decorrelated.getMillisDelayBeforeNextTry(80, Long.MAX_VALUE / 2, null) >= 0);
+  }
+}
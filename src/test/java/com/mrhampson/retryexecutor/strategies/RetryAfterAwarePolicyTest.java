@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.strategies;
+
+import com.mrhampson.retryexecutor.annotations.RetryWithFixedDelay;
+import com.mrhampson.retryexecutor.exceptions.MaxTriesExceededException;
+import com.mrhampson.retryexecutor.exceptions.RetryAfterHint;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RetryAfterAwarePolicyTest {
+
+  @Test
+  public void testHintReplacesBackoff() {
+    RetryPolicy policy = new ConstantPolicy(10, TimeUnit.MILLISECONDS, 3).honoringRetryAfter();
+    assertEquals(2_500, policy.getMillisDelayBeforeNextTry(1, new RateLimitedException(2_500)));
+    assertEquals(10, policy.getMillisDelayBeforeNextTry(2, new IllegalStateException()));
+    assertEquals(10, policy.getMillisDelayBeforeNextTry(2, new RateLimitedException(-1)));
+  }
+
+  @Test
+  public void testHintIsFoundOnCause() {
+    RetryPolicy policy = new RetryAfterAwarePolicy(new ConstantPolicy(10, TimeUnit.MILLISECONDS, 3));
+    assertEquals(700, policy.getMillisDelayBeforeNextTry(1, new RuntimeException(new RateLimitedException(700))));
+  }
+
+  @Test
+  public void testHintIsCapped() {
+    RetryPolicy policy =
+      new RetryAfterAwarePolicy(new ConstantPolicy(10, TimeUnit.MILLISECONDS, 3), 1, TimeUnit.SECONDS);
+    assertEquals(1_000, policy.getMillisDelayBeforeNextTry(1, new RateLimitedException(60_000)));
+  }
+
+  @Test(expected = MaxTriesExceededException.class)
+  public void testHintedRetriesCountTowardsMaxTries() {
+    RetryPolicy policy = new ConstantPolicy(10, TimeUnit.MILLISECONDS, 1).honoringRetryAfter();
+    policy.getMillisDelayBeforeNextTry(2, new RateLimitedException(100));
+  }
+
+  @Test
+  public void testAnnotationEnablesHints() {
+    RetryPolicy policy = AnnotationToRetryStrategyFactory.policyProviderForClass(HintedTask.class).get();
+    assertEquals(300, policy.getMillisDelayBeforeNextTry(1, new RateLimitedException(300)));
+    assertEquals(5, policy.getMillisDelayBeforeNextTry(1, new IllegalStateException()));
+  }
+
+  @RetryWithFixedDelay(delay = 5, delayUnit = TimeUnit.MILLISECONDS, maxTries = 3, honorRetryAfter = true)
+  static class HintedTask implements Runnable {
+    @Override
+    public void run() {
+    }
+  }
+
+  static class RateLimitedException extends RuntimeException implements RetryAfterHint {
+    private final long retryAfterMillis;
+
+    RateLimitedException(long retryAfterMillis) {
+      this.retryAfterMillis = retryAfterMillis;
+    }
+
+    @Override
+    public long getRetryAfterMillis() {
+      return retryAfterMillis;
+    }
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2019 Marshall Hampson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package com.mrhampson.retryexecutor.strategies;
+
+import com.mrhampson.retryexecutor.annotations.RetryWithFixedDelay;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TimeoutPolicyTest {
+
+  @Test
+  public void testWithTimeoutsKeepsDelaysAndClassification() throws Exception {
+    RetryPolicy policy = new ConstantPolicy(5, TimeUnit.MILLISECONDS, 3)
+      .retryIf(failure -> failure instanceof IOException)
+      .withTimeouts(2, 30, TimeUnit.SECONDS);
+    assertEquals(5, policy.getMillisDelayBeforeNextTry(1, new IOException()));
+    assertFalse(policy.isRetryable(new IllegalStateException()));
+    assertEquals(2_000, policy.getAttemptTimeoutMillis());
+    assertEquals(30_000, policy.getDeadlineMillis());
+  }
+
+  @Test
+  public void testDecoratorsKeepTimeouts() {
+    RetryPolicy policy = new ConstantPolicy(5, TimeUnit.MILLISECONDS, 3)
+      .withTimeouts(100, 0, TimeUnit.MILLISECONDS)
+      .honoringRetryAfter()
+      .retryIf(failure -> true);
+    assertEquals(100, policy.getAttemptTimeoutMillis());
+    assertEquals(0, policy.getDeadlineMillis());
+  }
+
+  @Test
+  public void testTimeoutsFromAnnotation() {
+    RetryPolicy policy = AnnotationToRetryStrategyFactory.policyProviderForClass(TimedOutRunnable.class).get();
+    assertEquals(50_000, policy.getAttemptTimeoutMillis());
+    assertEquals(1_000, policy.getDeadlineMillis());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeTimeoutIsRejected() {
+    new ConstantPolicy(5, TimeUnit.MILLISECONDS, 3).withTimeouts(-1, 0, TimeUnit.MILLISECONDS);
+  }
+
+  @RetryWithFixedDelay(delay = 10, delayUnit = TimeUnit.MILLISECONDS, maxTries = 3, attemptTimeout = 50, deadline = 1,
+    timeoutUnit = TimeUnit.SECONDS)
+  private static class TimedOutRunnable implements Runnable {
+    @Override
+    public void run() {
+    }
+  }
+}